@@ -0,0 +1,146 @@
+package de.kaysubs.tracker.common;
+
+import de.kaysubs.tracker.common.exception.HttpException;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.cookie.BasicCookieStore;
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.cookie.CookieStore;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.util.TimeValue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+public class AsyncHttpUtil {
+
+    /**
+     * Create and start a pooled non-blocking client.
+     *
+     * The client runs its own I/O reactor threads,
+     * so it must be closed once it is no longer used.
+     */
+    public static CloseableHttpAsyncClient createClient(HttpClientConfig config) {
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(config.getMaxConnections())
+                .setMaxConnPerRoute(config.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(config.getTimeout())
+                        .setSocketTimeout(config.getTimeout())
+                        .setTimeToLive(config.getConnectionTimeToLive())
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(HttpUtil.requestConfig(config.getTimeout(), config.getKeepAlive()))
+                .evictExpiredConnections()
+                .evictIdleConnections(config.getIdleEviction());
+
+        // placed inside the retry handler, so retried requests are rate limited as well
+        config.getRateLimiter().ifPresent(limiter ->
+                builder.addExecInterceptorAfter(ChainElement.RETRY.name(), "rate-limit", new AsyncRateLimitExec(limiter)));
+
+        CloseableHttpAsyncClient client = builder.build();
+        client.start();
+        return client;
+    }
+
+    /**
+     * Copy a classic entity (e.g. a form or multipart entity) into the body of an async request.
+     */
+    public static void setBody(SimpleHttpRequest request, HttpEntity entity) {
+        try {
+            request.setBody(EntityUtils.toByteArray(entity), ContentType.parseLenient(entity.getContentType()));
+        } catch (IOException e) {
+            throw new HttpException("Cannot encode request body", e);
+        }
+    }
+
+    /**
+     * Decode the response body with the charset announced in the Content-Type header,
+     * falling back to UTF-8.
+     */
+    public static String readIntoString(SimpleHttpResponse response) {
+        byte[] body = response.getBodyBytes();
+        if (body == null)
+            return "";
+
+        ContentType contentType = response.getContentType();
+        Charset charset = contentType == null ? null : contentType.getCharset();
+        return new String(body, charset == null ? StandardCharsets.UTF_8 : charset);
+    }
+
+    /**
+     * Get the charset announced in the Content-Type header.
+     *
+     * @return charset name or null if the header does not contain a charset
+     */
+    public static String getCharset(SimpleHttpResponse response) {
+        ContentType contentType = response.getContentType();
+        Charset charset = contentType == null ? null : contentType.getCharset();
+        return charset == null ? null : charset.name();
+    }
+
+    public static CompletableFuture<SimpleHttpResponse> executeRequest(SimpleHttpRequest request, CloseableHttpAsyncClient client) {
+        return executeRequest(request, client, new BasicCookieStore());
+    }
+
+    public static CompletableFuture<SimpleHttpResponse> executeRequest(SimpleHttpRequest request, CloseableHttpAsyncClient client, Cookie[] cookies) {
+        CookieStore store = new BasicCookieStore();
+        Arrays.stream(cookies).forEach(store::addCookie);
+        return executeRequest(request, client, store);
+    }
+
+    public static CompletableFuture<SimpleHttpResponse> executeRequest(SimpleHttpRequest request, CloseableHttpAsyncClient client, CookieStore cookieStore) {
+        return executeRequest(request, client, cookieStore, new HttpClientConfig().getMaxBodySize());
+    }
+
+    /**
+     * Execute a request and buffer its response.
+     *
+     * @param maxBodySize the request fails once the response body exceeds this number of bytes
+     */
+    public static CompletableFuture<SimpleHttpResponse> executeRequest(SimpleHttpRequest request, CloseableHttpAsyncClient client,
+                                                                       CookieStore cookieStore, long maxBodySize) {
+        HttpClientContext context = HttpClientContext.create();
+        context.setCookieStore(cookieStore);
+
+        CompletableFuture<SimpleHttpResponse> future = new CompletableFuture<>();
+        client.execute(SimpleRequestProducer.create(request), new BoundedResponseConsumer(maxBodySize), context, new FutureCallback<>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.completeExceptionally(new HttpException("Cannot Execute Http request", e));
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+
+        return future;
+    }
+
+}
@@ -0,0 +1,90 @@
+package de.kaysubs.tracker.common;
+
+import org.apache.hc.client5.http.async.AsyncExecCallback;
+import org.apache.hc.client5.http.async.AsyncExecChain;
+import org.apache.hc.client5.http.async.AsyncExecChainHandler;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncDataConsumer;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passes every async request, including retries, through a {@link RateLimiter}.
+ *
+ * Unlike {@link RateLimitExec}, no thread waits for the rate limit.
+ * Requests that have to wait are dispatched later by a timer instead.
+ */
+class AsyncRateLimitExec implements AsyncExecChainHandler {
+    private final RateLimiter limiter;
+
+    AsyncRateLimitExec(RateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void execute(HttpRequest request, AsyncEntityProducer entityProducer, AsyncExecChain.Scope scope,
+                        AsyncExecChain chain, AsyncExecCallback callback)
+            throws org.apache.hc.core5.http.HttpException, IOException {
+        String host = scope.route.getTargetHost().getHostName();
+        AsyncExecCallback limitedCallback = new RateLimitedCallback(host, callback);
+
+        long waitNanos = limiter.reserve(host);
+        if (waitNanos <= 0) {
+            chain.proceed(request, entityProducer, scope, limitedCallback);
+            return;
+        }
+
+        CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            // the request may have been cancelled while it waited
+            if (scope.cancellableDependency.isCancelled())
+                return;
+
+            try {
+                chain.proceed(request, entityProducer, scope, limitedCallback);
+            } catch (org.apache.hc.core5.http.HttpException | IOException | RuntimeException e) {
+                callback.failed(e);
+            }
+        });
+    }
+
+    private class RateLimitedCallback implements AsyncExecCallback {
+        private final String host;
+        private final AsyncExecCallback callback;
+
+        private RateLimitedCallback(String host, AsyncExecCallback callback) {
+            this.host = host;
+            this.callback = callback;
+        }
+
+        @Override
+        public AsyncDataConsumer handleResponse(HttpResponse response, EntityDetails entityDetails)
+                throws org.apache.hc.core5.http.HttpException, IOException {
+            Header retryAfter = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+            limiter.onResponse(host, response.getCode(), retryAfter == null ? null : retryAfter.getValue());
+
+            return callback.handleResponse(response, entityDetails);
+        }
+
+        @Override
+        public void handleInformationResponse(HttpResponse response) throws org.apache.hc.core5.http.HttpException, IOException {
+            callback.handleInformationResponse(response);
+        }
+
+        @Override
+        public void completed() {
+            callback.completed();
+        }
+
+        @Override
+        public void failed(Exception cause) {
+            callback.failed(cause);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.kaysubs.tracker.common;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.entity.AbstractBinAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AbstractAsyncResponseConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Buffers the response into a {@link SimpleHttpResponse}
+ * but fails once more than maxBodySize bytes have been received.
+ */
+class BoundedResponseConsumer extends AbstractAsyncResponseConsumer<SimpleHttpResponse, byte[]> {
+
+    BoundedResponseConsumer(long maxBodySize) {
+        super(() -> new BoundedEntityConsumer(maxBodySize));
+    }
+
+    @Override
+    public void informationResponse(HttpResponse response, HttpContext context) {}
+
+    @Override
+    protected SimpleHttpResponse buildResult(HttpResponse response, byte[] body, ContentType contentType) {
+        SimpleHttpResponse result = SimpleHttpResponse.copy(response);
+        if (body != null)
+            result.setBody(body, contentType);
+
+        return result;
+    }
+
+    private static class BoundedEntityConsumer extends AbstractBinAsyncEntityConsumer<byte[]> {
+        private final long maxBodySize;
+        private final ByteArrayBuffer buffer = new ByteArrayBuffer(1024);
+
+        private BoundedEntityConsumer(long maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+
+        @Override
+        protected void streamStart(ContentType contentType) {}
+
+        @Override
+        protected int capacityIncrement() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        protected void data(ByteBuffer src, boolean endOfStream) throws IOException {
+            if ((long) buffer.length() + src.remaining() > maxBodySize)
+                throw new IOException("Response body exceeds the limit of " + maxBodySize + " bytes");
+
+            buffer.append(src);
+        }
+
+        @Override
+        protected byte[] generateContent() {
+            return buffer.toByteArray();
+        }
+
+        @Override
+        public void releaseResources() {
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package de.kaysubs.tracker.common;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Remembers the ETag and Last-Modified validators of responses together with the object parsed from them,
+ * so a request for the same url can be sent conditionally and a 304 response can reuse the parsed object.
+ */
+public class ConditionalCache<T> {
+    private final int maxEntries;
+    private final UnaryOperator<T> retain;
+
+    // access ordered, so the first entry is the least recently used one
+    private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    public static class Entry<T> {
+        private final String etag;
+        private final String lastModified;
+        private final T value;
+        private final long bodySize;
+
+        private Entry(String etag, String lastModified, T value, long bodySize) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.value = value;
+            this.bodySize = bodySize;
+        }
+    }
+
+    /**
+     * @param maxEntries maximum number of urls whose validators are remembered
+     */
+    public ConditionalCache(int maxEntries) {
+        this(maxEntries, UnaryOperator.identity());
+    }
+
+    /**
+     * @param maxEntries maximum number of urls whose validators are remembered
+     * @param retain applied to a value before it is stored, e.g. to release resources it should not keep alive
+     */
+    public ConditionalCache(int maxEntries, UnaryOperator<T> retain) {
+        this.maxEntries = maxEntries;
+        this.retain = retain;
+    }
+
+    /**
+     * Get the entry of a url and add its validators to the request.
+     *
+     * @return entry whose value should be used if the server responds with 304, or null
+     */
+    public Entry<T> prepare(String url, HttpRequest request) {
+        Entry<T> entry;
+        synchronized (entries) {
+            entry = entries.get(url);
+        }
+
+        if (entry != null) {
+            if (entry.etag != null)
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, entry.etag);
+            if (entry.lastModified != null)
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Get the value of an entry for a 304 response.
+     */
+    public T notModified(Entry<T> entry) {
+        notModified.increment();
+        bytesSaved.add(entry.bodySize);
+        return entry.value;
+    }
+
+    /**
+     * Remember the validators of a response together with the object parsed from it.
+     * Responses without validators are not stored.
+     * The stored value is also the one that the caller should use, since it may have been changed by retain.
+     *
+     * @param bodySize number of bytes of the response body
+     * @return the value to use
+     */
+    public T store(String url, HttpResponse response, T value, long bodySize) {
+        Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+        Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+
+        if (etag == null && lastModified == null) {
+            synchronized (entries) {
+                entries.remove(url);
+            }
+            return value;
+        }
+
+        value = retain.apply(value);
+
+        synchronized (entries) {
+            entries.put(url, new Entry<>(
+                    etag == null ? null : etag.getValue(),
+                    lastModified == null ? null : lastModified.getValue(),
+                    value, bodySize));
+
+            Iterator<Map.Entry<String, Entry<T>>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maxEntries) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Number of 304 responses, each of which saved downloading and parsing a page.
+     */
+    public long getNotModifiedCount() {
+        return notModified.sum();
+    }
+
+    /**
+     * Number of response body bytes that did not have to be downloaded due to 304 responses.
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+}
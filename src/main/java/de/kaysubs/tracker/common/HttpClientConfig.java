@@ -0,0 +1,175 @@
+package de.kaysubs.tracker.common;
+
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.util.Optional;
+
+/**
+ * Settings for the pooled http client that is shared by all requests of an api instance.
+ */
+public class HttpClientConfig {
+    private int maxConnections = 20;
+    private int maxConnectionsPerRoute = 10;
+    private Timeout timeout = HttpUtil.TIMEOUT;
+    private TimeValue keepAlive = TimeValue.ofMinutes(1);
+    private TimeValue idleEviction = TimeValue.ofSeconds(30);
+    private TimeValue connectionTimeToLive = TimeValue.ofMinutes(10);
+    private long maxBodySize = 32L * 1024 * 1024;
+    private double rateLimit = 10;
+    private double minRateLimit = 0.5;
+    private RateLimiter rateLimiter;
+    private int maxConditionalEntries = 1000;
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Maximum number of open connections over all hosts.
+     */
+    public HttpClientConfig setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Maximum number of open connections to a single host.
+     */
+    public HttpClientConfig setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        return this;
+    }
+
+    public Timeout getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Timeout for connecting, leasing a pooled connection and waiting for a response.
+     */
+    public HttpClientConfig setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public TimeValue getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * How long an idle connection may be kept alive
+     * if the server does not send a Keep-Alive header.
+     */
+    public HttpClientConfig setKeepAlive(TimeValue keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    public TimeValue getIdleEviction() {
+        return idleEviction;
+    }
+
+    /**
+     * Connections that have been idle for longer than this are closed by a background thread.
+     */
+    public HttpClientConfig setIdleEviction(TimeValue idleEviction) {
+        this.idleEviction = idleEviction;
+        return this;
+    }
+
+    public TimeValue getConnectionTimeToLive() {
+        return connectionTimeToLive;
+    }
+
+    /**
+     * Maximum lifetime of a connection, regardless of its activity.
+     */
+    public HttpClientConfig setConnectionTimeToLive(TimeValue connectionTimeToLive) {
+        this.connectionTimeToLive = connectionTimeToLive;
+        return this;
+    }
+
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * Maximum number of bytes read from a response body before the request is aborted.
+     */
+    public HttpClientConfig setMaxBodySize(long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+        return this;
+    }
+
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * Maximum number of requests per second and host.
+     * The rate is lowered automatically while the host answers with 429 or 503.
+     * All clients with the same rates share their budget, unless a {@link #setRateLimiter(RateLimiter) rate limiter} is set.
+     *
+     * @param rateLimit requests per second, zero disables rate limiting
+     */
+    public HttpClientConfig setRateLimit(double rateLimit) {
+        this.rateLimit = rateLimit;
+        return this;
+    }
+
+    public double getMinRateLimit() {
+        return minRateLimit;
+    }
+
+    /**
+     * Lowest rate that is used while a host is throttling requests.
+     */
+    public HttpClientConfig setMinRateLimit(double minRateLimit) {
+        this.minRateLimit = minRateLimit;
+        return this;
+    }
+
+    /**
+     * Rate limiter of the clients created with this config, by default the one that is
+     * {@link RateLimiter#shared(double, double) shared} by all clients with the same rates.
+     *
+     * @return limiter or empty if rate limiting is disabled
+     */
+    public Optional<RateLimiter> getRateLimiter() {
+        if (rateLimiter != null)
+            return Optional.of(rateLimiter);
+        if (rateLimit <= 0)
+            return Optional.empty();
+
+        return Optional.of(RateLimiter.shared(rateLimit, Math.min(minRateLimit, rateLimit)));
+    }
+
+    /**
+     * Use this rate limiter instead of the shared one, e.g. to give some clients a budget of their own.
+     * The rate limits of this config are ignored then.
+     *
+     * @param rateLimiter limiter or null to use the shared one
+     */
+    public HttpClientConfig setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    public int getMaxConditionalEntries() {
+        return maxConditionalEntries;
+    }
+
+    /**
+     * Maximum number of urls whose ETag and Last-Modified validators are remembered,
+     * together with the object parsed from the response, to send conditional requests.
+     */
+    public HttpClientConfig setMaxConditionalEntries(int maxConditionalEntries) {
+        this.maxConditionalEntries = maxConditionalEntries;
+        return this;
+    }
+}
@@ -3,43 +3,190 @@ package de.kaysubs.tracker.common;
 import de.kaysubs.tracker.common.exception.HttpErrorCodeException;
 import de.kaysubs.tracker.common.exception.HttpException;
 import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.cookie.BasicCookieStore;
 import org.apache.hc.client5.http.cookie.Cookie;
 import org.apache.hc.client5.http.cookie.CookieStore;
 import org.apache.hc.client5.http.cookie.StandardCookieSpec;
+import org.apache.hc.client5.http.impl.ChainElement;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.util.TimeValue;
 import org.apache.hc.core5.util.Timeout;
 
-import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 public class HttpUtil {
     public final static Timeout TIMEOUT = Timeout.ofMilliseconds(20000);
 
-    public final static RequestConfig WITH_TIMEOUT = RequestConfig.custom()
-            .setCookieSpec(StandardCookieSpec.RELAXED) // DEFAULT fails to parse cookies with a "expires" value
-            .setConnectionRequestTimeout(TIMEOUT)
+    private final static long TRANSFER_CHUNK_SIZE = 1024 * 1024;
 
-            .setConnectTimeout(TIMEOUT)
-            .setResponseTimeout(TIMEOUT)
-            .build();
+    public final static RequestConfig WITH_TIMEOUT = requestConfig(TIMEOUT, TimeValue.ofMinutes(1));
 
+    public static RequestConfig requestConfig(Timeout timeout, TimeValue keepAlive) {
+        return RequestConfig.custom()
+                .setCookieSpec(StandardCookieSpec.RELAXED) // DEFAULT fails to parse cookies with a "expires" value
+                .setConnectionRequestTimeout(timeout)
+                .setConnectTimeout(timeout)
+                .setConnectionKeepAlive(keepAlive)
+                .setResponseTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * Create a pooled client that keeps connections alive between requests.
+     *
+     * The client holds sockets and a background eviction thread,
+     * so it must be closed once it is no longer used.
+     */
+    public static CloseableHttpClient createClient(HttpClientConfig config) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(config.getMaxConnections())
+                .setMaxConnPerRoute(config.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(config.getTimeout())
+                        .setSocketTimeout(config.getTimeout())
+                        .setTimeToLive(config.getConnectionTimeToLive())
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig(config.getTimeout(), config.getKeepAlive()))
+                .evictExpiredConnections()
+                .evictIdleConnections(config.getIdleEviction());
+
+        // placed inside the retry handler, so retried requests are rate limited as well
+        config.getRateLimiter().ifPresent(limiter ->
+                builder.addExecInterceptorAfter(ChainElement.RETRY.name(), "rate-limit", new RateLimitExec(limiter)));
+
+        return builder.build();
+    }
+
+    /**
+     * Decode the response body with the charset announced in the Content-Type header,
+     * falling back to UTF-8.
+     */
     public static String readIntoString(ClassicHttpResponse response) {
         try {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            response.getEntity().writeTo(out);
-            return out.toString();
+            return EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        } catch (IOException | ParseException e) {
+            throw new HttpException("Cannot read response content", e);
+        }
+    }
+
+    /**
+     * Get the charset announced in the Content-Type header.
+     *
+     * @return charset name or null if the header does not contain a charset
+     */
+    public static String getCharset(ClassicHttpResponse response) {
+        ContentType contentType = ContentType.parseLenient(response.getEntity().getContentType());
+        Charset charset = contentType == null ? null : contentType.getCharset();
+        return charset == null ? null : charset.name();
+    }
+
+    /**
+     * Open the response body as a stream that fails once more than maxBodySize bytes have been read.
+     */
+    public static BoundedInputStream openContent(ClassicHttpResponse response, long maxBodySize) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity.getContentLength() > maxBodySize)
+            throw new HttpException("Response body of " + entity.getContentLength() + " bytes exceeds the limit of " + maxBodySize + " bytes");
+
+        InputStream content = entity.getContent();
+        return new BoundedInputStream(content == null ? InputStream.nullInputStream() : content, maxBodySize);
+    }
+
+    /**
+     * Stream the response body into a temporary file next to the target
+     * and move it into place once it is complete, so the target is never left incomplete.
+     *
+     * @return size of the file in bytes
+     * @throws UncheckedIOException cannot write the file
+     */
+    public static long writeContent(ClassicHttpResponse response, long maxBodySize, Path target) {
+        Path tempFile;
+        try {
+            Path directory = target.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            tempFile = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
         } catch (IOException e) {
-            throw new HttpException("Cannot read response content");
+            throw new UncheckedIOException("Cannot create " + target, e);
+        }
+
+        try {
+            long size = 0;
+            try (ReadableByteChannel in = Channels.newChannel(openContent(response, maxBodySize));
+                 FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                long transferred;
+                while ((transferred = out.transferFrom(in, size, TRANSFER_CHUNK_SIZE)) > 0)
+                    size += transferred;
+            } catch (IOException e) {
+                throw new HttpException("Cannot read response content", e);
+            }
+
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write " + target, e);
+            }
+            return size;
+        } finally {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ignored) {
+                // the download already succeeded or failed with a more meaningful exception
+            }
         }
     }
 
+    /**
+     * Download a file with the default client, like {@link #writeContent(ClassicHttpResponse, long, Path)}.
+     *
+     * @return size of the file in bytes
+     * @throws UncheckedIOException cannot write the file
+     */
+    public static long download(URI uri, Path target) {
+        HttpGet get = new HttpGet(uri);
+        get.setConfig(WITH_TIMEOUT);
+
+        return executeRequest(get, DefaultClient.INSTANCE, new BasicCookieStore(), response -> {
+            requireStatusCode(response, 200);
+            return writeContent(response, new HttpClientConfig().getMaxBodySize(), target);
+        });
+    }
+
     public static void requireStatusCode(HttpResponse response, int code) {
         int statusCode = response.getCode();
 
@@ -47,29 +194,135 @@ public class HttpUtil {
             throw new HttpErrorCodeException(statusCode);
     }
 
-    public static HttpResponse executeRequest(HttpUriRequest request) {
-        return executeRequest(request, HttpClients.createDefault());
+    public static ClassicHttpResponse executeRequest(HttpUriRequest request) {
+        return executeRequest(request, new BasicCookieStore());
     }
 
-    public static HttpResponse executeRequest(HttpUriRequest request, Cookie[] cookies) {
+    public static ClassicHttpResponse executeRequest(HttpUriRequest request, Cookie[] cookies) {
+        return executeRequest(request, DefaultClient.INSTANCE, cookies);
+    }
+
+    public static ClassicHttpResponse executeRequest(HttpUriRequest request, CookieStore cookieStore) {
+        return executeRequest(request, DefaultClient.INSTANCE, cookieStore);
+    }
+
+    public static ClassicHttpResponse executeRequest(HttpUriRequest request, HttpClient client, Cookie[] cookies) {
+        return executeRequest(request, client, cookies, new HttpClientConfig().getMaxBodySize());
+    }
+
+    public static ClassicHttpResponse executeRequest(HttpUriRequest request, HttpClient client, Cookie[] cookies, long maxBodySize) {
         CookieStore store = new BasicCookieStore();
         Arrays.stream(cookies).forEach(store::addCookie);
-        return HttpUtil.executeRequest(request, store);
+        return executeRequest(request, client, store, maxBodySize);
+    }
+
+    public static ClassicHttpResponse executeRequest(HttpUriRequest request, HttpClient client, CookieStore cookieStore) {
+        return executeRequest(request, client, cookieStore, new HttpClientConfig().getMaxBodySize());
     }
 
-    public static HttpResponse executeRequest(HttpUriRequest request, CookieStore cookieStore) {
-        CloseableHttpClient client = HttpClients.custom()
-                .setDefaultCookieStore(cookieStore).build();
+    /**
+     * Execute a request and buffer its response.
+     *
+     * @param maxBodySize the request fails once the response body exceeds this number of bytes
+     */
+    public static ClassicHttpResponse executeRequest(HttpUriRequest request, HttpClient client, CookieStore cookieStore, long maxBodySize) {
+        HttpClientContext context = HttpClientContext.create();
+        context.setCookieStore(cookieStore);
 
-        return executeRequest(request, client);
+        try {
+            return client.execute(request, context, response -> bufferEntity(response, maxBodySize));
+        } catch (IOException e) {
+            throw new HttpException("Cannot Execute Http request", e);
+        }
     }
 
-    public static HttpResponse executeRequest(HttpUriRequest request, HttpClient client) {
+    /**
+     * Execute a request and process the response while the connection is still open,
+     * so the body can be streamed instead of being buffered.
+     */
+    public static <T> T executeRequest(HttpUriRequest request, HttpClient client, CookieStore cookieStore, HttpClientResponseHandler<T> handler) {
+        HttpClientContext context = HttpClientContext.create();
+        context.setCookieStore(cookieStore);
+
         try {
-            return client.execute(request);
+            return client.execute(request, context, handler);
         } catch (IOException e) {
             throw new HttpException("Cannot Execute Http request", e);
         }
     }
 
+    public static ClassicHttpResponse executeRequest(HttpUriRequest request, HttpClient client) {
+        long maxBodySize = new HttpClientConfig().getMaxBodySize();
+        try {
+            return client.execute(request, response -> bufferEntity(response, maxBodySize));
+        } catch (IOException e) {
+            throw new HttpException("Cannot Execute Http request", e);
+        }
+    }
+
+    /**
+     * Read the whole entity so the connection is handed back
+     * to the pool before the response is passed on.
+     * Bodies larger than maxBodySize fail before they are read completely.
+     */
+    private static ClassicHttpResponse bufferEntity(ClassicHttpResponse response, long maxBodySize) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            byte[] content;
+            try (InputStream in = openContent(response, maxBodySize)) {
+                content = in.readAllBytes();
+            }
+            ContentType contentType = ContentType.parseLenient(entity.getContentType());
+            response.setEntity(new ByteArrayEntity(content, contentType, entity.getContentEncoding()));
+        }
+
+        return response;
+    }
+
+    public static class BoundedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long bytesRead = 0;
+
+        private BoundedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Number of bytes read so far.
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1)
+                count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                count(n);
+            return n;
+        }
+
+        private void count(int n) throws IOException {
+            bytesRead += n;
+            if (bytesRead > maxBytes)
+                throw new IOException("Response body exceeds the limit of " + maxBytes + " bytes");
+        }
+    }
+
+    /**
+     * Client for the static request methods that are not bound to an api instance.
+     */
+    private static class DefaultClient {
+        private final static CloseableHttpClient INSTANCE = createClient(new HttpClientConfig());
+    }
+
 }
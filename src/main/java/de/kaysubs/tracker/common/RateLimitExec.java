@@ -0,0 +1,42 @@
+package de.kaysubs.tracker.common;
+
+import org.apache.hc.client5.http.classic.ExecChain;
+import org.apache.hc.client5.http.classic.ExecChainHandler;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Passes every request, including retries, through a {@link RateLimiter}.
+ */
+class RateLimitExec implements ExecChainHandler {
+    private final RateLimiter limiter;
+
+    RateLimitExec(RateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public ClassicHttpResponse execute(ClassicHttpRequest request, ExecChain.Scope scope, ExecChain chain)
+            throws IOException, org.apache.hc.core5.http.HttpException {
+        String host = scope.route.getTargetHost().getHostName();
+
+        try {
+            limiter.acquire(host);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate limit of " + host);
+        }
+
+        ClassicHttpResponse response = chain.proceed(request, scope);
+
+        Header retryAfter = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        limiter.onResponse(host, response.getCode(), retryAfter == null ? null : retryAfter.getValue());
+
+        return response;
+    }
+}
@@ -0,0 +1,172 @@
+package de.kaysubs.tracker.common;
+
+import org.apache.hc.client5.http.utils.DateUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token bucket rate limiter with a separate budget for every host.
+ *
+ * When a host answers with 429 or 503, its rate is halved and requests are paused
+ * for as long as the Retry-After header asks for. Every successful response then
+ * raises the rate again, until it is back at the configured maximum.
+ *
+ * The budget of a host only limits requests that go through the same limiter,
+ * so clients that talk to the same hosts should share one, see {@link #shared(double, double)}.
+ */
+public class RateLimiter {
+    private final static double DECREASE_FACTOR = 0.5;
+    // fraction of the maximum rate that is regained per second of successful requests
+    private final static double RECOVERY_PER_SECOND = 0.1;
+    private final static long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final double maxRate;
+    private final double minRate;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    // by maximum and minimum rate
+    private final static Map<List<Double>, RateLimiter> SHARED = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxRate maximum number of requests per second and host
+     * @param minRate the rate is never lowered below this, even if the host keeps throttling
+     */
+    public RateLimiter(double maxRate, double minRate) {
+        if (maxRate <= 0 || minRate <= 0 || minRate > maxRate)
+            throw new IllegalArgumentException("Rates must be positive and minRate must not exceed maxRate");
+
+        this.maxRate = maxRate;
+        this.minRate = minRate;
+    }
+
+    /**
+     * Get the limiter that is shared by all clients with these rates,
+     * so the requests of all api instances to a host count against one budget.
+     */
+    public static RateLimiter shared(double maxRate, double minRate) {
+        return SHARED.computeIfAbsent(List.of(maxRate, minRate), rates -> new RateLimiter(maxRate, minRate));
+    }
+
+    private Bucket getBucket(String host) {
+        return buckets.computeIfAbsent(host, h -> new Bucket());
+    }
+
+    /**
+     * Block until a request to the host may be sent.
+     */
+    public void acquire(String host) throws InterruptedException {
+        long waitNanos = reserve(host);
+        if (waitNanos > 0)
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+    }
+
+    /**
+     * Reserve a request to the host without blocking.
+     *
+     * @return nanoseconds to wait before the request may be sent
+     */
+    public long reserve(String host) {
+        return getBucket(host).reserve(System.nanoTime());
+    }
+
+    /**
+     * Adjust the rate of a host to the status of a response.
+     *
+     * @param retryAfter value of the Retry-After header, may be null
+     */
+    public void onResponse(String host, int statusCode, String retryAfter) {
+        Bucket bucket = getBucket(host);
+        long now = System.nanoTime();
+
+        if (statusCode == 429 || statusCode == 503) {
+            bucket.throttle(now, parseRetryAfter(retryAfter, Instant.now()));
+        } else {
+            bucket.recover(now);
+        }
+    }
+
+    /**
+     * Current number of requests per second that are allowed for a host.
+     */
+    public double getRate(String host) {
+        return getBucket(host).getRate();
+    }
+
+    /**
+     * Parse a Retry-After header, which is either a number of seconds or a http date.
+     *
+     * @return time to wait or null if the header is missing or malformed
+     */
+    static Duration parseRetryAfter(String value, Instant now) {
+        if (value == null)
+            return null;
+
+        value = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            Instant date = DateUtils.parseStandardDate(value);
+            if (date == null)
+                return null;
+
+            return date.isAfter(now) ? Duration.between(now, date) : Duration.ZERO;
+        }
+    }
+
+    private class Bucket {
+        private double rate = maxRate;
+        // may become negative, which means that the next requests are already scheduled into the future
+        private double tokens = 1;
+        private long lastRefill = System.nanoTime();
+        private long blockedUntil = lastRefill;
+        private long lastDecrease = lastRefill - NANOS_PER_SECOND;
+
+        private void refill(long now) {
+            // allow a burst of at most one second worth of requests
+            double burst = Math.max(1, rate);
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate / NANOS_PER_SECOND);
+            lastRefill = now;
+        }
+
+        /**
+         * Take a token and return how long the caller has to wait before using it.
+         */
+        synchronized long reserve(long now) {
+            refill(now);
+            tokens -= 1;
+
+            long waitForToken = tokens >= 0 ? 0 : (long) (-tokens / rate * NANOS_PER_SECOND);
+            return Math.max(waitForToken, blockedUntil - now);
+        }
+
+        synchronized void throttle(long now, Duration retryAfter) {
+            refill(now);
+
+            // concurrent requests that were sent at the old rate should only lower it once
+            if (now - lastDecrease >= NANOS_PER_SECOND) {
+                rate = Math.max(minRate, rate * DECREASE_FACTOR);
+                lastDecrease = now;
+            }
+
+            tokens = Math.min(tokens, 0);
+
+            if (retryAfter != null)
+                blockedUntil = Math.max(blockedUntil, now + retryAfter.toNanos());
+        }
+
+        synchronized void recover(long now) {
+            refill(now);
+
+            // every response raises the rate by a small step, so it grows linearly over time
+            rate = Math.min(maxRate, rate + RECOVERY_PER_SECOND * maxRate / rate);
+        }
+
+        synchronized double getRate() {
+            return rate;
+        }
+    }
+}
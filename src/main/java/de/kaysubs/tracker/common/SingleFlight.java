@@ -0,0 +1,72 @@
+package de.kaysubs.tracker.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesce concurrent calls with the same key, so only one of them does the actual work
+ * and all others wait for and share its result.
+ *
+ * Results are not cached: once a call has completed, the next call with the same key runs again.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Run the loader, unless a call with the same key is already running.
+     * In that case, wait for that call and return its result or rethrow its exception.
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+
+        if (running != null) {
+            hits.increment();
+            return await(running);
+        }
+
+        misses.increment();
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Number of calls that shared the result of a call that was already running.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Number of calls that ran the loader themselves.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+}
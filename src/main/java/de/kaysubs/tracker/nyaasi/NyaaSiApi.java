@@ -1,15 +1,39 @@
 package de.kaysubs.tracker.nyaasi;
 
+import de.kaysubs.tracker.common.HttpUtil;
 import de.kaysubs.tracker.common.exception.HttpException;
 import de.kaysubs.tracker.nyaasi.exception.IllegalCategoryException;
 import de.kaysubs.tracker.nyaasi.exception.LoginException;
 import de.kaysubs.tracker.nyaasi.exception.NoSuchTorrentException;
 import de.kaysubs.tracker.nyaasi.exception.WebScrapeException;
+import de.kaysubs.tracker.nyaasi.model.CompactTorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.SearchPage;
 import de.kaysubs.tracker.nyaasi.model.SearchRequest;
 import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+import de.kaysubs.tracker.nyaasi.model.TorrentColumns;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfoResult;
 import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.util.RequestExecutors;
+import de.kaysubs.tracker.nyaasi.util.TorrentInfoBatch;
+
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public interface NyaaSiApi {
+    /**
+     * Number of torrents on a page, as on the website.
+     */
+    int PAGE_SIZE = 75;
+
     /**
      * API for https://sukebei.nyaa.si/
      */
@@ -37,6 +61,125 @@ public interface NyaaSiApi {
      */
     TorrentPreview[] search(SearchRequest request);
 
+    /**
+     * Search for torrents using the rss feed of the search.
+     *
+     * The feed is much smaller than the html page, which makes this cheaper for frequent polling.
+     * Magnet links are built from the info hash of the feed.
+     * The default implementation uses {@link #search(SearchRequest)} instead of the feed.
+     *
+     * Since this api call is based on parsing the rss feed, it might break anytime.
+     *
+     * @throws IllegalCategoryException cannot use sukebei categories on nyaa and the other way round
+     * @throws WebScrapeException error while parsing the feed
+     * @throws HttpException networking error
+     */
+    default TorrentPreview[] searchRss(SearchRequest request) {
+        return search(request);
+    }
+
+    /**
+     * Search for torrents like {@link #search(SearchRequest)}, but return the leaner {@link CompactTorrentPreview}
+     * with exact sizes in bytes, which is better suited for keeping many results in memory.
+     *
+     * Since this api call is based on parsing webpages, it might break anytime.
+     *
+     * @throws IllegalCategoryException cannot use sukebei categories on nyaa and the other way round
+     * @throws WebScrapeException error while parsing webpage
+     * @throws HttpException networking error
+     */
+    default CompactTorrentPreview[] searchCompact(SearchRequest request) {
+        return Arrays.stream(search(request))
+                .map(CompactTorrentPreview::of)
+                .toArray(CompactTorrentPreview[]::new);
+    }
+
+    /**
+     * Search for torrents and return the results as columns of primitive arrays,
+     * which suits ranking and aggregation over many results.
+     *
+     * Since this api call is based on parsing webpages, it might break anytime.
+     *
+     * @throws IllegalCategoryException cannot use sukebei categories on nyaa and the other way round
+     * @throws WebScrapeException error while parsing webpage
+     * @throws HttpException networking error
+     */
+    default TorrentColumns searchColumns(SearchRequest request) {
+        return TorrentColumns.of(search(request), isSukebei());
+    }
+
+    /**
+     * Search for torrents and also return the pagination info,
+     * such as the total number of results and the last page.
+     *
+     * The default implementation only knows the results of the page, so a page that is not full
+     * is assumed to be the last one and the total number of results is unknown.
+     *
+     * Since this api call is based on parsing webpages, it might break anytime.
+     *
+     * @throws IllegalCategoryException cannot use sukebei categories on nyaa and the other way round
+     * @throws WebScrapeException error while parsing webpage
+     * @throws HttpException networking error
+     */
+    default SearchPage searchPage(SearchRequest request) {
+        int page = request.getPage().orElse(1);
+        TorrentPreview[] torrents = search(request);
+        int lastPage = torrents.length < PAGE_SIZE ? page : page + 1;
+        return new SearchPage(torrents, page, lastPage, OptionalInt.empty());
+    }
+
+    /**
+     * Get all results of a search, starting at the requested page.
+     *
+     * The first page is used to find out how many pages there are,
+     * the remaining pages are then loaded concurrently by the calling thread
+     * and the shared threads of {@link RequestExecutors#getDefault()}.
+     * The default implementation ignores the parallelism and loads one page after the other.
+     *
+     * Since this api call is based on parsing webpages, it might break anytime.
+     *
+     * @param parallelism maximum number of pages that are loaded at the same time
+     *
+     * @throws IllegalCategoryException cannot use sukebei categories on nyaa and the other way round
+     * @throws WebScrapeException error while parsing webpage
+     * @throws HttpException networking error
+     */
+    default TorrentPreview[] searchAll(SearchRequest request, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+
+        List<TorrentPreview> torrents = new ArrayList<>();
+        SearchRequest pageRequest = request.copy();
+        for (int page = request.getPage().orElse(1); ; page++) {
+            SearchPage results = searchPage(pageRequest.setPage(page));
+            torrents.addAll(Arrays.asList(results.getTorrents()));
+
+            if (results.getTorrents().length == 0 || results.isLastPage())
+                return torrents.toArray(new TorrentPreview[0]);
+        }
+    }
+
+    /**
+     * Search for torrents and pass each result to a callback as soon as it has been parsed,
+     * instead of waiting for the whole page.
+     *
+     * Since this api call is based on parsing webpages, it might break anytime.
+     *
+     * @param onResult return false to stop the search, the rest of the page will not be downloaded
+     * @return false if the search was stopped by the callback
+     *
+     * @throws IllegalCategoryException cannot use sukebei categories on nyaa and the other way round
+     * @throws WebScrapeException error while parsing webpage
+     * @throws HttpException networking error
+     */
+    default boolean search(SearchRequest request, Predicate<TorrentPreview> onResult) {
+        for (TorrentPreview torrent : search(request))
+            if (!onResult.test(torrent))
+                return false;
+
+        return true;
+    }
+
     /**
      * Get informations about a torrent
      *
@@ -48,6 +191,65 @@ public interface NyaaSiApi {
      */
     TorrentInfo getTorrentInfo(int torrentId);
 
+    /**
+     * Get informations about a torrent, or nothing if the torrent id does not exist.
+     *
+     * Unlike {@link #getTorrentInfo(int)}, missing torrents are not reported with an exception,
+     * which is cheaper when many ids are expected to be deleted.
+     *
+     * @throws WebScrapeException error while parsing webpage
+     * @throws HttpException networking error
+     */
+    default Optional<TorrentInfo> findTorrentInfo(int torrentId) {
+        try {
+            return Optional.of(getTorrentInfo(torrentId));
+        } catch (NoSuchTorrentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Get informations about many torrents, running up to concurrency requests at the same time.
+     *
+     * Results are streamed in the order in which they complete.
+     * A torrent that cannot be loaded, e.g. because it does not exist,
+     * is reported in its result and does not stop the other requests.
+     *
+     * Close the stream to stop loading torrents that have not been requested yet.
+     *
+     * @param concurrency maximum number of concurrent requests
+     */
+    default Stream<TorrentInfoResult> getTorrentInfos(int concurrency, int... torrentIds) {
+        return TorrentInfoBatch.stream(this, torrentIds, concurrency);
+    }
+
+    /**
+     * Download the .torrent file of a torrent to a file, which is replaced if it exists.
+     *
+     * The file is streamed to disk and only moved to the target once it is complete.
+     * Use {@link de.kaysubs.tracker.nyaasi.metainfo.TorrentMetainfo#read(Path)} to read its contents.
+     *
+     * The default implementation looks up the download link with {@link #getTorrentInfo(int)}
+     * and downloads it with a shared default client.
+     *
+     * @return size of the file in bytes
+     * @throws NoSuchTorrentException torrent id does not exist
+     * @throws WebScrapeException the torrent page has no download link
+     * @throws UncheckedIOException cannot write the file
+     * @throws HttpException networking error
+     */
+    default long downloadTorrent(int torrentId, Path target) {
+        URL downloadLink = getTorrentInfo(torrentId).getDownloadLink();
+        if (downloadLink == null)
+            throw new WebScrapeException("Torrent " + torrentId + " has no download link");
+
+        try {
+            return HttpUtil.download(downloadLink.toURI(), target);
+        } catch (URISyntaxException e) {
+            throw new WebScrapeException("Invalid download link " + downloadLink, e);
+        }
+    }
+
     /**
      * Login with username and password.
      *
@@ -1,39 +1,65 @@
 package de.kaysubs.tracker.nyaasi;
 
+import de.kaysubs.tracker.common.ConditionalCache;
+import de.kaysubs.tracker.common.HttpClientConfig;
 import de.kaysubs.tracker.common.HttpUtil;
+import de.kaysubs.tracker.common.SingleFlight;
 import de.kaysubs.tracker.common.exception.HttpErrorCodeException;
 import de.kaysubs.tracker.common.exception.HttpException;
 import de.kaysubs.tracker.nyaasi.exception.*;
+import de.kaysubs.tracker.nyaasi.model.CompactTorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.SearchPage;
 import de.kaysubs.tracker.nyaasi.model.SearchRequest;
 import de.kaysubs.tracker.nyaasi.model.Session;
+import de.kaysubs.tracker.nyaasi.model.TorrentColumns;
 import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
 import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.util.RequestExecutors;
 import de.kaysubs.tracker.nyaasi.webscrape.LoginCsrfTokenParser;
 import de.kaysubs.tracker.nyaasi.webscrape.Parser;
+import de.kaysubs.tracker.nyaasi.webscrape.SearchPageParser;
 import de.kaysubs.tracker.nyaasi.webscrape.TorrentInfoParser;
 import de.kaysubs.tracker.nyaasi.webscrape.TorrentListPage;
+import de.kaysubs.tracker.nyaasi.webscrape.TorrentListRssParser;
+import de.kaysubs.tracker.nyaasi.webscrape.TorrentListStreamParser;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
+import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.cookie.BasicCookieStore;
 import org.apache.hc.client5.http.cookie.Cookie;
 import org.apache.hc.client5.http.cookie.CookieStore;
 import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.io.CloseMode;
 import org.apache.hc.core5.net.URIBuilder;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 
-public class NyaaSiApiImpl implements NyaaSiApi {
+public class NyaaSiApiImpl implements NyaaSiApi, Closeable {
     private final static NyaaSiApiImpl SUKEBEI_INSTANCE = new NyaaSiApiImpl(true);
     private final static NyaaSiApiImpl NYAA_INSTANCE = new NyaaSiApiImpl(false);
 
@@ -47,10 +73,72 @@ public class NyaaSiApiImpl implements NyaaSiApi {
 
     protected final boolean isSukebei;
     protected final String domain;
+    protected final CloseableHttpClient client;
+    protected final HttpClientConfig config;
+    protected final RequestConfig requestConfig;
+    private final boolean ownsClient;
+
+    private final SingleFlight<String, TorrentPreview[]> searches = new SingleFlight<>();
+    private final SingleFlight<String, SearchPage> searchPages = new SingleFlight<>();
+    private final SingleFlight<Integer, TorrentInfo> torrentInfos = new SingleFlight<>();
+
+    private final ConditionalCache<TorrentPreview[]> searchValidators;
+    private final ConditionalCache<SearchPage> searchPageValidators;
+    private final ConditionalCache<TorrentInfo> torrentInfoValidators;
 
     public NyaaSiApiImpl(boolean isSukebei) {
+        this(isSukebei, new HttpClientConfig());
+    }
+
+    public NyaaSiApiImpl(boolean isSukebei, HttpClientConfig config) {
+        this(isSukebei, HttpUtil.createClient(config), config, true);
+    }
+
+    /**
+     * @param ownsClient whether the client should be closed together with this api
+     */
+    protected NyaaSiApiImpl(boolean isSukebei, CloseableHttpClient client, HttpClientConfig config, boolean ownsClient) {
         this.isSukebei = isSukebei;
         this.domain = isSukebei ? "sukebei.nyaa.si" : "nyaa.si";
+        this.client = client;
+        this.config = config;
+        this.requestConfig = HttpUtil.requestConfig(config.getTimeout(), config.getKeepAlive());
+        this.ownsClient = ownsClient;
+        this.searchValidators = new ConditionalCache<>(config.getMaxConditionalEntries());
+        this.searchPageValidators = new ConditionalCache<>(config.getMaxConditionalEntries());
+        // lazy sections would keep their part of the page alive as long as the validators are remembered
+        this.torrentInfoValidators = new ConditionalCache<>(config.getMaxConditionalEntries(), TorrentInfo::detach);
+    }
+
+    /**
+     * Close the pooled connections of this api.
+     *
+     * Apis obtained through {@link #login(String, String)} share the connection pool
+     * of the api they were created by and do not close it.
+     */
+    @Override
+    public void close() {
+        if (ownsClient)
+            client.close(CloseMode.GRACEFUL);
+    }
+
+    protected ClassicHttpResponse execute(HttpUriRequest request) {
+        return HttpUtil.executeRequest(request, client, new BasicCookieStore(), config.getMaxBodySize());
+    }
+
+    protected ClassicHttpResponse execute(HttpUriRequest request, Cookie[] cookies) {
+        return HttpUtil.executeRequest(request, client, cookies, config.getMaxBodySize());
+    }
+
+    protected ClassicHttpResponse execute(HttpUriRequest request, CookieStore cookieStore) {
+        return HttpUtil.executeRequest(request, client, cookieStore, config.getMaxBodySize());
+    }
+
+    /**
+     * Execute a request and handle the response while the body is still streamed from the connection.
+     */
+    protected <T> T execute(HttpUriRequest request, HttpClientResponseHandler<T> handler) {
+        return HttpUtil.executeRequest(request, client, new BasicCookieStore(), handler);
     }
 
     @Override
@@ -58,9 +146,40 @@ public class NyaaSiApiImpl implements NyaaSiApi {
         return isSukebei;
     }
 
+    /**
+     * Feed the response body directly into Jsoup without buffering it into a String first.
+     * Without a charset in the Content-Type header, Jsoup detects it from the page.
+     */
     protected <T> T parsePage(ClassicHttpResponse response, Parser<T> parser) {
-        Document page = Jsoup.parse(HttpUtil.readIntoString(response));
+        Document page;
+        try (InputStream in = HttpUtil.openContent(response, config.getMaxBodySize())) {
+            page = Jsoup.parse(in, HttpUtil.getCharset(response), "");
+        } catch (IOException e) {
+            throw new HttpException("Cannot read response content", e);
+        }
 
+        return applyParser(page, parser, isSukebei);
+    }
+
+    /**
+     * Parse the response like {@link #parsePage(ClassicHttpResponse, Parser)}
+     * and remember its validators and the parsed object for conditional requests.
+     */
+    protected <T> T parsePage(ClassicHttpResponse response, Parser<T> parser, ConditionalCache<T> validators, String url) {
+        Document page;
+        long bodySize;
+        try (HttpUtil.BoundedInputStream in = HttpUtil.openContent(response, config.getMaxBodySize())) {
+            page = Jsoup.parse(in, HttpUtil.getCharset(response), "");
+            bodySize = in.getBytesRead();
+        } catch (IOException e) {
+            throw new HttpException("Cannot read response content", e);
+        }
+
+        T value = applyParser(page, parser, isSukebei);
+        return validators.store(url, response, value, bodySize);
+    }
+
+    static <T> T applyParser(Document page, Parser<T> parser, boolean isSukebei) {
         try {
             return parser.parsePage(page, isSukebei);
         } catch (NyaaSiException | HttpException e) {
@@ -70,9 +189,256 @@ public class NyaaSiApiImpl implements NyaaSiApi {
         }
     }
 
+    /**
+     * Number of 304 responses to conditional requests, each of which saved downloading and parsing a page.
+     */
+    public long getNotModifiedCount() {
+        return searchValidators.getNotModifiedCount() +
+                searchPageValidators.getNotModifiedCount() +
+                torrentInfoValidators.getNotModifiedCount();
+    }
+
+    /**
+     * Number of response body bytes that did not have to be downloaded due to 304 responses.
+     */
+    public long getNotModifiedBytesSaved() {
+        return searchValidators.getBytesSaved() +
+                searchPageValidators.getBytesSaved() +
+                torrentInfoValidators.getBytesSaved();
+    }
+
+    /**
+     * Number of calls that shared the request of an identical call that was already running.
+     */
+    public long getCoalescedRequestCount() {
+        return searches.getHits() + searchPages.getHits() + torrentInfos.getHits();
+    }
+
+    /**
+     * Number of calls that had to send their own request, since no identical call was running.
+     */
+    public long getUncoalescedRequestCount() {
+        return searches.getMisses() + searchPages.getMisses() + torrentInfos.getMisses();
+    }
+
     @Override
     public TorrentPreview[] search(SearchRequest request) {
-        URI uri;
+        URI uri = buildSearchUri(domain, isSukebei, request);
+
+        // every caller gets its own copy of the shared array
+        return searches.execute(uri.toString(), () -> {
+            HttpGet get = new HttpGet(uri);
+            get.setConfig(requestConfig);
+            ConditionalCache.Entry<TorrentPreview[]> cached = searchValidators.prepare(uri.toString(), get);
+
+            return execute(get, response -> {
+                int statusCode = response.getCode();
+                if (statusCode == 304 && cached != null)
+                    return searchValidators.notModified(cached);
+
+                switch (statusCode) {
+                    case 404:
+                        return new TorrentPreview[0];
+                    case 200:
+                        return parsePage(response, new TorrentListPage(), searchValidators, uri.toString());
+                    default:
+                        throw new HttpErrorCodeException(statusCode);
+                }
+            });
+        }).clone();
+    }
+
+    @Override
+    public TorrentPreview[] searchRss(SearchRequest request) {
+        HttpGet get = new HttpGet(buildRssUri(domain, isSukebei, request));
+        get.setConfig(requestConfig);
+
+        return execute(get, response -> {
+            int statusCode = response.getCode();
+            switch (statusCode) {
+                case 404:
+                    return new TorrentPreview[0];
+                case 200:
+                    try (Reader page = openReader(response)) {
+                        return new TorrentListRssParser().parsePage(page, isSukebei);
+                    } catch (IOException e) {
+                        throw new HttpException("Cannot read response content", e);
+                    } catch (NyaaSiException | HttpException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        throw new WebScrapeException(e);
+                    }
+                default:
+                    throw new HttpErrorCodeException(statusCode);
+            }
+        });
+    }
+
+    /**
+     * Stream the search page into compact previews, so the sizes are exact and no intermediate previews are built.
+     */
+    @Override
+    public CompactTorrentPreview[] searchCompact(SearchRequest request) {
+        HttpGet get = new HttpGet(buildSearchUri(domain, isSukebei, request));
+        get.setConfig(requestConfig);
+
+        return execute(get, response -> {
+            int statusCode = response.getCode();
+            switch (statusCode) {
+                case 404:
+                    return new CompactTorrentPreview[0];
+                case 200:
+                    List<CompactTorrentPreview> torrents = new ArrayList<>();
+                    try (Reader page = openReader(response)) {
+                        new TorrentListStreamParser().parseCompactRows(page, isSukebei, torrents::add);
+                    } catch (IOException e) {
+                        throw new HttpException("Cannot read response content", e);
+                    } catch (NyaaSiException | HttpException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        throw new WebScrapeException(e);
+                    }
+                    return torrents.toArray(new CompactTorrentPreview[0]);
+                default:
+                    throw new HttpErrorCodeException(statusCode);
+            }
+        });
+    }
+
+    @Override
+    public TorrentColumns searchColumns(SearchRequest request) {
+        HttpGet get = new HttpGet(buildSearchUri(domain, isSukebei, request));
+        get.setConfig(requestConfig);
+
+        return execute(get, response -> {
+            int statusCode = response.getCode();
+            switch (statusCode) {
+                case 404:
+                    return new TorrentColumns(isSukebei, 0);
+                case 200:
+                    return parsePage(response, new TorrentListPage()::parseColumns);
+                default:
+                    throw new HttpErrorCodeException(statusCode);
+            }
+        });
+    }
+
+    @Override
+    public SearchPage searchPage(SearchRequest request) {
+        int requestedPage = request.getPage().orElse(1);
+        URI uri = buildSearchUri(domain, isSukebei, request);
+
+        SearchPage page = searchPages.execute(uri.toString(), () -> {
+            HttpGet get = new HttpGet(uri);
+            get.setConfig(requestConfig);
+            ConditionalCache.Entry<SearchPage> cached = searchPageValidators.prepare(uri.toString(), get);
+
+            return execute(get, response -> {
+                int statusCode = response.getCode();
+                if (statusCode == 304 && cached != null)
+                    return searchPageValidators.notModified(cached);
+
+                switch (statusCode) {
+                    case 404:
+                        return new SearchPage(new TorrentPreview[0], requestedPage, requestedPage, OptionalInt.empty());
+                    case 200:
+                        return parsePage(response, new SearchPageParser(requestedPage), searchPageValidators, uri.toString());
+                    default:
+                        throw new HttpErrorCodeException(statusCode);
+                }
+            });
+        });
+
+        return new SearchPage(page.getTorrents().clone(), page.getPage(), page.getLastPage(), page.getTotalResults());
+    }
+
+    @Override
+    public TorrentPreview[] searchAll(SearchRequest request, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+
+        SearchPage firstPage = searchPage(request);
+        int remainingPages = firstPage.getLastPage() - firstPage.getPage();
+        if (firstPage.getTorrents().length == 0 || remainingPages <= 0)
+            return firstPage.getTorrents();
+
+        // the pages run on the shared request threads instead of a new pool for every search
+        List<TorrentPreview[]> pages = RequestExecutors.invokeAll(remainingPages, parallelism, RequestExecutors.getDefault(),
+                i -> search(request.copy().setPage(firstPage.getPage() + 1 + i)));
+
+        List<TorrentPreview> torrents = new ArrayList<>(Arrays.asList(firstPage.getTorrents()));
+        for (TorrentPreview[] page : pages)
+            torrents.addAll(Arrays.asList(page));
+
+        return torrents.toArray(new TorrentPreview[0]);
+    }
+
+    @Override
+    public boolean search(SearchRequest request, Predicate<TorrentPreview> onResult) {
+        HttpGet get = new HttpGet(buildSearchUri(domain, isSukebei, request));
+        get.setConfig(requestConfig);
+
+        // exceptions of the callback are passed on as they are, only those of the parser are wrapped
+        AtomicReference<RuntimeException> callbackFailure = new AtomicReference<>();
+        Predicate<TorrentPreview> callback = torrent -> {
+            try {
+                return onResult.test(torrent);
+            } catch (RuntimeException e) {
+                callbackFailure.set(e);
+                get.cancel();
+                throw e;
+            }
+        };
+
+        return execute(get, response -> {
+            int statusCode = response.getCode();
+            switch (statusCode) {
+                case 404:
+                    return true;
+                case 200:
+                    try (Reader page = openReader(response)) {
+                        boolean completed = new TorrentListStreamParser().parseRows(page, isSukebei, callback);
+
+                        // Drop the connection instead of downloading the rest of the page.
+                        // This must happen before the stream is closed, since closing it drains the body.
+                        if (!completed)
+                            get.cancel();
+
+                        return completed;
+                    } catch (IOException e) {
+                        throw new HttpException("Cannot read response content", e);
+                    } catch (RuntimeException e) {
+                        if (e == callbackFailure.get() || e instanceof NyaaSiException || e instanceof HttpException)
+                            throw e;
+                        throw new WebScrapeException(e);
+                    }
+                default:
+                    throw new HttpErrorCodeException(statusCode);
+            }
+        });
+    }
+
+    /**
+     * Open the response body as a character stream.
+     * Without a charset in the Content-Type header, UTF-8 is assumed.
+     */
+    protected Reader openReader(ClassicHttpResponse response) throws IOException {
+        String charset = HttpUtil.getCharset(response);
+        return new InputStreamReader(HttpUtil.openContent(response, config.getMaxBodySize()),
+                charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset));
+    }
+
+    static URI buildRssUri(String domain, boolean isSukebei, SearchRequest request) {
+        try {
+            return new URIBuilder(buildSearchUri(domain, isSukebei, request))
+                    .addParameter("page", "rss")
+                    .build();
+        } catch (URISyntaxException e) {
+            throw new HttpException("Cannot build URL", e);
+        }
+    }
+
+    static URI buildSearchUri(String domain, boolean isSukebei, SearchRequest request) {
         try {
             URIBuilder builder = new URIBuilder()
                     .setScheme("https")
@@ -103,44 +469,62 @@ public class NyaaSiApiImpl implements NyaaSiApi {
             request.getSortedBy().ifPresent(sort ->
                     builder.addParameter("s", sort.getId()));
 
-            uri = builder.build();
+            return builder.build();
         } catch (URISyntaxException e) {
             throw new HttpException("Cannot build URL", e);
         }
-
-        HttpGet get = new HttpGet(uri);
-        get.setConfig(HttpUtil.WITH_TIMEOUT);
-
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(get);
-        int statusCode = response.getCode();
-        switch (statusCode) {
-            case 404:
-                return new TorrentPreview[0];
-            case 200:
-                return parsePage(response, new TorrentListPage());
-            default:
-                throw new HttpErrorCodeException(statusCode);
-        }
     }
 
     @Override
     public TorrentInfo getTorrentInfo(int torrentId) {
-        HttpGet get = new HttpGet("https://" + domain + "/view/" + torrentId);
-        get.setConfig(HttpUtil.WITH_TIMEOUT);
+        return findTorrentInfo(torrentId).orElseThrow(() -> new NoSuchTorrentException(torrentId));
+    }
 
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(get);
+    @Override
+    public Optional<TorrentInfo> findTorrentInfo(int torrentId) {
+        TorrentInfo info = torrentInfos.execute(torrentId, () -> {
+            String url = "https://" + domain + "/view/" + torrentId;
+            HttpGet get = new HttpGet(url);
+            get.setConfig(requestConfig);
+            ConditionalCache.Entry<TorrentInfo> cached = torrentInfoValidators.prepare(url, get);
+
+            return execute(get, response -> {
+                // a plain null instead of an exception, so scanning deleted ids stays cheap
+                if (response.getCode() == 404)
+                    return null;
+
+                if (response.getCode() == 304 && cached != null)
+                    return torrentInfoValidators.notModified(cached);
+
+                return parsePage(response, new TorrentInfoParser(true), torrentInfoValidators, url);
+            });
+        });
 
-        if (response.getCode() == 404)
-            throw new NoSuchTorrentException(torrentId);
+        return info == null ? Optional.empty() : Optional.of(info.copy());
+    }
 
-        return parsePage(response, new TorrentInfoParser());
+    @Override
+    public long downloadTorrent(int torrentId, Path target) {
+        HttpGet get = new HttpGet("https://" + domain + "/download/" + torrentId + ".torrent");
+        get.setConfig(requestConfig);
+
+        return execute(get, response -> {
+            switch (response.getCode()) {
+                case 404:
+                    throw new NoSuchTorrentException(torrentId);
+                case 200:
+                    return HttpUtil.writeContent(response, config.getMaxBodySize(), target);
+                default:
+                    throw new HttpErrorCodeException(response.getCode());
+            }
+        });
     }
 
     private String newLoginCsrfToken(CookieStore store) {
         HttpGet get = new HttpGet("https://" + domain + "/login");
-        get.setConfig(HttpUtil.WITH_TIMEOUT);
+        get.setConfig(requestConfig);
 
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(get, store);
+        ClassicHttpResponse response = execute(get, store);
         return parsePage(response, new LoginCsrfTokenParser());
     }
 
@@ -150,7 +534,7 @@ public class NyaaSiApiImpl implements NyaaSiApi {
         String csrfToken = newLoginCsrfToken(store);
 
         HttpPost post = new HttpPost("https://" + domain + "/login");
-        post.setConfig(HttpUtil.WITH_TIMEOUT);
+        post.setConfig(requestConfig);
 
         List<NameValuePair> form = new ArrayList<>();
         form.add(new BasicNameValuePair("csrf_token", csrfToken));
@@ -158,19 +542,19 @@ public class NyaaSiApiImpl implements NyaaSiApi {
         form.add(new BasicNameValuePair("password", password));
         post.setEntity(new UrlEncodedFormEntity(form, StandardCharsets.UTF_8));
 
-        HttpResponse response = HttpUtil.executeRequest(post, store);
+        HttpResponse response = execute(post, store);
         boolean didFail = Arrays.stream(response.getHeaders("Location"))
                 .anyMatch(e -> e.getValue().endsWith("/login"));
 
         if (didFail) {
             throw new LoginException();
         } else {
-            Session session = sessionFromCookies(store.getCookies());
-            return new NyaaSiAuthApiImpl(session, isSukebei);
+            Session session = sessionFromCookies(store.getCookies(), isSukebei);
+            return new NyaaSiAuthApiImpl(session, isSukebei, client, config);
         }
     }
 
-    private Session sessionFromCookies(List<Cookie> cookies) {
+    static Session sessionFromCookies(List<Cookie> cookies, boolean isSukebei) {
         String sessionId = cookies.stream()
                 .filter(c -> c.getName().equals("session")).findFirst()
                 .map(Cookie::getValue)
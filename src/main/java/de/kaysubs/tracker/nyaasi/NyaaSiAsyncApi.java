@@ -0,0 +1,55 @@
+package de.kaysubs.tracker.nyaasi;
+
+import de.kaysubs.tracker.nyaasi.model.SearchRequest;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of {@link NyaaSiApi}.
+ *
+ * Requests are sent without blocking the calling thread.
+ * Responses are parsed on a separate executor, never on the I/O threads.
+ * The futures complete exceptionally with the same exceptions
+ * that are thrown by the blocking api.
+ */
+public interface NyaaSiAsyncApi {
+    /**
+     * API for https://sukebei.nyaa.si/
+     */
+    static NyaaSiAsyncApi getSukebei() {
+        return NyaaSiAsyncApiImpl.getSukebeiInstance();
+    }
+
+    /**
+     * API for http://nyaa.si/
+     */
+    static NyaaSiAsyncApi getNyaa() {
+        return NyaaSiAsyncApiImpl.getNyaaInstance();
+    }
+
+    boolean isSukebei();
+
+    /**
+     * Search for torrents
+     *
+     * @see NyaaSiApi#search(SearchRequest)
+     */
+    CompletableFuture<TorrentPreview[]> searchAsync(SearchRequest request);
+
+    /**
+     * Get informations about a torrent
+     *
+     * @see NyaaSiApi#getTorrentInfo(int)
+     */
+    CompletableFuture<TorrentInfo> getTorrentInfoAsync(int torrentId);
+
+    /**
+     * Login with username and password.
+     *
+     * @see NyaaSiApi#login(String, String)
+     */
+    CompletableFuture<NyaaSiAuthAsyncApi> loginAsync(String username, String password);
+
+}
@@ -0,0 +1,230 @@
+package de.kaysubs.tracker.nyaasi;
+
+import de.kaysubs.tracker.common.AsyncHttpUtil;
+import de.kaysubs.tracker.common.HttpClientConfig;
+import de.kaysubs.tracker.common.HttpUtil;
+import de.kaysubs.tracker.common.exception.HttpErrorCodeException;
+import de.kaysubs.tracker.common.exception.HttpException;
+import de.kaysubs.tracker.nyaasi.exception.LoginException;
+import de.kaysubs.tracker.nyaasi.exception.NoSuchTorrentException;
+import de.kaysubs.tracker.nyaasi.model.SearchRequest;
+import de.kaysubs.tracker.nyaasi.model.Session;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.webscrape.LoginCsrfTokenParser;
+import de.kaysubs.tracker.nyaasi.webscrape.Parser;
+import de.kaysubs.tracker.nyaasi.webscrape.TorrentInfoParser;
+import de.kaysubs.tracker.nyaasi.webscrape.TorrentListPage;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.cookie.BasicCookieStore;
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.cookie.CookieStore;
+import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.http.Method;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.io.CloseMode;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+public class NyaaSiAsyncApiImpl implements NyaaSiAsyncApi, Closeable {
+
+    /**
+     * The default instances are created on first use,
+     * so the I/O reactor is only started when the async api is actually used.
+     */
+    private static class Instances {
+        private final static NyaaSiAsyncApiImpl SUKEBEI = new NyaaSiAsyncApiImpl(true);
+        private final static NyaaSiAsyncApiImpl NYAA = new NyaaSiAsyncApiImpl(false);
+    }
+
+    public static NyaaSiAsyncApiImpl getSukebeiInstance() {
+        return Instances.SUKEBEI;
+    }
+
+    public static NyaaSiAsyncApiImpl getNyaaInstance() {
+        return Instances.NYAA;
+    }
+
+    protected final boolean isSukebei;
+    protected final String domain;
+    protected final CloseableHttpAsyncClient client;
+    protected final HttpClientConfig config;
+    protected final RequestConfig requestConfig;
+    protected final Executor parseExecutor;
+    private final boolean ownsClient;
+
+    public NyaaSiAsyncApiImpl(boolean isSukebei) {
+        this(isSukebei, new HttpClientConfig(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param parseExecutor executor that parses the responses and completes the returned futures
+     */
+    public NyaaSiAsyncApiImpl(boolean isSukebei, HttpClientConfig config, Executor parseExecutor) {
+        this(isSukebei, AsyncHttpUtil.createClient(config), config, parseExecutor, true);
+    }
+
+    /**
+     * @param ownsClient whether the client should be closed together with this api
+     */
+    protected NyaaSiAsyncApiImpl(boolean isSukebei, CloseableHttpAsyncClient client, HttpClientConfig config,
+                                 Executor parseExecutor, boolean ownsClient) {
+        this.isSukebei = isSukebei;
+        this.domain = isSukebei ? "sukebei.nyaa.si" : "nyaa.si";
+        this.client = client;
+        this.config = config;
+        this.requestConfig = HttpUtil.requestConfig(config.getTimeout(), config.getKeepAlive());
+        this.parseExecutor = parseExecutor;
+        this.ownsClient = ownsClient;
+    }
+
+    /**
+     * Shut down the I/O reactor and the pooled connections of this api.
+     *
+     * Apis obtained through {@link #loginAsync(String, String)} share the client
+     * of the api they were created by and do not close it.
+     */
+    @Override
+    public void close() {
+        if (ownsClient)
+            client.close(CloseMode.GRACEFUL);
+    }
+
+    @Override
+    public boolean isSukebei() {
+        return isSukebei;
+    }
+
+    protected SimpleHttpRequest newRequest(Method method, String path) {
+        return newRequest(method, URI.create("https://" + domain + path));
+    }
+
+    protected SimpleHttpRequest newRequest(Method method, URI uri) {
+        SimpleHttpRequest request = SimpleHttpRequest.create(method, uri);
+        request.setConfig(requestConfig);
+        return request;
+    }
+
+    protected static void setForm(SimpleHttpRequest request, List<NameValuePair> form) {
+        AsyncHttpUtil.setBody(request, new UrlEncodedFormEntity(form, StandardCharsets.UTF_8));
+    }
+
+    protected CompletableFuture<SimpleHttpResponse> execute(SimpleHttpRequest request) {
+        return execute(request, new BasicCookieStore());
+    }
+
+    protected CompletableFuture<SimpleHttpResponse> execute(SimpleHttpRequest request, Cookie[] cookies) {
+        CookieStore store = new BasicCookieStore();
+        Arrays.stream(cookies).forEach(store::addCookie);
+        return execute(request, store);
+    }
+
+    protected CompletableFuture<SimpleHttpResponse> execute(SimpleHttpRequest request, CookieStore cookieStore) {
+        return AsyncHttpUtil.executeRequest(request, client, cookieStore, config.getMaxBodySize());
+    }
+
+    protected <T> T parsePage(SimpleHttpResponse response, Parser<T> parser) {
+        byte[] body = response.getBodyBytes();
+
+        Document page;
+        try {
+            page = Jsoup.parse(new ByteArrayInputStream(body == null ? new byte[0] : body),
+                    AsyncHttpUtil.getCharset(response), "");
+        } catch (IOException e) {
+            throw new HttpException("Cannot read response content", e);
+        }
+
+        return NyaaSiApiImpl.applyParser(page, parser, isSukebei);
+    }
+
+    /**
+     * Turn exceptions thrown while preparing a request into a failed future.
+     */
+    protected static <T> CompletableFuture<T> defer(Supplier<CompletableFuture<T>> f) {
+        try {
+            return f.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<TorrentPreview[]> searchAsync(SearchRequest request) {
+        return defer(() -> {
+            SimpleHttpRequest get = newRequest(Method.GET, NyaaSiApiImpl.buildSearchUri(domain, isSukebei, request));
+
+            return execute(get).thenApplyAsync(response -> {
+                int statusCode = response.getCode();
+                switch (statusCode) {
+                    case 404:
+                        return new TorrentPreview[0];
+                    case 200:
+                        return parsePage(response, new TorrentListPage());
+                    default:
+                        throw new HttpErrorCodeException(statusCode);
+                }
+            }, parseExecutor);
+        });
+    }
+
+    @Override
+    public CompletableFuture<TorrentInfo> getTorrentInfoAsync(int torrentId) {
+        return defer(() -> {
+            SimpleHttpRequest get = newRequest(Method.GET, "/view/" + torrentId);
+
+            return execute(get).thenApplyAsync(response -> {
+                if (response.getCode() == 404)
+                    throw new NoSuchTorrentException(torrentId);
+
+                return parsePage(response, new TorrentInfoParser(true));
+            }, parseExecutor);
+        });
+    }
+
+    @Override
+    public CompletableFuture<NyaaSiAuthAsyncApi> loginAsync(String username, String password) {
+        CookieStore store = new BasicCookieStore();
+
+        return execute(newRequest(Method.GET, "/login"), store)
+                .thenApplyAsync(response -> parsePage(response, new LoginCsrfTokenParser()), parseExecutor)
+                .thenCompose(csrfToken -> {
+                    SimpleHttpRequest post = newRequest(Method.POST, "/login");
+
+                    List<NameValuePair> form = new ArrayList<>();
+                    form.add(new BasicNameValuePair("csrf_token", csrfToken));
+                    form.add(new BasicNameValuePair("username", username));
+                    form.add(new BasicNameValuePair("password", password));
+                    setForm(post, form);
+
+                    return execute(post, store);
+                })
+                .thenApplyAsync(response -> {
+                    boolean didFail = Arrays.stream(response.getHeaders("Location"))
+                            .anyMatch(e -> e.getValue().endsWith("/login"));
+
+                    if (didFail)
+                        throw new LoginException();
+
+                    Session session = NyaaSiApiImpl.sessionFromCookies(store.getCookies(), isSukebei);
+                    return new NyaaSiAuthAsyncApiImpl(session, isSukebei, client, config, parseExecutor);
+                }, parseExecutor);
+    }
+
+}
@@ -1,6 +1,6 @@
 package de.kaysubs.tracker.nyaasi;
 
-import de.kaysubs.tracker.common.HttpUtil;
+import de.kaysubs.tracker.common.HttpClientConfig;
 import de.kaysubs.tracker.common.exception.HttpErrorCodeException;
 import de.kaysubs.tracker.nyaasi.exception.*;
 import de.kaysubs.tracker.nyaasi.model.*;
@@ -12,6 +12,7 @@ import org.apache.hc.client5.http.cookie.Cookie;
 import org.apache.hc.client5.http.cookie.CookieStore;
 import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
 import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.NameValuePair;
@@ -30,7 +31,20 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
     private final Session session;
 
     public NyaaSiAuthApiImpl(Session session, boolean isSukebei) {
-        super(isSukebei);
+        this(session, isSukebei, new HttpClientConfig());
+    }
+
+    public NyaaSiAuthApiImpl(Session session, boolean isSukebei, HttpClientConfig config) {
+        super(isSukebei, config);
+        this.session = session;
+    }
+
+    /**
+     * Share the connection pool of an existing api.
+     * The client will not be closed by this api.
+     */
+    protected NyaaSiAuthApiImpl(Session session, boolean isSukebei, CloseableHttpClient client, HttpClientConfig config) {
+        super(isSukebei, client, config, false);
         this.session = session;
     }
 
@@ -44,9 +58,9 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
 
     private ClassicHttpResponse fetchAccountInfoPage(Cookie[] cookies) {
         HttpGet get = new HttpGet("https://" + domain + "/profile");
-        get.setConfig(HttpUtil.WITH_TIMEOUT);
+        get.setConfig(requestConfig);
 
-        return (ClassicHttpResponse) HttpUtil.executeRequest(get, cookies);
+        return execute(get, cookies);
     }
 
     @Override
@@ -60,7 +74,7 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
         String csrfToken = parsePage(fetchAccountInfoPage(), new AccountInfoCsrfTokenParser()).getEmailToken();
 
         HttpPost post = new HttpPost("https://" + domain + "/profile");
-        post.setConfig(HttpUtil.WITH_TIMEOUT);
+        post.setConfig(requestConfig);
 
         List<NameValuePair> form = new ArrayList<>();
         form.add(new BasicNameValuePair("csrf_token", csrfToken));
@@ -70,7 +84,7 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
 
         CookieStore cookieStore = new BasicCookieStore();
         cookieStore.addCookie(session.toCookie());
-        HttpUtil.executeRequest(post, cookieStore);
+        execute(post, cookieStore);
 
         ClassicHttpResponse response = fetchAccountInfoPage(cookieStore.getCookies().toArray(new Cookie[0]));
         parsePage(response, new ValidateEmailChange());
@@ -83,7 +97,7 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
 
         String csrfToken = parsePage(fetchAccountInfoPage(), new AccountInfoCsrfTokenParser()).getPasswordToken();
         HttpPost post = new HttpPost("https://" + domain + "/profile");
-        post.setConfig(HttpUtil.WITH_TIMEOUT);
+        post.setConfig(requestConfig);
 
         List<NameValuePair> form = new ArrayList<>();
         form.add(new BasicNameValuePair("csrf_token", csrfToken));
@@ -94,7 +108,7 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
 
         CookieStore cookieStore = new BasicCookieStore();
         cookieStore.addCookie(session.toCookie());
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(post, cookieStore);
+        ClassicHttpResponse response = execute(post, cookieStore);
 
         int statusCode = response.getCode();
         if (statusCode == 302) {
@@ -109,16 +123,16 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
 
     private String newUploadCsrfToken() {
         HttpGet get = new HttpGet("https://" + domain + "/upload");
-        get.setConfig(HttpUtil.WITH_TIMEOUT);
+        get.setConfig(requestConfig);
 
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(get, new Cookie[]{session.toCookie()});
+        ClassicHttpResponse response = execute(get, new Cookie[]{session.toCookie()});
         return parsePage(response, new UploadCsrfTokenParser());
     }
 
     @Override
     public int uploadTorrent(UploadTorrentRequest request) {
         HttpPost post = new HttpPost("https://" + domain + "/upload");
-        post.setConfig(HttpUtil.WITH_TIMEOUT);
+        post.setConfig(requestConfig);
 
         MultipartEntityBuilder builder = MultipartEntityBuilder.create();
 
@@ -152,14 +166,14 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
 
         post.setEntity(builder.build());
 
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(post, new Cookie[]{session.toCookie()});
+        ClassicHttpResponse response = execute(post, new Cookie[]{session.toCookie()});
 
         parsePage(response, new ValidateUploadResponse());
 
         return parseViewUrl(response.getFirstHeader("Location").getValue());
     }
 
-    private int parseViewUrl(String viewUrl) {
+    static int parseViewUrl(String viewUrl) {
         Matcher matcher = VIEW_URL_PATTERN.matcher(viewUrl);
         if (matcher.matches()) {
             return Integer.parseInt(matcher.group(1));
@@ -170,9 +184,9 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
 
     private String newDeleteCsrfToken(int torrentId) {
         HttpGet get = new HttpGet("https://" + domain + "/view/" + torrentId + "/edit");
-        get.setConfig(HttpUtil.WITH_TIMEOUT);
+        get.setConfig(requestConfig);
 
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(get, new Cookie[]{session.toCookie()});
+        ClassicHttpResponse response = execute(get, new Cookie[]{session.toCookie()});
         int statusCode = response.getCode();
         switch (statusCode) {
             case 200:
@@ -191,14 +205,14 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
         String csrfToken = newDeleteCsrfToken(torrentId);
 
         HttpPost post = new HttpPost("https://" + domain + "/view/" + torrentId + "/edit");
-        post.setConfig(HttpUtil.WITH_TIMEOUT);
+        post.setConfig(requestConfig);
 
         List<NameValuePair> form = new ArrayList<>();
         form.add(new BasicNameValuePair("csrf_token", csrfToken));
         form.add(new BasicNameValuePair("delete", "Delete"));
         post.setEntity(new UrlEncodedFormEntity(form, StandardCharsets.UTF_8));
 
-        HttpUtil.executeRequest(post, new Cookie[]{session.toCookie()});
+        execute(post, new Cookie[]{session.toCookie()});
     }
 
     @Override
@@ -209,7 +223,7 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
             throw new IllegalCategoryException();
 
         HttpPost post = new HttpPost("https://" + domain + "/view/" + torrentId + "/edit");
-        post.setConfig(HttpUtil.WITH_TIMEOUT);
+        post.setConfig(requestConfig);
 
         SubCategory c = request.getCategory();
         MultipartEntityBuilder builder = MultipartEntityBuilder.create();
@@ -225,14 +239,14 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
         builder.addTextBody("submit", "Save Changes");
         post.setEntity(builder.build());
 
-        HttpUtil.executeRequest(post, new Cookie[]{session.toCookie()});
+        execute(post, new Cookie[]{session.toCookie()});
     }
 
     private EditTorrentRequest newEditRequest(int torrentId) {
         HttpGet get = new HttpGet("https://" + domain + "/view/" + torrentId + "/edit");
-        get.setConfig(HttpUtil.WITH_TIMEOUT);
+        get.setConfig(requestConfig);
 
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(get, new Cookie[]{session.toCookie()});
+        ClassicHttpResponse response = execute(get, new Cookie[]{session.toCookie()});
 
         int statusCode = response.getCode();
         switch (statusCode) {
@@ -255,9 +269,9 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
 
     private ClassicHttpResponse fetchViewTorrentPage(int torrentId, CookieStore store) {
         HttpGet get = new HttpGet("https://" + domain + "/view/" + torrentId);
-        get.setConfig(HttpUtil.WITH_TIMEOUT);
+        get.setConfig(requestConfig);
 
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(get, store);
+        ClassicHttpResponse response = execute(get, store);
 
         int statusCode = response.getCode();
         switch (statusCode) {
@@ -280,7 +294,7 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
         String csrfToken = newWriteCommentCsrfToken(torrentId);
 
         HttpPost post = new HttpPost("https://" + domain + "/view/" + torrentId);
-        post.setConfig(HttpUtil.WITH_TIMEOUT);
+        post.setConfig(requestConfig);
 
         List<NameValuePair> form = new ArrayList<>();
         form.add(new BasicNameValuePair("csrf_token", csrfToken));
@@ -289,7 +303,7 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
 
         CookieStore cookieStore = new BasicCookieStore();
         cookieStore.addCookie(session.toCookie());
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(post, cookieStore);
+        ClassicHttpResponse response = execute(post, cookieStore);
 
         int statusCode = response.getCode();
         if (statusCode == 302) {
@@ -317,7 +331,7 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
         form.add(new BasicNameValuePair("comment", newMessage));
         post.setEntity(new UrlEncodedFormEntity(form, StandardCharsets.UTF_8));
 
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(post, new Cookie[]{session.toCookie()});
+        ClassicHttpResponse response = execute(post, new Cookie[]{session.toCookie()});
 
         int statusCode = response.getCode();
         switch (statusCode) {
@@ -333,7 +347,7 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
     @Override
     public void deleteComment(int torrentId, int commentId) {
         HttpPost post = new HttpPost("https://" + domain + "/view/" + torrentId + "/comment/" + commentId + "/delete");
-        post.setConfig(HttpUtil.WITH_TIMEOUT);
+        post.setConfig(requestConfig);
 
         List<NameValuePair> form = new ArrayList<>();
         form.add(new BasicNameValuePair("submit", ""));
@@ -341,7 +355,7 @@ public class NyaaSiAuthApiImpl extends NyaaSiApiImpl implements NyaaSiAuthApi {
 
         CookieStore cookieStore = new BasicCookieStore();
         cookieStore.addCookie(session.toCookie());
-        ClassicHttpResponse response = (ClassicHttpResponse) HttpUtil.executeRequest(post, cookieStore);
+        ClassicHttpResponse response = execute(post, cookieStore);
 
         int statusCode = response.getCode();
         switch (statusCode) {
@@ -0,0 +1,82 @@
+package de.kaysubs.tracker.nyaasi;
+
+import de.kaysubs.tracker.nyaasi.model.AccountInfo;
+import de.kaysubs.tracker.nyaasi.model.EditTorrentRequest;
+import de.kaysubs.tracker.nyaasi.model.UploadTorrentRequest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking variant of {@link NyaaSiAuthApi}.
+ */
+public interface NyaaSiAuthAsyncApi extends NyaaSiAsyncApi {
+
+    /**
+     * Get information about your account.
+     *
+     * @see NyaaSiAuthApi#getAccountInfo()
+     */
+    CompletableFuture<AccountInfo> getAccountInfoAsync();
+
+    /**
+     * Change your email address
+     *
+     * @see NyaaSiAuthApi#changeEmail(String, String)
+     */
+    CompletableFuture<Void> changeEmailAsync(String currentPassword, String newEmail);
+
+    /**
+     * Change your password.
+     *
+     * @see NyaaSiAuthApi#changePassword(String, String)
+     */
+    CompletableFuture<Void> changePasswordAsync(String currentPassword, String newPassword);
+
+    /**
+     * Upload a torrent.
+     *
+     * @return future of the torrent id
+     * @see NyaaSiAuthApi#uploadTorrent(UploadTorrentRequest)
+     */
+    CompletableFuture<Integer> uploadTorrentAsync(UploadTorrentRequest request);
+
+    /**
+     * Delete a torrent uploaded with this account.
+     *
+     * @see NyaaSiAuthApi#deleteTorrent(int)
+     */
+    CompletableFuture<Void> deleteTorrentAsync(int torrentId);
+
+    /**
+     * Edit a torrent uploaded with this account.
+     *
+     * The consumer is called on the parse executor.
+     *
+     * @see NyaaSiAuthApi#editTorrent(int, Consumer)
+     */
+    CompletableFuture<Void> editTorrentAsync(int torrentId, Consumer<EditTorrentRequest> f);
+
+    /**
+     * Post a comment below a torrent.
+     *
+     * @return future of the comment id
+     * @see NyaaSiAuthApi#writeComment(int, String)
+     */
+    CompletableFuture<Integer> writeCommentAsync(int torrentId, String message);
+
+    /**
+     * Edit a comment below a torrent.
+     *
+     * @see NyaaSiAuthApi#editComment(int, int, String)
+     */
+    CompletableFuture<Void> editCommentAsync(int torrentId, int commentId, String newMessage);
+
+    /**
+     * Delete a comment below a torrent.
+     *
+     * @see NyaaSiAuthApi#deleteComment(int, int)
+     */
+    CompletableFuture<Void> deleteCommentAsync(int torrentId, int commentId);
+
+}
@@ -0,0 +1,328 @@
+package de.kaysubs.tracker.nyaasi;
+
+import de.kaysubs.tracker.common.AsyncHttpUtil;
+import de.kaysubs.tracker.common.HttpClientConfig;
+import de.kaysubs.tracker.common.exception.HttpErrorCodeException;
+import de.kaysubs.tracker.nyaasi.exception.*;
+import de.kaysubs.tracker.nyaasi.model.*;
+import de.kaysubs.tracker.nyaasi.webscrape.*;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.cookie.BasicCookieStore;
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.cookie.CookieStore;
+import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Method;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+public class NyaaSiAuthAsyncApiImpl extends NyaaSiAsyncApiImpl implements NyaaSiAuthAsyncApi {
+    private final Session session;
+
+    /**
+     * Share the client of an existing api.
+     * The client will not be closed by this api.
+     */
+    protected NyaaSiAuthAsyncApiImpl(Session session, boolean isSukebei, CloseableHttpAsyncClient client,
+                                     HttpClientConfig config, Executor parseExecutor) {
+        super(isSukebei, client, config, parseExecutor, false);
+        this.session = session;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    private Cookie[] sessionCookies() {
+        return new Cookie[]{session.toCookie()};
+    }
+
+    private CookieStore newSessionCookieStore() {
+        CookieStore cookieStore = new BasicCookieStore();
+        cookieStore.addCookie(session.toCookie());
+        return cookieStore;
+    }
+
+    private CompletableFuture<SimpleHttpResponse> fetchAccountInfoPage(Cookie[] cookies) {
+        return execute(newRequest(Method.GET, "/profile"), cookies);
+    }
+
+    @Override
+    public CompletableFuture<AccountInfo> getAccountInfoAsync() {
+        return fetchAccountInfoPage(sessionCookies())
+                .thenApplyAsync(response -> parsePage(response, new AccountInfoParser()), parseExecutor);
+    }
+
+    private CompletableFuture<AccountInfoCsrfTokenParser.Tokens> newAccountInfoCsrfTokens() {
+        return fetchAccountInfoPage(sessionCookies())
+                .thenApplyAsync(response -> parsePage(response, new AccountInfoCsrfTokenParser()), parseExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> changeEmailAsync(String currentPassword, String newEmail) {
+        CookieStore cookieStore = newSessionCookieStore();
+
+        return newAccountInfoCsrfTokens()
+                .thenCompose(tokens -> {
+                    SimpleHttpRequest post = newRequest(Method.POST, "/profile");
+
+                    List<NameValuePair> form = new ArrayList<>();
+                    form.add(new BasicNameValuePair("csrf_token", tokens.getEmailToken()));
+                    form.add(new BasicNameValuePair("email", newEmail));
+                    form.add(new BasicNameValuePair("current_password", currentPassword));
+                    setForm(post, form);
+
+                    return execute(post, cookieStore);
+                })
+                .thenCompose(response -> fetchAccountInfoPage(cookieStore.getCookies().toArray(new Cookie[0])))
+                .thenApplyAsync(response -> parsePage(response, new ValidateEmailChange()), parseExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> changePasswordAsync(String currentPassword, String newPassword) {
+        if (currentPassword.isEmpty())
+            return CompletableFuture.failedFuture(new LoginException());
+
+        CookieStore cookieStore = newSessionCookieStore();
+
+        return newAccountInfoCsrfTokens()
+                .thenCompose(tokens -> {
+                    SimpleHttpRequest post = newRequest(Method.POST, "/profile");
+
+                    List<NameValuePair> form = new ArrayList<>();
+                    form.add(new BasicNameValuePair("csrf_token", tokens.getPasswordToken()));
+                    form.add(new BasicNameValuePair("current_password", currentPassword));
+                    form.add(new BasicNameValuePair("new_password", newPassword));
+                    form.add(new BasicNameValuePair("password_confirm", newPassword));
+                    setForm(post, form);
+
+                    return execute(post, cookieStore);
+                })
+                .thenCompose(response -> {
+                    int statusCode = response.getCode();
+                    if (statusCode == 302)
+                        return fetchAccountInfoPage(cookieStore.getCookies().toArray(new Cookie[0]));
+                    else if (statusCode != 200)
+                        throw new HttpErrorCodeException(statusCode);
+                    else
+                        return CompletableFuture.completedFuture(response);
+                })
+                .thenApplyAsync(response -> parsePage(response, new ValidatePasswordChange()), parseExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> uploadTorrentAsync(UploadTorrentRequest request) {
+        return execute(newRequest(Method.GET, "/upload"), sessionCookies())
+                .thenApplyAsync(response -> parsePage(response, new UploadCsrfTokenParser()), parseExecutor)
+                .thenCompose(csrfToken -> {
+                    SimpleHttpRequest post = newRequest(Method.POST, "/upload");
+
+                    MultipartEntityBuilder builder = MultipartEntityBuilder.create();
+
+                    builder.addTextBody("csrf_token", csrfToken);
+
+                    ContentType torrentMime = ContentType.create("application/x-bittorrent");
+                    builder.addBinaryBody("torrent_file", request.getSeedfile(), torrentMime, request.getSeedfile().getName());
+
+                    builder.addTextBody("display_name", request.getName());
+
+                    SubCategory c = request.getCategory();
+                    if (c.isSukebei() != isSukebei)
+                        throw new IllegalCategoryException();
+                    builder.addTextBody("category", c.getMainCategoryId() + "_" + c.getSubCategoryId());
+
+                    builder.addTextBody("information", request.getInformation().orElse(""));
+
+                    if (request.isAnonymous())
+                        builder.addTextBody("is_anonymous", "y");
+
+                    if (request.isHidden())
+                        builder.addTextBody("is_hidden", "y");
+
+                    if (request.isRemake())
+                        builder.addTextBody("is_remake", "y");
+
+                    if (request.isCompleted())
+                        builder.addTextBody("is_complete", "y");
+
+                    builder.addTextBody("description", request.getDescription().orElse(""));
+
+                    AsyncHttpUtil.setBody(post, builder.build());
+
+                    return execute(post, sessionCookies());
+                })
+                .thenApplyAsync(response -> {
+                    parsePage(response, new ValidateUploadResponse());
+
+                    return NyaaSiAuthApiImpl.parseViewUrl(response.getFirstHeader("Location").getValue());
+                }, parseExecutor);
+    }
+
+    /**
+     * Fetch the edit page of a torrent and parse it if we're allowed to edit the torrent.
+     */
+    private <T> CompletableFuture<T> fetchEditPage(int torrentId, Parser<T> parser) {
+        return execute(newRequest(Method.GET, "/view/" + torrentId + "/edit"), sessionCookies())
+                .thenApplyAsync(response -> {
+                    int statusCode = response.getCode();
+                    switch (statusCode) {
+                        case 200:
+                            return parsePage(response, parser);
+                        case 403:
+                            throw new PermissionException();
+                        case 404:
+                            throw new NoSuchTorrentException(torrentId);
+                        default:
+                            throw new HttpErrorCodeException(statusCode);
+                    }
+                }, parseExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteTorrentAsync(int torrentId) {
+        return fetchEditPage(torrentId, new DeleteCsrfTokenParser())
+                .thenCompose(csrfToken -> {
+                    SimpleHttpRequest post = newRequest(Method.POST, "/view/" + torrentId + "/edit");
+
+                    List<NameValuePair> form = new ArrayList<>();
+                    form.add(new BasicNameValuePair("csrf_token", csrfToken));
+                    form.add(new BasicNameValuePair("delete", "Delete"));
+                    setForm(post, form);
+
+                    return execute(post, sessionCookies());
+                })
+                .thenAcceptAsync(response -> {}, parseExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> editTorrentAsync(int torrentId, Consumer<EditTorrentRequest> f) {
+        return fetchEditPage(torrentId, new EditTorrentParser())
+                .thenCompose(request -> {
+                    f.accept(request);
+                    if (request.getCategory().isSukebei() != isSukebei)
+                        throw new IllegalCategoryException();
+
+                    SimpleHttpRequest post = newRequest(Method.POST, "/view/" + torrentId + "/edit");
+
+                    SubCategory c = request.getCategory();
+                    MultipartEntityBuilder builder = MultipartEntityBuilder.create();
+                    builder.addTextBody("csrf_token", request.getCsrfToken());
+                    builder.addTextBody("display_name", request.getName());
+                    builder.addTextBody("category", c.getMainCategoryId() + "_" + c.getSubCategoryId());
+                    builder.addTextBody("information", request.getInformation());
+                    if (request.isAnonymous()) builder.addTextBody("is_anonymous", "y");
+                    if (request.isHidden()) builder.addTextBody("is_hidden", "y");
+                    if (request.isRemake()) builder.addTextBody("is_remake", "y");
+                    if (request.isCompleted()) builder.addTextBody("is_complete", "y");
+                    builder.addTextBody("description", request.getDescription());
+                    builder.addTextBody("submit", "Save Changes");
+                    AsyncHttpUtil.setBody(post, builder.build());
+
+                    return execute(post, sessionCookies());
+                })
+                .thenAcceptAsync(response -> {}, parseExecutor);
+    }
+
+    private CompletableFuture<SimpleHttpResponse> fetchViewTorrentPage(int torrentId, CookieStore store) {
+        return execute(newRequest(Method.GET, "/view/" + torrentId), store)
+                .thenApply(response -> {
+                    int statusCode = response.getCode();
+                    switch (statusCode) {
+                        case 200:
+                            return response;
+                        case 404:
+                            throw new NoSuchTorrentException(torrentId);
+                        default:
+                            throw new HttpErrorCodeException(statusCode);
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<Integer> writeCommentAsync(int torrentId, String message) {
+        CookieStore cookieStore = newSessionCookieStore();
+
+        return fetchViewTorrentPage(torrentId, newSessionCookieStore())
+                .thenApplyAsync(response -> parsePage(response, new WriteCommentCsrfTokenParser()), parseExecutor)
+                .thenCompose(csrfToken -> {
+                    SimpleHttpRequest post = newRequest(Method.POST, "/view/" + torrentId);
+
+                    List<NameValuePair> form = new ArrayList<>();
+                    form.add(new BasicNameValuePair("csrf_token", csrfToken));
+                    form.add(new BasicNameValuePair("comment", message));
+                    setForm(post, form);
+
+                    return execute(post, cookieStore);
+                })
+                .thenCompose(response -> {
+                    int statusCode = response.getCode();
+                    if (statusCode != 302)
+                        throw new HttpErrorCodeException(statusCode);
+
+                    String redirectUrl = response.getFirstHeader("Location").getValue();
+                    return fetchViewTorrentPage(torrentId, cookieStore).thenApplyAsync(page ->
+                            parsePage(page, new WriteCommentResponseParser(redirectUrl)), parseExecutor);
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> editCommentAsync(int torrentId, int commentId, String newMessage) {
+        return fetchViewTorrentPage(torrentId, newSessionCookieStore())
+                .thenApplyAsync(response -> parsePage(response, new EditCommentCsrfTokenParser(commentId)), parseExecutor)
+                .thenCompose(csrfToken -> {
+                    SimpleHttpRequest post = newRequest(Method.POST, "/view/" + torrentId + "/comment/" + commentId + "/edit");
+
+                    List<NameValuePair> form = new ArrayList<>();
+                    form.add(new BasicNameValuePair("csrf_token", csrfToken));
+                    form.add(new BasicNameValuePair("comment", newMessage));
+                    setForm(post, form);
+
+                    return execute(post, sessionCookies());
+                })
+                .thenAcceptAsync(response -> {
+                    int statusCode = response.getCode();
+                    switch (statusCode) {
+                        case 200:
+                            return;
+                        case 400:
+                            throw new CannotEditException();
+                        default:
+                            throw new HttpErrorCodeException(statusCode);
+                    }
+                }, parseExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteCommentAsync(int torrentId, int commentId) {
+        SimpleHttpRequest post = newRequest(Method.POST, "/view/" + torrentId + "/comment/" + commentId + "/delete");
+
+        List<NameValuePair> form = new ArrayList<>();
+        form.add(new BasicNameValuePair("submit", ""));
+        setForm(post, form);
+
+        CookieStore cookieStore = newSessionCookieStore();
+        return execute(post, cookieStore)
+                .thenCompose(response -> {
+                    int statusCode = response.getCode();
+                    switch (statusCode) {
+                        case 302:
+                            return fetchViewTorrentPage(torrentId, cookieStore);
+                        case 403:
+                            throw new PermissionException();
+                        case 404:
+                            throw new NoSuchCommentException();
+                        default:
+                            throw new HttpErrorCodeException(statusCode);
+                    }
+                })
+                .thenAcceptAsync(response -> parsePage(response, new ValidateDeleteComment()), parseExecutor);
+    }
+}
@@ -0,0 +1,326 @@
+package de.kaysubs.tracker.nyaasi.cache;
+
+import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.NyaaSiAuthApi;
+import de.kaysubs.tracker.nyaasi.model.CompactTorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.SearchPage;
+import de.kaysubs.tracker.nyaasi.model.SearchRequest;
+import de.kaysubs.tracker.nyaasi.model.TorrentColumns;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.util.RequestExecutors;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Wraps an api and keeps the results of {@link #search(SearchRequest)}, {@link #searchPage(SearchRequest)}
+ * and {@link #searchRss(SearchRequest)} in memory, so repeated searches are answered without a request.
+ * {@link #searchAll(SearchRequest, int)} loads its pages through the cache as well.
+ * If a {@link TorrentInfoCacheConfig} is given, torrent infos are cached as well.
+ *
+ * All other calls, including the streaming and compact searches, are passed to the wrapped api.
+ */
+public class CachingNyaaSiApi implements NyaaSiApi {
+    private final NyaaSiApi api;
+    private final SearchCacheConfig config;
+    private final Optional<TorrentInfoCache> torrentInfoCache;
+
+    // access ordered, so the first entry is the least recently used one
+    private final LinkedHashMap<SearchKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static class Entry {
+        private final TorrentPreview[] torrents;
+        // pagination info, null if the entry was stored by search
+        private final SearchPage page;
+        private final long expiresAt;
+        private final long size;
+
+        private Entry(TorrentPreview[] torrents, SearchPage page, long expiresAt, long size) {
+            this.torrents = torrents;
+            this.page = page;
+            this.expiresAt = expiresAt;
+            this.size = size;
+        }
+    }
+
+    public CachingNyaaSiApi(NyaaSiApi api) {
+        this(api, new SearchCacheConfig());
+    }
+
+    public CachingNyaaSiApi(NyaaSiApi api, SearchCacheConfig config) {
+        this.api = api;
+        this.config = config;
+        this.torrentInfoCache = Optional.empty();
+    }
+
+    public CachingNyaaSiApi(NyaaSiApi api, SearchCacheConfig config, TorrentInfoCacheConfig torrentInfoConfig) {
+        this.api = api;
+        this.config = config;
+        this.torrentInfoCache = Optional.of(new TorrentInfoCache(api.isSukebei(), torrentInfoConfig));
+    }
+
+    public Optional<TorrentInfoCache> getTorrentInfoCache() {
+        return torrentInfoCache;
+    }
+
+    @Override
+    public boolean isSukebei() {
+        return api.isSukebei();
+    }
+
+    @Override
+    public TorrentPreview[] search(SearchRequest request) {
+        SearchKey key = SearchKey.of(request);
+
+        Entry entry = get(key);
+        if (entry != null) {
+            hits.increment();
+            return entry.torrents.clone();
+        }
+
+        misses.increment();
+        TorrentPreview[] torrents = api.search(request);
+        store(key, torrents, null);
+        return torrents;
+    }
+
+    @Override
+    public TorrentPreview[] searchRss(SearchRequest request) {
+        SearchKey key = SearchKey.ofRss(request);
+
+        Entry entry = get(key);
+        if (entry != null) {
+            hits.increment();
+            return entry.torrents.clone();
+        }
+
+        misses.increment();
+        TorrentPreview[] torrents = api.searchRss(request);
+        store(key, torrents, null);
+        return torrents;
+    }
+
+    /**
+     * Shares its cache entries with {@link #search(SearchRequest)},
+     * but entries stored by search lack the pagination info and are loaded again.
+     */
+    @Override
+    public SearchPage searchPage(SearchRequest request) {
+        SearchKey key = SearchKey.of(request);
+
+        Entry entry = get(key);
+        if (entry != null && entry.page != null) {
+            hits.increment();
+            return copy(entry.page);
+        }
+
+        misses.increment();
+        SearchPage page = api.searchPage(request);
+        store(key, page.getTorrents(), page);
+        return page;
+    }
+
+    private static SearchPage copy(SearchPage page) {
+        return new SearchPage(page.getTorrents().clone(), page.getPage(), page.getLastPage(), page.getTotalResults());
+    }
+
+    /**
+     * Load the first page through the cache to find out how many pages there are,
+     * then load the remaining pages through the cache concurrently,
+     * on the calling thread and the shared threads of {@link RequestExecutors#getDefault()}.
+     */
+    @Override
+    public TorrentPreview[] searchAll(SearchRequest request, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+
+        SearchPage lastPage = searchPage(request);
+        List<TorrentPreview> torrents = new ArrayList<>(Arrays.asList(lastPage.getTorrents()));
+
+        // apis that do not know the number of pages only announce the next one
+        while (lastPage.getTorrents().length > 0 && !lastPage.isLastPage()) {
+            int firstPending = lastPage.getPage() + 1;
+            int pendingPages = lastPage.getLastPage() - lastPage.getPage();
+
+            List<SearchPage> pages = RequestExecutors.invokeAll(pendingPages, parallelism, RequestExecutors.getDefault(),
+                    i -> searchPage(request.copy().setPage(firstPending + i)));
+
+            for (SearchPage page : pages) {
+                lastPage = page;
+                torrents.addAll(Arrays.asList(page.getTorrents()));
+                if (page.getTorrents().length == 0)
+                    break;
+            }
+        }
+
+        return torrents.toArray(new TorrentPreview[0]);
+    }
+
+    @Override
+    public boolean search(SearchRequest request, Predicate<TorrentPreview> onResult) {
+        return api.search(request, onResult);
+    }
+
+    @Override
+    public CompactTorrentPreview[] searchCompact(SearchRequest request) {
+        return api.searchCompact(request);
+    }
+
+    @Override
+    public TorrentColumns searchColumns(SearchRequest request) {
+        return api.searchColumns(request);
+    }
+
+    /**
+     * @return entry that has not expired yet or null
+     */
+    private synchronized Entry get(SearchKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+
+        if (entry.expiresAt - System.nanoTime() > 0)
+            return entry;
+
+        remove(key);
+        return null;
+    }
+
+    private void store(SearchKey key, TorrentPreview[] torrents, SearchPage page) {
+        Duration ttl = config.getTtl().apply(key);
+        if (ttl != null && !ttl.isNegative() && !ttl.isZero())
+            put(key, new Entry(torrents.clone(), page == null ? null : copy(page),
+                    System.nanoTime() + ttl.toNanos(), estimateSize(torrents)));
+    }
+
+    private synchronized void put(SearchKey key, Entry entry) {
+        if (entry.size > config.getMaxBytes())
+            return;
+
+        Entry previous = entries.put(key, entry);
+        if (previous != null)
+            cachedBytes -= previous.size;
+        cachedBytes += entry.size;
+
+        Iterator<Map.Entry<SearchKey, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > config.getMaxEntries() || cachedBytes > config.getMaxBytes()) {
+            Entry evicted = iterator.next().getValue();
+            iterator.remove();
+            cachedBytes -= evicted.size;
+            evictions.increment();
+        }
+    }
+
+    private void remove(SearchKey key) {
+        Entry removed = entries.remove(key);
+        if (removed != null)
+            cachedBytes -= removed.size;
+    }
+
+    /**
+     * Drop the cached results of a search.
+     */
+    public synchronized void invalidate(SearchRequest request) {
+        remove(SearchKey.of(request));
+    }
+
+    /**
+     * Drop all cached results.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * Rough estimate of the heap size of a search result.
+     */
+    static long estimateSize(TorrentPreview[] torrents) {
+        long size = 16 + 4L * torrents.length;
+        for (TorrentPreview torrent : torrents) {
+            // the preview itself, its data size and date
+            size += 128;
+            size += 40 + 2L * torrent.getTitle().length();
+            if (torrent.getMagnetLink() != null)
+                size += 80 + 2L * torrent.getMagnetLink().toString().length();
+            if (torrent.getDownloadLink() != null)
+                size += 120 + 2L * torrent.getDownloadLink().toString().length();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int getCachedEntries() {
+        return entries.size();
+    }
+
+    /**
+     * Estimated heap size of all cached results.
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    @Override
+    public TorrentInfo getTorrentInfo(int torrentId) {
+        return torrentInfoCache
+                .map(cache -> cache.get(torrentId, true, api::getTorrentInfo))
+                .orElseGet(() -> api.getTorrentInfo(torrentId));
+    }
+
+    @Override
+    public Optional<TorrentInfo> findTorrentInfo(int torrentId) {
+        // ids that do not exist are not cached
+        return torrentInfoCache
+                .map(cache -> Optional.ofNullable(cache.get(torrentId, true, id -> api.findTorrentInfo(id).orElse(null))))
+                .orElseGet(() -> api.findTorrentInfo(torrentId));
+    }
+
+    /**
+     * Get informations about a torrent, where seeders, leechers, completed downloads and comments
+     * may be older than the volatile ttl of the torrent info cache.
+     *
+     * Use this if only the static parts, like the description or file list, are of interest.
+     */
+    public TorrentInfo getStaticTorrentInfo(int torrentId) {
+        return torrentInfoCache
+                .map(cache -> cache.get(torrentId, false, api::getTorrentInfo))
+                .orElseGet(() -> api.getTorrentInfo(torrentId));
+    }
+
+    @Override
+    public long downloadTorrent(int torrentId, Path target) {
+        return api.downloadTorrent(torrentId, target);
+    }
+
+    @Override
+    public NyaaSiAuthApi login(String username, String password) {
+        return api.login(username, password);
+    }
+}
@@ -0,0 +1,60 @@
+package de.kaysubs.tracker.nyaasi.cache;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Settings for the search result cache of {@link CachingNyaaSiApi}.
+ */
+public class SearchCacheConfig {
+    private Function<SearchKey, Duration> ttl = key -> Duration.ofMinutes(1);
+    private int maxEntries = 1000;
+    private long maxBytes = 64L * 1024 * 1024;
+
+    public Function<SearchKey, Duration> getTtl() {
+        return ttl;
+    }
+
+    /**
+     * How long the results of any search are kept.
+     */
+    public SearchCacheConfig setTtl(Duration ttl) {
+        this.ttl = key -> ttl;
+        return this;
+    }
+
+    /**
+     * How long the results of a search are kept, depending on the search.
+     * Results with a zero or negative duration are not cached.
+     */
+    public SearchCacheConfig setTtl(Function<SearchKey, Duration> ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Maximum number of cached searches.
+     * The least recently used search is evicted once the limit is reached.
+     */
+    public SearchCacheConfig setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Maximum estimated heap size of all cached results.
+     * The least recently used searches are evicted once the limit is reached.
+     */
+    public SearchCacheConfig setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+}
@@ -0,0 +1,130 @@
+package de.kaysubs.tracker.nyaasi.cache;
+
+import de.kaysubs.tracker.nyaasi.model.Category;
+import de.kaysubs.tracker.nyaasi.model.SearchRequest;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Immutable key of a search request.
+ *
+ * Requests that nyaa answers identically map to the same key,
+ * e.g. no page and page 1, or no sort order and sorting by date in descending order.
+ * The rss feed of a search has a different key than its html page.
+ */
+public final class SearchKey {
+    private final String term;
+    private final Category category;
+    private final SearchRequest.Filter filter;
+    private final String user;
+    private final int page;
+    private final SearchRequest.Ordering ordering;
+    private final SearchRequest.Sort sortedBy;
+    private final boolean rss;
+
+    private SearchKey(String term, Category category, SearchRequest.Filter filter, String user, int page,
+                      SearchRequest.Ordering ordering, SearchRequest.Sort sortedBy, boolean rss) {
+        this.term = term;
+        this.category = category;
+        this.filter = filter;
+        this.user = user;
+        this.page = page;
+        this.ordering = ordering;
+        this.sortedBy = sortedBy;
+        this.rss = rss;
+    }
+
+    public static SearchKey of(SearchRequest request) {
+        return of(request, false);
+    }
+
+    /**
+     * Key of the rss feed of a search.
+     */
+    public static SearchKey ofRss(SearchRequest request) {
+        return of(request, true);
+    }
+
+    private static SearchKey of(SearchRequest request, boolean rss) {
+        return new SearchKey(
+                request.getTerm().map(String::trim).filter(term -> !term.isEmpty()).orElse(null),
+                request.getCategory().orElse(null),
+                request.getFilter().orElse(SearchRequest.Filter.NONE),
+                request.getUser().filter(user -> !user.isEmpty()).orElse(null),
+                request.getPage().orElse(1),
+                request.getOrdering().orElse(SearchRequest.Ordering.DESCENDING),
+                request.getSortedBy().orElse(SearchRequest.Sort.DATE),
+                rss);
+    }
+
+    /**
+     * @return trimmed search term or empty if the search has no term
+     */
+    public Optional<String> getTerm() {
+        return Optional.ofNullable(term);
+    }
+
+    public Optional<Category> getCategory() {
+        return Optional.ofNullable(category);
+    }
+
+    public SearchRequest.Filter getFilter() {
+        return filter;
+    }
+
+    public Optional<String> getUser() {
+        return Optional.ofNullable(user);
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public SearchRequest.Ordering getOrdering() {
+        return ordering;
+    }
+
+    /**
+     * Sort order of the search.
+     * Sort orders that nyaa does not distinguish have the same key, which returns either of them.
+     */
+    public SearchRequest.Sort getSortedBy() {
+        return sortedBy;
+    }
+
+    public boolean isRss() {
+        return rss;
+    }
+
+    // categories are compared by their ids and sort orders by their parameter on the website
+    private String categoryId() {
+        return category == null ? null : (category.isSukebei() ? "sukebei:" : "") + category.getMainCategoryId() + "_" + category.getSubCategoryId();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SearchKey)) return false;
+        SearchKey that = (SearchKey) o;
+        return filter == that.filter &&
+                page == that.page &&
+                rss == that.rss &&
+                Objects.equals(term, that.term) &&
+                Objects.equals(categoryId(), that.categoryId()) &&
+                Objects.equals(user, that.user) &&
+                ordering == that.ordering &&
+                sortedBy.getId().equals(that.sortedBy.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(term, categoryId(), filter, user, page, ordering, sortedBy.getId(), rss);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchKey{term=" + term + ", category=" + categoryId() + ", filter=" + filter.getId() + ", user=" + user +
+                ", page=" + page + ", ordering=" + ordering.getId() + ", sortedBy=" + sortedBy.getId() + ", rss=" + rss + "}";
+    }
+}
@@ -0,0 +1,216 @@
+package de.kaysubs.tracker.nyaasi.cache;
+
+import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Two tier cache of torrent infos.
+ *
+ * Recently used torrent infos are kept on the heap. If a directory is configured,
+ * every torrent info is also written to a gzip compressed file, which is read
+ * once the torrent info has been evicted from the heap or after a restart.
+ *
+ * Failures of the disk tier are treated like cache misses.
+ */
+public class TorrentInfoCache {
+    private final boolean isSukebei;
+    private final TorrentInfoCacheConfig config;
+
+    // access ordered, so the first entry is the least recently used one
+    private final LinkedHashMap<Integer, Entry> heap = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder heapHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder volatileRefreshes = new LongAdder();
+
+    private static class Entry {
+        private final TorrentInfo info;
+        private final long fetchedAt;
+
+        private Entry(TorrentInfo info, long fetchedAt) {
+            this.info = info;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    public TorrentInfoCache(boolean isSukebei, TorrentInfoCacheConfig config) {
+        this.isSukebei = isSukebei;
+        this.config = config;
+    }
+
+    /**
+     * Get a torrent info from the cache or load it.
+     *
+     * @param includeVolatile whether seeders, leechers, completed downloads and comments have to be up to date
+     * @param loader loads the torrent info if it is not cached or outdated,
+     *               may return null if the torrent does not exist
+     * @return the torrent info or null if the loader returned null
+     */
+    public TorrentInfo get(int torrentId, boolean includeVolatile, IntFunction<TorrentInfo> loader) {
+        long now = System.currentTimeMillis();
+
+        Entry entry = getFromHeap(torrentId);
+        boolean fromDisk = false;
+        if (entry == null && config.getDirectory() != null) {
+            entry = readFromDisk(torrentId);
+            fromDisk = entry != null;
+        }
+
+        if (entry != null) {
+            long age = now - entry.fetchedAt;
+            boolean staticFresh = age < config.getTtl().toMillis();
+            boolean volatileFresh = age < config.getVolatileTtl().toMillis();
+
+            if (staticFresh && (volatileFresh || !includeVolatile)) {
+                if (fromDisk) {
+                    diskHits.increment();
+                    putOnHeap(torrentId, entry);
+                } else {
+                    heapHits.increment();
+                }
+
+                return entry.info.copy();
+            }
+
+            if (staticFresh)
+                volatileRefreshes.increment();
+            else
+                misses.increment();
+        } else {
+            misses.increment();
+        }
+
+        TorrentInfo info = loader.apply(torrentId);
+        if (info == null)
+            return null;
+
+        // parse pending sections, so the cached copy does not keep parts of the page alive
+        Entry loaded = new Entry(info.copy().detach(), now);
+        putOnHeap(torrentId, loaded);
+        if (config.getDirectory() != null)
+            writeToDisk(torrentId, loaded);
+
+        return info;
+    }
+
+    /**
+     * Drop a torrent info from both tiers.
+     */
+    public void invalidate(int torrentId) {
+        synchronized (heap) {
+            heap.remove(torrentId);
+        }
+
+        if (config.getDirectory() != null) {
+            try {
+                Files.deleteIfExists(getFile(torrentId));
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private Entry getFromHeap(int torrentId) {
+        synchronized (heap) {
+            return heap.get(torrentId);
+        }
+    }
+
+    private void putOnHeap(int torrentId, Entry entry) {
+        synchronized (heap) {
+            heap.put(torrentId, entry);
+
+            Iterator<Map.Entry<Integer, Entry>> iterator = heap.entrySet().iterator();
+            while (heap.size() > config.getMaxHeapEntries()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    private Path getFile(int torrentId) {
+        return config.getDirectory().resolve((isSukebei ? "sukebei-" : "nyaa-") + torrentId + ".bin.gz");
+    }
+
+    private Entry readFromDisk(int torrentId) {
+        Path file = getFile(torrentId);
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(fileIn)))) {
+            long fetchedAt = TorrentInfoCodec.readFetchedAt(in);
+
+            // don't parse the html of outdated entries
+            if (System.currentTimeMillis() - fetchedAt >= config.getTtl().toMillis())
+                return null;
+
+            return new Entry(TorrentInfoCodec.read(in, isSukebei), fetchedAt);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // corrupt or written by an incompatible version
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    private void writeToDisk(int torrentId, Entry entry) {
+        Path file = getFile(torrentId);
+        try {
+            Files.createDirectories(config.getDirectory());
+            Path tempFile = Files.createTempFile(config.getDirectory(), file.getFileName().toString(), ".tmp");
+
+            try {
+                try (OutputStream fileOut = Files.newOutputStream(tempFile);
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(fileOut)))) {
+                    TorrentInfoCodec.write(out, entry.info, entry.fetchedAt);
+                }
+
+                // readers never see a partially written file
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // the torrent info is still cached on the heap
+        }
+    }
+
+    public long getHeapHits() {
+        return heapHits.sum();
+    }
+
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of times the whole page was loaded again only because the volatile fields were outdated.
+     */
+    public long getVolatileRefreshes() {
+        return volatileRefreshes.sum();
+    }
+}
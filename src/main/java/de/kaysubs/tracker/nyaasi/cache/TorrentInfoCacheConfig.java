@@ -0,0 +1,64 @@
+package de.kaysubs.tracker.nyaasi.cache;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for the torrent info cache of {@link CachingNyaaSiApi}.
+ */
+public class TorrentInfoCacheConfig {
+    private int maxHeapEntries = 500;
+    private Path directory = null;
+    private Duration ttl = Duration.ofDays(7);
+    private Duration volatileTtl = Duration.ofMinutes(5);
+
+    public int getMaxHeapEntries() {
+        return maxHeapEntries;
+    }
+
+    /**
+     * Maximum number of torrent infos kept on the heap.
+     * The least recently used ones are only kept on disk.
+     */
+    public TorrentInfoCacheConfig setMaxHeapEntries(int maxHeapEntries) {
+        this.maxHeapEntries = maxHeapEntries;
+        return this;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Directory where torrent infos are stored compressed, so they survive restarts.
+     * Without a directory, torrent infos are only cached on the heap.
+     */
+    public TorrentInfoCacheConfig setDirectory(Path directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * How long the static parts of a torrent info, like title, description and file list, are kept.
+     */
+    public TorrentInfoCacheConfig setTtl(Duration ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+    public Duration getVolatileTtl() {
+        return volatileTtl;
+    }
+
+    /**
+     * How long seeders, leechers, completed downloads and comments are considered up to date.
+     */
+    public TorrentInfoCacheConfig setVolatileTtl(Duration volatileTtl) {
+        this.volatileTtl = volatileTtl;
+        return this;
+    }
+}
@@ -0,0 +1,223 @@
+package de.kaysubs.tracker.nyaasi.cache;
+
+import de.kaysubs.tracker.nyaasi.model.DataSize;
+import de.kaysubs.tracker.nyaasi.model.FileTree;
+import de.kaysubs.tracker.nyaasi.model.HtmlFragment;
+import de.kaysubs.tracker.nyaasi.model.MainCategory;
+import de.kaysubs.tracker.nyaasi.model.SubCategory;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Binary format of the torrent infos in the disk cache.
+ *
+ * Html fragments are stored as html strings.
+ */
+class TorrentInfoCodec {
+    private final static int VERSION = 2;
+
+    static void write(DataOutputStream out, TorrentInfo info, long fetchedAt) throws IOException {
+        out.writeInt(VERSION);
+        out.writeLong(fetchedAt);
+
+        writeString(out, info.getTitle());
+        writeString(out, info.getDescriptionHtml() == null ? null : info.getDescriptionHtml().getHtml());
+        out.writeInt(info.getCategory().getMainCategoryId());
+        out.writeInt(info.getCategory().getSubCategoryId());
+        writeDataSize(out, info.getSize());
+        out.writeLong(info.getDate().getTime());
+        writeString(out, info.getUploader().orElse(null));
+        out.writeInt(info.getTorrentState().ordinal());
+        out.writeInt(info.getSeeders());
+        out.writeInt(info.getLeechers());
+        out.writeInt(info.getCompleted());
+        writeString(out, info.getInformation());
+        writeString(out, info.getHash());
+        writeString(out, info.getDownloadLink() == null ? null : info.getDownloadLink().toString());
+        writeString(out, info.getMagnetLink() == null ? null : info.getMagnetLink().toString());
+
+        out.writeBoolean(info.getFileTree() != null);
+        if (info.getFileTree() != null)
+            writeFileTree(out, info.getFileTree());
+
+        out.writeInt(info.getComments().length);
+        for (TorrentInfo.Comment comment : info.getComments()) {
+            out.writeInt(comment.getCommentId());
+            writeString(out, comment.getUsername());
+            out.writeBoolean(comment.isTrusted());
+            writeString(out, comment.getAvatar());
+            out.writeLong(comment.getDate().getTime());
+            writeString(out, comment.getCommentHtml().getHtml());
+        }
+    }
+
+    /**
+     * @return time at which the torrent info was fetched
+     */
+    static long readFetchedAt(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported cache file version " + version);
+
+        return in.readLong();
+    }
+
+    /**
+     * Read the torrent info that follows {@link #readFetchedAt(DataInputStream)}.
+     */
+    static TorrentInfo read(DataInputStream in, boolean isSukebei) throws IOException {
+        TorrentInfo info = new TorrentInfo();
+        info.setTitle(readString(in));
+        info.setDescriptionHtml(HtmlFragment.fromHtml(readString(in)));
+
+        int mainCategoryId = in.readInt();
+        int subCategoryId = in.readInt();
+        info.setCategory(readCategory(mainCategoryId, subCategoryId, isSukebei));
+
+        info.setSize(readDataSize(in));
+        info.setDate(new Date(in.readLong()));
+        info.setUploader(Optional.ofNullable(readString(in)));
+        info.setTorrentState(TorrentState.values()[in.readInt()]);
+        info.setSeeders(in.readInt());
+        info.setLeechers(in.readInt());
+        info.setCompleted(in.readInt());
+        info.setInformation(readString(in));
+        info.setHash(readString(in));
+
+        try {
+            String downloadLink = readString(in);
+            info.setDownloadLink(downloadLink == null ? null : new URL(downloadLink));
+            String magnetLink = readString(in);
+            info.setMagnetLink(magnetLink == null ? null : new URI(magnetLink));
+        } catch (URISyntaxException e) {
+            throw new IOException("Cannot read magnet link", e);
+        }
+
+        if (in.readBoolean())
+            info.setFileTree(readFileTree(in));
+
+        int commentCount = in.readInt();
+        if (commentCount < 0)
+            throw new IOException("Invalid comment count " + commentCount);
+
+        // grows with the comments that are actually read, for the same reason as in readString
+        List<TorrentInfo.Comment> comments = new ArrayList<>();
+        for (int i = 0; i < commentCount; i++) {
+            int commentId = in.readInt();
+            String username = readString(in);
+            boolean isTrusted = in.readBoolean();
+            String avatar = readString(in);
+            Date date = new Date(in.readLong());
+            HtmlFragment commentHtml = HtmlFragment.fromHtml(readString(in));
+            comments.add(new TorrentInfo.Comment(commentId, username, isTrusted, avatar, date, commentHtml));
+        }
+        info.setComments(comments.toArray(new TorrentInfo.Comment[0]));
+
+        return info;
+    }
+
+    private static SubCategory readCategory(int mainCategoryId, int subCategoryId, boolean isSukebei) throws IOException {
+        try {
+            MainCategory mainCategory = isSukebei ?
+                    MainCategory.Sukebei.fromId(mainCategoryId) :
+                    MainCategory.Nyaa.fromId(mainCategoryId);
+
+            return mainCategory.getSubcategoryFromId(subCategoryId);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown category " + mainCategoryId + "_" + subCategoryId, e);
+        }
+    }
+
+    /**
+     * The nodes in file list order. Folders are followed by the number of nodes inside of them.
+     */
+    private static void writeFileTree(DataOutputStream out, FileTree files) throws IOException {
+        out.writeInt(files.getNodeCount());
+        for (int node = 0; node < files.getNodeCount(); node++) {
+            out.writeBoolean(files.isFolder(node));
+            writeString(out, files.getName(node));
+            if (files.isFolder(node))
+                out.writeInt(files.getSubtreeEnd(node) - node - 1);
+            else
+                out.writeLong(files.getSize(node));
+        }
+    }
+
+    private static FileTree readFileTree(DataInputStream in) throws IOException {
+        FileTree.Builder files = new FileTree.Builder();
+        int nodeCount = in.readInt();
+
+        // ends of the folders that are still open, the innermost last
+        int[] folderEnds = new int[8];
+        int depth = 0;
+
+        for (int node = 0; node < nodeCount; node++) {
+            while (depth > 0 && folderEnds[depth - 1] == node) {
+                files.closeFolder();
+                depth--;
+            }
+
+            boolean isFolder = in.readBoolean();
+            String name = readString(in);
+            if (isFolder) {
+                files.openFolder(name);
+                if (depth == folderEnds.length)
+                    folderEnds = Arrays.copyOf(folderEnds, depth * 2);
+                folderEnds[depth++] = node + 1 + in.readInt();
+            } else {
+                files.addFile(name, in.readLong());
+            }
+        }
+
+        return files.build();
+    }
+
+    private static void writeDataSize(DataOutputStream out, DataSize size) throws IOException {
+        out.writeInt(size.getValue());
+        out.writeInt(size.getUnit().ordinal());
+    }
+
+    private static DataSize readDataSize(DataInputStream in) throws IOException {
+        int value = in.readInt();
+        return new DataSize(value, DataSize.DataUnit.values()[in.readInt()]);
+    }
+
+    // DataOutputStream.writeUTF is limited to 64 KiB, which long descriptions exceed
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1)
+            return null;
+        if (length < 0)
+            throw new IOException("Invalid string length " + length);
+
+        // the length of a corrupt file may exceed the remaining bytes, so only what is actually there is allocated
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length)
+            throw new EOFException("String of " + length + " bytes ends after " + bytes.length + " bytes");
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,34 @@
+package de.kaysubs.tracker.nyaasi.examples;
+
+import de.kaysubs.tracker.nyaasi.NyaaSiAsyncApi;
+import de.kaysubs.tracker.nyaasi.model.SearchRequest;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+public class AsyncExamples {
+
+    public static void main(String[] args) {
+        fetchDetailsOfLatestTorrents();
+    }
+
+    public static void fetchDetailsOfLatestTorrents() {
+        NyaaSiAsyncApi api = NyaaSiAsyncApi.getNyaa();
+
+        TorrentPreview[] latest = api.searchAsync(new SearchRequest()).join();
+
+        // All requests are sent at once without blocking a thread per request
+        CompletableFuture<?>[] details = Arrays.stream(latest)
+                .map(torrent -> api.getTorrentInfoAsync(torrent.getId())
+                        .thenAccept(AsyncExamples::printInfo))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(details).join();
+    }
+
+    private static void printInfo(TorrentInfo info) {
+        System.out.println(info.getTitle() + " was uploaded by " + info.getUploader().orElse("Anonymous"));
+    }
+}
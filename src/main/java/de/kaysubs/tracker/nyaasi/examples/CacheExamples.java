@@ -0,0 +1,73 @@
+package de.kaysubs.tracker.nyaasi.examples;
+
+import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.cache.CachingNyaaSiApi;
+import de.kaysubs.tracker.nyaasi.cache.SearchCacheConfig;
+import de.kaysubs.tracker.nyaasi.cache.TorrentInfoCacheConfig;
+import de.kaysubs.tracker.nyaasi.index.LocalNyaaSiApi;
+import de.kaysubs.tracker.nyaasi.index.TitleQuery;
+import de.kaysubs.tracker.nyaasi.model.SearchRequest;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.store.CrawlStore;
+import de.kaysubs.tracker.nyaasi.util.SearchIterator;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+
+public class CacheExamples {
+
+    public static void cacheTorrentInfos() {
+        CachingNyaaSiApi api = new CachingNyaaSiApi(NyaaSiApi.getNyaa(), new SearchCacheConfig(),
+                new TorrentInfoCacheConfig()
+                        // keep 200 torrents on the heap and all others compressed on disk
+                        .setMaxHeapEntries(200)
+                        .setDirectory(Paths.get("nyaa-cache"))
+                        .setTtl(Duration.ofDays(30))
+                        .setVolatileTtl(Duration.ofMinutes(10)));
+
+        // seeders, leechers, completed downloads and comments are at most 10 minutes old
+        TorrentInfo info = api.getTorrentInfo(1000000);
+        System.out.println(info.getTitle() + " has " + info.getSeeders() + " seeders");
+
+        // only the file list is needed, so older seeder counts are fine
+        TorrentInfo staticInfo = api.getStaticTorrentInfo(1000000);
+        System.out.println(staticInfo.getTitle() + " contains " + staticInfo.getFileTree().getFileCount() + " files");
+    }
+
+
+    public static void storeCrawledPreviews() {
+        try (CrawlStore store = new CrawlStore(Paths.get("nyaa-crawl"), false)) {
+            new SearchIterator(NyaaSiApi.getNyaa(), new SearchRequest().setUser("Erai-raws"))
+                    .forEachRemaining(store::append);
+
+            // the same StoredPreview is reused for every record, so the scan barely allocates
+            long[] seeders = new long[1];
+            store.forEach(preview -> seeders[0] += preview.getSeeders());
+            System.out.println(store.size() + " torrents with " + seeders[0] + " seeders");
+
+            store.get(1000000).ifPresent(preview -> System.out.println(preview.getTitle()));
+        }
+    }
+
+    public static void searchOffline() {
+        try (CrawlStore store = new CrawlStore(Paths.get("nyaa-crawl"), false)) {
+            // searches by user and torrent infos are passed to the website
+            LocalNyaaSiApi api = new LocalNyaaSiApi(store, NyaaSiApi.getNyaa());
+
+            TorrentPreview[] results = api.search(new SearchRequest()
+                    .setTerm("\"spy x family\" 1080p -hevc")
+                    .setFilter(SearchRequest.Filter.TRUSTED_ONLY)
+                    .setSortedBy(SearchRequest.Sort.SEEDERS));
+
+            for (TorrentPreview torrent : results)
+                System.out.println(torrent.getTitle());
+
+            // size filters are only available on the index
+            int[] largeTorrents = api.getIndex().search(new TitleQuery()
+                    .setText("frieren")
+                    .setMinSize(4L << 30));
+            System.out.println(largeTorrents.length + " releases of Frieren are larger than 4 GiB");
+        }
+    }
+}
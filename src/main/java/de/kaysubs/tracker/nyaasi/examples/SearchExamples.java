@@ -1,10 +1,19 @@
 package de.kaysubs.tracker.nyaasi.examples;
 
 import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.cache.CachingNyaaSiApi;
+import de.kaysubs.tracker.nyaasi.cache.SearchCacheConfig;
 import de.kaysubs.tracker.nyaasi.model.*;
+import de.kaysubs.tracker.nyaasi.util.NewTorrentPoller;
+import de.kaysubs.tracker.nyaasi.util.PrefetchingSearchIterator;
 import de.kaysubs.tracker.nyaasi.util.SearchIterator;
+import de.kaysubs.tracker.nyaasi.util.TorrentIdScanner;
 
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.stream.Stream;
 
 public class SearchExamples {
 
@@ -41,6 +50,97 @@ public class SearchExamples {
                 System.out.println(torrent.getTitle()));
     }
 
+    public static void streamAllTorrentsOfUser(String username) {
+        // The next pages are loaded in the background while the current one is consumed
+        try (Stream<TorrentPreview> torrents = PrefetchingSearchIterator.stream(NyaaSiApi.getNyaa(),
+                new SearchRequest().setUser(username))) {
+            torrents.forEach(torrent -> System.out.println(torrent.getTitle()));
+        }
+    }
+
+    public static void paginationInfo() {
+        SearchPage page = NyaaSiApi.getNyaa().searchPage(new SearchRequest().setTerm("Overlord"));
+
+        page.getTotalResults().ifPresent(total ->
+                System.out.println("Found " + total + " torrents on " + page.getLastPage() + " pages"));
+
+        // Load the remaining pages with up to 4 concurrent requests
+        TorrentPreview[] allTorrents = NyaaSiApi.getNyaa().searchAll(new SearchRequest().setTerm("Overlord"), 4);
+    }
+
+    public static void getDetailsOfAllResults() {
+        int[] torrentIds = Arrays.stream(NyaaSiApi.getNyaa().search(new SearchRequest().setTerm("Overlord")))
+                .mapToInt(TorrentPreview::getId)
+                .toArray();
+
+        // Results arrive in the order in which the requests complete
+        try (Stream<TorrentInfoResult> results = NyaaSiApi.getNyaa().getTorrentInfos(8, torrentIds)) {
+            results.forEach(result -> {
+                if (result.isSuccess())
+                    System.out.println(result.getTorrentId() + " was uploaded by " + result.get().getUploader().orElse("Anonymous"));
+                else
+                    System.out.println(result.getTorrentId() + " failed: " + result.getError().get());
+            });
+        }
+    }
+
+    public static void cacheSearchResults() {
+        // Keep the latest uploads for 30 seconds and all other results for 5 minutes
+        CachingNyaaSiApi api = new CachingNyaaSiApi(NyaaSiApi.getNyaa(), new SearchCacheConfig()
+                .setTtl(key -> key.getPage() == 1 && key.getSortedBy() == SearchRequest.Sort.DATE
+                        && key.getOrdering() == SearchRequest.Ordering.DESCENDING ? Duration.ofSeconds(30) : Duration.ofMinutes(5))
+                .setMaxEntries(500));
+
+        api.search(new SearchRequest().setTerm("Overlord"));
+        // answered from the cache
+        api.search(new SearchRequest().setTerm("Overlord").setPage(1));
+
+        System.out.println("cache hits: " + api.getHits() + ", misses: " + api.getMisses());
+    }
+
+    public static void searchUsingRssFeed() {
+        // The rss feed is smaller than the html page, which makes it a good fit for frequent polling
+        TorrentPreview[] latest = NyaaSiApi.getNyaa().searchRss(new SearchRequest()
+                .setCategory(Category.Nyaa.anime.english));
+
+        for (TorrentPreview torrent : latest)
+            System.out.println(torrent.getTitle() + " " + torrent.getMagnetLink());
+    }
+
+    public static void compactSearchResults() {
+        // Compact previews keep exact byte sizes and epoch seconds and build their links on demand
+        CompactTorrentPreview[] torrents = NyaaSiApi.getNyaa().searchCompact(new SearchRequest().setTerm("Overlord"));
+
+        long totalBytes = Arrays.stream(torrents).mapToLong(CompactTorrentPreview::getSize).sum();
+        System.out.println(torrents.length + " torrents with " + totalBytes + " bytes");
+
+        for (CompactTorrentPreview torrent : torrents)
+            System.out.println(torrent.getInfoHashHex() + " " + torrent.getDate() + " " + torrent.getTitle());
+    }
+
+    public static void rankSearchResults() {
+        // Columns hold one primitive array per attribute, so ranking only scans the needed arrays
+        TorrentColumns columns = NyaaSiApi.getNyaa().searchColumns(new SearchRequest().setTerm("Overlord"));
+
+        for (int row : columns.topRows(columns.getSeeders(), 5))
+            System.out.println(columns.getSeeders()[row] + " seeders: " + columns.getTitle(row));
+
+        System.out.println("total size: " + columns.totalSizeBytes() + " bytes");
+    }
+
+    public static void findFirstMatch() {
+        // Results are handed over while the page is still being downloaded.
+        // Returning false stops the search and closes the connection.
+        NyaaSiApi.getNyaa().search(new SearchRequest().setTerm("Overlord"), torrent -> {
+            if (torrent.getTorrentState() == TorrentState.TRUSTED) {
+                System.out.println("First trusted release: " + torrent.getTitle());
+                return false;
+            }
+
+            return true;
+        });
+    }
+
     public static void filterByCategory() {
         NyaaSiApi.getNyaa().search(new SearchRequest()
                 .setCategory(MainCategory.Nyaa.anime));
@@ -83,4 +183,37 @@ public class SearchExamples {
                 .setSortedBy(SearchRequest.Sort.SIZE)
                 .setOrdering(SearchRequest.Ordering.ASCENDING))[0];
     }
+
+    public static void watchForNewTorrents() throws InterruptedException {
+        // The highest torrent id seen per query is saved to the file,
+        // so torrents uploaded while the program was not running are reported on the next start.
+        NewTorrentPoller poller = new NewTorrentPoller(NyaaSiApi.getNyaa(), Paths.get("new-torrents.properties"))
+                .setMinInterval(Duration.ofMinutes(1))
+                .setMaxInterval(Duration.ofMinutes(30))
+                .setErrorHandler((query, e) -> e.printStackTrace());
+
+        poller.subscribe("overlord", new SearchRequest().setTerm("Overlord"),
+                torrent -> System.out.println("New upload: " + torrent.getTitle()));
+
+        poller.start();
+        Thread.sleep(Duration.ofHours(1).toMillis());
+        poller.close();
+    }
+
+    public static void scanIdRange() {
+        // Deleted ids are skipped. After a crash, the scan continues at the id saved in the checkpoint file.
+        try (Stream<TorrentInfoResult> results = new TorrentIdScanner(NyaaSiApi.getNyaa(), 1000000, 1001000)
+                .setConcurrency(8)
+                .setOrdered(true)
+                .setCheckpointFile(Paths.get("scan.checkpoint"))
+                .stream()) {
+
+            results.forEach(result -> {
+                if (result.isSuccess())
+                    System.out.println(result.getTorrentId() + ": " + result.get().getTitle());
+                else
+                    System.out.println(result.getTorrentId() + " failed: " + result.getError().get());
+            });
+        }
+    }
 }
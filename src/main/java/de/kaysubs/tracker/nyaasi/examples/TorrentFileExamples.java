@@ -0,0 +1,28 @@
+package de.kaysubs.tracker.nyaasi.examples;
+
+import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.metainfo.TorrentMetainfo;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class TorrentFileExamples {
+
+    public static void downloadTorrentFile() {
+        Path torrentFile = Paths.get("torrents", "1000000.torrent");
+        long size = NyaaSiApi.getNyaa().downloadTorrent(1000000, torrentFile);
+        System.out.println("downloaded " + size + " bytes");
+
+        TorrentMetainfo metainfo = TorrentMetainfo.read(torrentFile);
+        System.out.println("name: " + metainfo.getName());
+        System.out.println("info hash: " + metainfo.getInfoHashHex());
+        System.out.println("pieces: " + metainfo.getPieceCount() + " of " + metainfo.getPieceLength() + " bytes");
+
+        // exact sizes, unlike the rounded sizes on the website
+        for (int file = 0; file < metainfo.getFileCount(); file++) {
+            System.out.println(metainfo.getFilePath(file) + " (" + metainfo.getFileLength(file) + " bytes, pieces "
+                    + metainfo.getFirstPiece(file) + " to " + metainfo.getLastPiece(file) + ")");
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package de.kaysubs.tracker.nyaasi.examples;
 
 import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.model.FileTree;
 import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
 
 import java.util.Scanner;
@@ -31,8 +32,9 @@ public class TorrentInfoExample {
         System.out.println("download link: " + info.getDownloadLink());
         System.out.println("magnet link: " + info.getMagnetLink());
         System.out.println("description: " + info.getDescription());
-        System.out.println("files:");
-        printFile(info.getFile(), 0);
+        FileTree files = info.getFileTree();
+        System.out.println("files: " + files.getFileCount() + " with " + files.getTotalSize() + " bytes");
+        printFiles(files);
 
         for(TorrentInfo.Comment comment : info.getComments()) {
             System.out.println("[Comment]");
@@ -45,18 +47,18 @@ public class TorrentInfoExample {
         }
     }
 
-    private static void printFile(TorrentInfo.FileNode file, int offset) {
-        for (int i = 0; i < offset; i++)
-            System.out.print("  ");
+    private static void printFiles(FileTree files) {
+        // folders come before their contents, so the depth of the parent is always known
+        int[] depths = new int[files.getNodeCount()];
+        for (int node = 0; node < files.getNodeCount(); node++) {
+            int parent = files.getParent(node);
+            depths[node] = parent < 0 ? 0 : depths[parent] + 1;
 
-        if(file instanceof TorrentInfo.File) {
-            System.out.println(file.getName() + " (" + ((TorrentInfo.File) file).getSize() + ")");
-        } else {
-            System.out.println(file.getName());
-
-            for(TorrentInfo.FileNode child : ((TorrentInfo.Folder) file).getChildren()) {
-                printFile(child, offset + 1);
-            }
+            System.out.print("  ".repeat(depths[node]));
+            if (files.isFolder(node))
+                System.out.println(files.getName(node));
+            else
+                System.out.println(files.getName(node) + " (" + files.getSize(node) + " bytes)");
         }
     }
 
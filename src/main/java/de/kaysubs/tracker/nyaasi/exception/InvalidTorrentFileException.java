@@ -0,0 +1,15 @@
+package de.kaysubs.tracker.nyaasi.exception;
+
+/**
+ * A .torrent file is not valid bencode or misses required fields.
+ */
+public class InvalidTorrentFileException extends NyaaSiException {
+
+    public InvalidTorrentFileException(String message) {
+        super(message);
+    }
+
+    public InvalidTorrentFileException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,30 @@
+package de.kaysubs.tracker.nyaasi.exception;
+
+/**
+ * A poll stopped before it reached the torrents of the previous poll,
+ * so torrents with ids between the two ids may not have been reported.
+ */
+public class MissedTorrentsException extends NyaaSiException {
+    private final int afterId;
+    private final int beforeId;
+
+    public MissedTorrentsException(int afterId, int beforeId) {
+        super("Torrents with ids between " + afterId + " and " + beforeId + " may have been missed");
+        this.afterId = afterId;
+        this.beforeId = beforeId;
+    }
+
+    /**
+     * The highest id that was reported before, all missed ids are greater.
+     */
+    public int getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * The lowest id that was found by the poll, all missed ids are smaller.
+     */
+    public int getBeforeId() {
+        return beforeId;
+    }
+}
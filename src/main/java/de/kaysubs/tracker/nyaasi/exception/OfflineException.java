@@ -0,0 +1,17 @@
+package de.kaysubs.tracker.nyaasi.exception;
+
+/**
+ * A request cannot be answered from local data and there is no api to pass it to.
+ */
+public class OfflineException extends NyaaSiException {
+    private final String operation;
+
+    public OfflineException(String operation) {
+        super(operation + " is not possible offline");
+        this.operation = operation;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+}
@@ -0,0 +1,263 @@
+package de.kaysubs.tracker.nyaasi.index;
+
+import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.NyaaSiAuthApi;
+import de.kaysubs.tracker.nyaasi.exception.IllegalCategoryException;
+import de.kaysubs.tracker.nyaasi.exception.OfflineException;
+import de.kaysubs.tracker.nyaasi.model.SearchPage;
+import de.kaysubs.tracker.nyaasi.model.SearchRequest;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+import de.kaysubs.tracker.nyaasi.store.CrawlStore;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.OptionalInt;
+
+/**
+ * Answer searches from the torrents in a {@link CrawlStore} instead of the website.
+ *
+ * The titles of all stored torrents are indexed in a {@link TitleIndex} when the api is created.
+ * Searches by user, torrent infos and logins are not possible offline
+ * and are passed to the fallback api, if there is one.
+ * Without a fallback api they throw an {@link OfflineException}.
+ */
+public class LocalNyaaSiApi implements NyaaSiApi {
+    private final CrawlStore store;
+    private final NyaaSiApi fallback;
+    private final TitleIndex index = new TitleIndex();
+
+    public LocalNyaaSiApi(CrawlStore store) {
+        this(store, null);
+    }
+
+    /**
+     * @param fallback api for requests that cannot be answered offline or null to reject them
+     */
+    public LocalNyaaSiApi(CrawlStore store, NyaaSiApi fallback) {
+        if (fallback != null && fallback.isSukebei() != store.isSukebei())
+            throw new IllegalArgumentException("Fallback api belongs to a different site");
+
+        this.store = store;
+        this.fallback = fallback;
+        store.forEach(index::add);
+    }
+
+    public TitleIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Add a torrent to the store and the index, replacing an older version of it.
+     */
+    public void add(TorrentPreview preview) {
+        synchronized (index) {
+            store.append(preview);
+            index.add(preview);
+        }
+    }
+
+    @Override
+    public boolean isSukebei() {
+        return store.isSukebei();
+    }
+
+    @Override
+    public TorrentPreview[] search(SearchRequest request) {
+        if (request.getUser().isPresent())
+            return requireFallback("Searching by user").search(request);
+
+        int to = pageEnd(request.getPage().orElse(1));
+        return load(findSorted(request, to).torrentIds, to - PAGE_SIZE, to);
+    }
+
+    /**
+     * Same as {@link #search(SearchRequest)}, there is no separate feed offline.
+     */
+    @Override
+    public TorrentPreview[] searchRss(SearchRequest request) {
+        return search(request.copy().setPage(null));
+    }
+
+    @Override
+    public SearchPage searchPage(SearchRequest request) {
+        if (request.getUser().isPresent())
+            return requireFallback("Searching by user").searchPage(request);
+
+        int page = request.getPage().orElse(1);
+        int to = pageEnd(page);
+        Matches matches = findSorted(request, to);
+        int lastPage = Math.max(1, (matches.count + PAGE_SIZE - 1) / PAGE_SIZE);
+
+        return new SearchPage(load(matches.torrentIds, to - PAGE_SIZE, to), page, lastPage, OptionalInt.of(matches.count));
+    }
+
+    /**
+     * Get all results starting at the requested page. The parallelism is ignored, since nothing has to be loaded.
+     */
+    @Override
+    public TorrentPreview[] searchAll(SearchRequest request, int parallelism) {
+        if (request.getUser().isPresent())
+            return requireFallback("Searching by user").searchAll(request, parallelism);
+
+        int[] torrentIds = findSorted(request, Integer.MAX_VALUE).torrentIds;
+        return load(torrentIds, pageEnd(request.getPage().orElse(1)) - PAGE_SIZE, torrentIds.length);
+    }
+
+    /**
+     * Number of results up to the end of the page.
+     */
+    private static int pageEnd(int page) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) page * PAGE_SIZE);
+    }
+
+    private TorrentPreview[] load(int[] torrentIds, int from, int to) {
+        from = Math.max(0, Math.min(from, torrentIds.length));
+        to = Math.min(to, torrentIds.length);
+
+        TorrentPreview[] previews = new TorrentPreview[to - from];
+        for (int i = from; i < to; i++)
+            previews[i - from] = store.get(torrentIds[i]).orElseThrow(IllegalStateException::new);
+
+        return previews;
+    }
+
+    private static class Matches {
+        // the first matches in the order requested by the search
+        private final int[] torrentIds;
+        // number of all matches
+        private final int count;
+
+        private Matches(int[] torrentIds, int count) {
+            this.torrentIds = torrentIds;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Find the first matching torrents in the order requested by the search.
+     *
+     * Only the first results are sorted, the others are dropped by a heap of limit entries.
+     * So a search for a page only costs time proportional to the number of matches and not to their sorting.
+     */
+    private Matches findSorted(SearchRequest request, int limit) {
+        TitleQuery query = new TitleQuery();
+        request.getTerm().ifPresent(query::setText);
+        request.getCategory().ifPresent(category -> {
+            if (category.isSukebei() != isSukebei())
+                throw new IllegalCategoryException();
+
+            query.setCategory(category);
+        });
+
+        switch (request.getFilter().orElse(SearchRequest.Filter.NONE)) {
+            case NO_REMAKES:
+                query.setStates(EnumSet.of(TorrentState.NORMAL, TorrentState.TRUSTED));
+                break;
+            case TRUSTED_ONLY:
+                query.setStates(EnumSet.of(TorrentState.TRUSTED));
+                break;
+        }
+
+        SearchRequest.Sort sort = request.getSortedBy().orElse(SearchRequest.Sort.DATE);
+        boolean descending = request.getOrdering().orElse(SearchRequest.Ordering.DESCENDING) == SearchRequest.Ordering.DESCENDING;
+
+        synchronized (index) {
+            int[] documents = index.searchDocuments(query);
+            int count = Math.min(limit, documents.length);
+
+            // sort key in the upper and document in the lower half, so primitive comparisons order the documents,
+            // inverted for an ascending order, so the first results always have the greatest keys
+            long[] heap = new long[count];
+            for (int i = 0; i < documents.length; i++) {
+                long key = (long) sortKey(sort, documents[i]) << 32 | documents[i];
+                if (!descending)
+                    key = ~key;
+
+                if (i < count) {
+                    heap[i] = key;
+                    if (i == count - 1)
+                        heapify(heap);
+                } else if (key > heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, 0);
+                }
+            }
+            Arrays.sort(heap);
+
+            int[] torrentIds = new int[count];
+            for (int i = 0; i < count; i++) {
+                long key = heap[count - 1 - i];
+                torrentIds[i] = index.getTorrentId((int) (descending ? key : ~key));
+            }
+
+            return new Matches(torrentIds, documents.length);
+        }
+    }
+
+    /**
+     * Turn the array into a heap with the least key at the root.
+     */
+    private static void heapify(long[] heap) {
+        for (int i = heap.length / 2 - 1; i >= 0; i--)
+            siftDown(heap, i);
+    }
+
+    private static void siftDown(long[] heap, int i) {
+        long key = heap[i];
+        while (2 * i + 1 < heap.length) {
+            int child = 2 * i + 1;
+            if (child + 1 < heap.length && heap[child + 1] < heap[child])
+                child++;
+            if (key <= heap[child])
+                break;
+
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+
+    private int sortKey(SearchRequest.Sort sort, int document) {
+        switch (sort) {
+            case COMMENTS:
+                return index.getComments(document);
+            case SIZE:
+                // in KiB to fit into an int, unknown sizes first
+                return (int) Math.min(Integer.MAX_VALUE, Math.max(0, index.getSize(document) >> 10));
+            case SEEDERS:
+                return index.getSeeders(document);
+            case LEECHERS:
+                return index.getLeechers(document);
+            case DOWNLOADS:
+                return index.getCompleted(document);
+            case DATE:
+            default:
+                return index.getTorrentId(document);
+        }
+    }
+
+    private NyaaSiApi requireFallback(String operation) {
+        if (fallback == null)
+            throw new OfflineException(operation);
+
+        return fallback;
+    }
+
+    @Override
+    public TorrentInfo getTorrentInfo(int torrentId) {
+        return requireFallback("Getting torrent infos").getTorrentInfo(torrentId);
+    }
+
+    @Override
+    public long downloadTorrent(int torrentId, Path target) {
+        return requireFallback("Downloading torrent files").downloadTorrent(torrentId, target);
+    }
+
+    @Override
+    public NyaaSiAuthApi login(String username, String password) {
+        return requireFallback("Login").login(username, password);
+    }
+}
@@ -0,0 +1,159 @@
+package de.kaysubs.tracker.nyaasi.index;
+
+import java.util.Arrays;
+
+/**
+ * Compressed list of the documents that contain a token, together with the positions of the token.
+ *
+ * For every document, the distance to the previous document, the number of positions
+ * and the distances between the positions are written as variable length integers.
+ * Every {@link #SKIP_INTERVAL} documents a skip entry is recorded,
+ * so cursors can jump close to a document without decoding everything in front of it.
+ */
+class Postings {
+    private final static int SKIP_INTERVAL = 64;
+
+    private byte[] data = new byte[16];
+    private int length = 0;
+    private int documentCount = 0;
+    private int lastDocument = -1;
+
+    // document in front of the skip entry and offset of the entry in data
+    private int[] skipDocuments = new int[0];
+    private int[] skipOffsets = new int[0];
+    private int skipCount = 0;
+
+    /**
+     * Append a document, which must be greater than all documents added before.
+     */
+    void add(int document, int[] positions, int positionCount) {
+        if (documentCount % SKIP_INTERVAL == 0) {
+            if (skipCount == skipDocuments.length) {
+                skipDocuments = Arrays.copyOf(skipDocuments, Math.max(4, skipCount * 2));
+                skipOffsets = Arrays.copyOf(skipOffsets, skipDocuments.length);
+            }
+
+            skipDocuments[skipCount] = lastDocument;
+            skipOffsets[skipCount] = length;
+            skipCount++;
+        }
+
+        writeVarInt(document - lastDocument);
+        writeVarInt(positionCount);
+        int lastPosition = 0;
+        for (int i = 0; i < positionCount; i++) {
+            writeVarInt(positions[i] - lastPosition);
+            lastPosition = positions[i];
+        }
+
+        lastDocument = document;
+        documentCount++;
+    }
+
+    private void writeVarInt(int value) {
+        if (length + 5 > data.length)
+            data = Arrays.copyOf(data, data.length * 2);
+
+        while ((value & ~0x7f) != 0) {
+            data[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Number of bytes used by the compressed documents and positions.
+     */
+    int getSize() {
+        return length;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Iterates the documents of the postings in ascending order.
+     */
+    class Cursor {
+        private int offset = 0;
+        private int document = -1;
+        private int[] positions = new int[4];
+        private int positionCount = 0;
+
+        /**
+         * @return current document, -1 before the first call to next and {@link Integer#MAX_VALUE} after the last document
+         */
+        int document() {
+            return document;
+        }
+
+        int[] positions() {
+            return positions;
+        }
+
+        int positionCount() {
+            return positionCount;
+        }
+
+        int next() {
+            if (offset >= length)
+                return document = Integer.MAX_VALUE;
+
+            document += readVarInt();
+            positionCount = readVarInt();
+            if (positions.length < positionCount)
+                positions = new int[Math.max(positionCount, positions.length * 2)];
+
+            int position = 0;
+            for (int i = 0; i < positionCount; i++) {
+                position += readVarInt();
+                positions[i] = position;
+            }
+
+            return document;
+        }
+
+        /**
+         * Move to the first document that is greater than or equal to the target.
+         */
+        int advance(int target) {
+            if (document >= target)
+                return document;
+
+            // jump to the last skip entry in front of the target, if it is ahead of the cursor
+            int skip = Arrays.binarySearch(skipDocuments, 0, skipCount, target);
+            if (skip < 0)
+                skip = -skip - 2;
+            else
+                skip--;
+
+            if (skip >= 0 && skipDocuments[skip] > document) {
+                document = skipDocuments[skip];
+                offset = skipOffsets[skip];
+            }
+
+            while (document < target)
+                next();
+
+            return document;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package de.kaysubs.tracker.nyaasi.index;
+
+import de.kaysubs.tracker.nyaasi.model.Category;
+import de.kaysubs.tracker.nyaasi.model.DataSize;
+import de.kaysubs.tracker.nyaasi.model.SubCategory;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+import de.kaysubs.tracker.nyaasi.store.StoredPreview;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory inverted index over the titles of torrents.
+ *
+ * Titles are split with the {@link TitleTokenizer}. For every token, the torrents that contain it
+ * and the positions of the token are kept in a compressed {@link Postings} list.
+ * Besides the title, the category, state, size and statistics of every torrent are kept in primitive arrays,
+ * so queries can be filtered and sorted without touching the torrents themselves.
+ *
+ * Adding a torrent that is already indexed replaces it.
+ * The replaced version stays in the index as a deleted document until more than a quarter
+ * of all documents are deleted, then the index is compacted and their postings and attributes are dropped.
+ * So an index of n torrents holds at most about 4/3 n documents, no matter how often they are replaced.
+ */
+public class TitleIndex {
+    // compacting small indices is not worth it
+    private final static int MIN_DELETED_TO_COMPACT = 1024;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    // attributes by document number, documents are numbered in the order in which they were added
+    private int documentCount = 0;
+    private int[] torrentIds = new int[16];
+    private byte[] states = new byte[16];
+    private byte[] mainCategories = new byte[16];
+    private byte[] subCategories = new byte[16];
+    private long[] sizes = new long[16];
+    private int[] seeders = new int[16];
+    private int[] leechers = new int[16];
+    private int[] completed = new int[16];
+    private int[] comments = new int[16];
+
+    // replaced documents
+    private final BitSet deleted = new BitSet();
+    private int deletedCount = 0;
+    // document number + 1 by torrent id, 0 if the torrent is not indexed
+    private int[] documentsByTorrentId = new int[0];
+
+    private int[] positionBuffer = new int[16];
+
+    /**
+     * Index a torrent, replacing an older version of it.
+     */
+    public synchronized void add(TorrentPreview preview) {
+        add(preview.getId(), preview.getTitle(), preview.getTorrentState(), preview.getCategory(), toBytes(preview.getSize()),
+                preview.getSeeders(), preview.getLeechers(), preview.getCompleted(), preview.getCommentCount());
+    }
+
+    /**
+     * Index a torrent of a crawl store, replacing an older version of it.
+     */
+    public synchronized void add(StoredPreview preview) {
+        DataSize.DataUnit unit = preview.getSizeUnit();
+        long size = unit == null ? -1 : toBytes(preview.getSizeValue(), unit);
+
+        add(preview.getId(), preview.getTitle(), preview.getTorrentState(), preview.getCategory(), size,
+                preview.getSeeders(), preview.getLeechers(), preview.getCompleted(), preview.getCommentCount());
+    }
+
+    private static long toBytes(DataSize size) {
+        return size == null ? -1 : toBytes(size.getValue(), size.getUnit());
+    }
+
+    private static long toBytes(int value, DataSize.DataUnit unit) {
+        return (long) value << (10 * unit.ordinal());
+    }
+
+    private void add(int torrentId, String title, TorrentState state, SubCategory category, long size,
+                     int seederCount, int leecherCount, int completedCount, int commentCount) {
+        if (torrentId < 0)
+            throw new IllegalArgumentException("Negative torrent id " + torrentId);
+
+        int document = documentCount++;
+        if (document == torrentIds.length)
+            grow();
+
+        if (torrentId >= documentsByTorrentId.length)
+            documentsByTorrentId = Arrays.copyOf(documentsByTorrentId, Math.max(torrentId + 1, documentsByTorrentId.length * 3 / 2));
+        if (documentsByTorrentId[torrentId] != 0) {
+            deleted.set(documentsByTorrentId[torrentId] - 1);
+            deletedCount++;
+        }
+        documentsByTorrentId[torrentId] = document + 1;
+
+        torrentIds[document] = torrentId;
+        states[document] = (byte) (state == null ? -1 : state.ordinal());
+        mainCategories[document] = (byte) (category == null ? -1 : category.getMainCategoryId());
+        subCategories[document] = (byte) (category == null ? -1 : category.getSubCategoryId());
+        sizes[document] = size;
+        seeders[document] = seederCount;
+        leechers[document] = leecherCount;
+        completed[document] = completedCount;
+        comments[document] = commentCount;
+
+        if (title != null)
+            indexTitle(document, title);
+
+        if (deletedCount >= MIN_DELETED_TO_COMPACT && deletedCount > documentCount / 4)
+            compact();
+    }
+
+    /**
+     * Drop all deleted documents and renumber the others without changing their order.
+     */
+    private void compact() {
+        int[] newDocuments = new int[documentCount];
+        int newCount = 0;
+        for (int document = 0; document < documentCount; document++) {
+            if (deleted.get(document)) {
+                newDocuments[document] = -1;
+                continue;
+            }
+
+            // documents only move to lower numbers, so the attributes can be moved in place
+            int newDocument = newCount++;
+            newDocuments[document] = newDocument;
+            torrentIds[newDocument] = torrentIds[document];
+            states[newDocument] = states[document];
+            mainCategories[newDocument] = mainCategories[document];
+            subCategories[newDocument] = subCategories[document];
+            sizes[newDocument] = sizes[document];
+            seeders[newDocument] = seeders[document];
+            leechers[newDocument] = leechers[document];
+            completed[newDocument] = completed[document];
+            comments[newDocument] = comments[document];
+            documentsByTorrentId[torrentIds[newDocument]] = newDocument + 1;
+        }
+
+        Iterator<Map.Entry<String, Postings>> iterator = postings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Postings> entry = iterator.next();
+            Postings compacted = new Postings();
+
+            Postings.Cursor cursor = entry.getValue().cursor();
+            for (int document = cursor.next(); document != Integer.MAX_VALUE; document = cursor.next())
+                if (newDocuments[document] >= 0)
+                    compacted.add(newDocuments[document], cursor.positions(), cursor.positionCount());
+
+            // tokens that only appeared in replaced titles
+            if (compacted.getDocumentCount() == 0)
+                iterator.remove();
+            else
+                entry.setValue(compacted);
+        }
+
+        documentCount = newCount;
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    private void grow() {
+        int capacity = torrentIds.length * 2;
+        torrentIds = Arrays.copyOf(torrentIds, capacity);
+        states = Arrays.copyOf(states, capacity);
+        mainCategories = Arrays.copyOf(mainCategories, capacity);
+        subCategories = Arrays.copyOf(subCategories, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        seeders = Arrays.copyOf(seeders, capacity);
+        leechers = Arrays.copyOf(leechers, capacity);
+        completed = Arrays.copyOf(completed, capacity);
+        comments = Arrays.copyOf(comments, capacity);
+    }
+
+    private void indexTitle(int document, String title) {
+        List<String> tokens = TitleTokenizer.tokenize(title);
+
+        // every distinct token is added once, with all of its positions
+        Map<String, Integer> firstOccurrence = new HashMap<>();
+        for (int i = 0; i < tokens.size(); i++)
+            firstOccurrence.putIfAbsent(tokens.get(i), i);
+
+        for (Map.Entry<String, Integer> entry : firstOccurrence.entrySet()) {
+            int count = 0;
+            for (int i = entry.getValue(); i < tokens.size(); i++) {
+                if (tokens.get(i).equals(entry.getKey())) {
+                    if (count == positionBuffer.length)
+                        positionBuffer = Arrays.copyOf(positionBuffer, count * 2);
+                    positionBuffer[count++] = i;
+                }
+            }
+
+            postings.computeIfAbsent(entry.getKey(), token -> new Postings()).add(document, positionBuffer, count);
+        }
+    }
+
+    /**
+     * Number of distinct torrents in the index.
+     */
+    public synchronized int size() {
+        return documentCount - deletedCount;
+    }
+
+    /**
+     * Number of distinct tokens in the index.
+     */
+    public synchronized int getTokenCount() {
+        return postings.size();
+    }
+
+    /**
+     * Number of bytes used by the compressed postings lists.
+     */
+    public synchronized long getPostingsSize() {
+        return postings.values().stream().mapToLong(Postings::getSize).sum();
+    }
+
+    /**
+     * Find all torrents that match the query.
+     *
+     * @return ids of the matching torrents in the order in which they were added
+     */
+    public synchronized int[] search(TitleQuery query) {
+        int[] documents = searchDocuments(query);
+        for (int i = 0; i < documents.length; i++)
+            documents[i] = torrentIds[documents[i]];
+
+        return documents;
+    }
+
+    /**
+     * Find the document numbers of all torrents that match the query in ascending order.
+     * The caller must hold the lock of the index while it uses the document numbers.
+     */
+    int[] searchDocuments(TitleQuery query) {
+        List<List<Phrase>> groups = new ArrayList<>();
+        List<Phrase> excluded = new ArrayList<>();
+        query.getText().ifPresent(text -> parse(text, groups, excluded));
+
+        Filter filter = new Filter(query);
+
+        IntList result = new IntList();
+        if (groups.isEmpty()) {
+            for (int document = deleted.nextClearBit(0); document < documentCount; document = deleted.nextClearBit(document + 1))
+                if (filter.matches(document) && !matchesAny(excluded, document))
+                    result.add(document);
+
+            return result.toArray();
+        }
+
+        // generate candidates from the group with the rarest tokens and check all other groups against them
+        List<Phrase> rarest = groups.get(0);
+        for (List<Phrase> group : groups)
+            if (cost(group) < cost(rarest))
+                rarest = group;
+
+        int[] candidates = candidates(rarest);
+        for (int document : candidates) {
+            if (!filter.matches(document) || matchesAny(excluded, document))
+                continue;
+
+            boolean matches = true;
+            for (List<Phrase> group : groups) {
+                if (group != rarest && !matchesAny(group, document)) {
+                    matches = false;
+                    break;
+                }
+            }
+
+            if (matches)
+                result.add(document);
+        }
+
+        return result.toArray();
+    }
+
+    private static long cost(List<Phrase> group) {
+        long cost = 0;
+        for (Phrase phrase : group)
+            cost += phrase.rarestCount();
+        return cost;
+    }
+
+    private static boolean matchesAny(List<Phrase> phrases, int document) {
+        for (Phrase phrase : phrases)
+            if (phrase.matches(document))
+                return true;
+
+        return false;
+    }
+
+    private int[] candidates(List<Phrase> group) {
+        IntList candidates = new IntList();
+        for (Phrase phrase : group)
+            phrase.collect(candidates);
+
+        int[] documents = candidates.toArray();
+        if (group.size() > 1) {
+            Arrays.sort(documents);
+            documents = Arrays.stream(documents).distinct().toArray();
+        }
+
+        return documents;
+    }
+
+    /**
+     * Split the query text into groups of alternative phrases, which all have to match, and excluded phrases.
+     */
+    private void parse(String text, List<List<Phrase>> groups, List<Phrase> excluded) {
+        boolean or = false;
+        int i = 0;
+
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            if (c == '|') {
+                or = true;
+                i++;
+                continue;
+            }
+
+            boolean negated = c == '-' && i + 1 < text.length() && !Character.isWhitespace(text.charAt(i + 1));
+            if (negated)
+                i++;
+
+            String words;
+            if (text.charAt(i) == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end < 0)
+                    end = text.length();
+
+                words = text.substring(i + 1, end);
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < text.length() && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != '|' && text.charAt(end) != '"')
+                    end++;
+
+                words = text.substring(i, end);
+                i = end;
+            }
+
+            List<String> tokens = TitleTokenizer.tokenize(words);
+            if (tokens.isEmpty()) {
+                or = false;
+                continue;
+            }
+
+            Phrase phrase = new Phrase(tokens);
+            if (negated)
+                excluded.add(phrase);
+            else if (or && !groups.isEmpty())
+                groups.get(groups.size() - 1).add(phrase);
+            else
+                groups.add(new ArrayList<>(List.of(phrase)));
+
+            or = false;
+        }
+    }
+
+    /**
+     * Tokens that have to appear next to each other.
+     * Its cursors only move forward, so documents must be checked in ascending order.
+     */
+    private class Phrase {
+        private final Postings.Cursor[] cursors;
+        // cursor of the token with the fewest documents
+        private int rarest = 0;
+        private int rarestCount = Integer.MAX_VALUE;
+        private boolean impossible = false;
+
+        private Phrase(List<String> tokens) {
+            cursors = new Postings.Cursor[tokens.size()];
+            for (int i = 0; i < cursors.length; i++) {
+                Postings list = postings.get(tokens.get(i));
+                if (list == null) {
+                    impossible = true;
+                    rarestCount = 0;
+                    return;
+                }
+
+                cursors[i] = list.cursor();
+                if (list.getDocumentCount() < rarestCount) {
+                    rarest = i;
+                    rarestCount = list.getDocumentCount();
+                }
+            }
+        }
+
+        private long rarestCount() {
+            return rarestCount;
+        }
+
+        private void collect(IntList documents) {
+            if (impossible)
+                return;
+
+            Postings.Cursor cursor = cursors[rarest];
+            for (int document = cursor.next(); document != Integer.MAX_VALUE; document = cursor.next())
+                if (matches(document))
+                    documents.add(document);
+        }
+
+        private boolean matches(int document) {
+            if (impossible)
+                return false;
+
+            for (Postings.Cursor cursor : cursors)
+                if (cursor.advance(document) != document)
+                    return false;
+
+            if (cursors.length == 1)
+                return true;
+
+            Postings.Cursor first = cursors[0];
+            for (int p = 0; p < first.positionCount(); p++) {
+                int start = first.positions()[p];
+                boolean found = true;
+
+                for (int i = 1; i < cursors.length && found; i++)
+                    found = Arrays.binarySearch(cursors[i].positions(), 0, cursors[i].positionCount(), start + i) >= 0;
+
+                if (found)
+                    return true;
+            }
+
+            return false;
+        }
+    }
+
+    private class Filter {
+        private final int mainCategory;
+        private final int subCategory;
+        private final int stateMask;
+        private final boolean allStates;
+        private final long minSize;
+        private final long maxSize;
+
+        private Filter(TitleQuery query) {
+            Category category = query.getCategory().orElse(null);
+            mainCategory = category == null ? -1 : category.getMainCategoryId();
+            subCategory = category == null ? 0 : category.getSubCategoryId();
+
+            int mask = 0;
+            for (TorrentState state : query.getStates())
+                mask |= 1 << state.ordinal();
+            stateMask = mask;
+            allStates = query.getStates().size() == TorrentState.values().length;
+
+            minSize = query.getMinSize();
+            maxSize = query.getMaxSize();
+        }
+
+        private boolean matches(int document) {
+            if (deleted.get(document))
+                return false;
+
+            if (mainCategory >= 0 && (mainCategories[document] != mainCategory ||
+                    (subCategory != 0 && subCategories[document] != subCategory)))
+                return false;
+
+            // unknown states and sizes only match if they are not filtered
+            byte state = states[document];
+            if (state < 0 ? !allStates : (stateMask & (1 << state)) == 0)
+                return false;
+
+            long size = sizes[document];
+            if (size < 0)
+                return minSize <= 0 && maxSize == Long.MAX_VALUE;
+
+            return size >= minSize && size <= maxSize;
+        }
+    }
+
+    int getTorrentId(int document) {
+        return torrentIds[document];
+    }
+
+    long getSize(int document) {
+        return sizes[document];
+    }
+
+    int getSeeders(int document) {
+        return seeders[document];
+    }
+
+    int getLeechers(int document) {
+        return leechers[document];
+    }
+
+    int getCompleted(int document) {
+        return completed[document];
+    }
+
+    int getComments(int document) {
+        return comments[document];
+    }
+
+    /**
+     * Growable list of ints that avoids boxing.
+     */
+    private static class IntList {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        private void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package de.kaysubs.tracker.nyaasi.index;
+
+import de.kaysubs.tracker.nyaasi.model.Category;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Query of a {@link TitleIndex}.
+ *
+ * The text uses the syntax of the nyaa search:
+ * words must all be present, {@code "quoted words"} must appear in this order,
+ * {@code a|b} matches titles with either a or b and {@code -word} excludes titles with the word.
+ */
+public class TitleQuery {
+    private Optional<String> text = Optional.empty();
+    private Optional<Category> category = Optional.empty();
+    private Set<TorrentState> states = EnumSet.allOf(TorrentState.class);
+    private long minSize = 0;
+    private long maxSize = Long.MAX_VALUE;
+
+    public Optional<String> getText() {
+        return text;
+    }
+
+    public TitleQuery setText(String text) {
+        this.text = Optional.ofNullable(text);
+        return this;
+    }
+
+    public Optional<Category> getCategory() {
+        return category;
+    }
+
+    /**
+     * Only match torrents of a main or sub category.
+     */
+    public TitleQuery setCategory(Category category) {
+        this.category = Optional.ofNullable(category);
+        return this;
+    }
+
+    public Set<TorrentState> getStates() {
+        return states;
+    }
+
+    /**
+     * Only match torrents in one of the states.
+     */
+    public TitleQuery setStates(Set<TorrentState> states) {
+        this.states = states.isEmpty() ? EnumSet.noneOf(TorrentState.class) : EnumSet.copyOf(states);
+        return this;
+    }
+
+    public long getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Only match torrents of at least this many bytes.
+     */
+    public TitleQuery setMinSize(long minSize) {
+        this.minSize = minSize;
+        return this;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Only match torrents of at most this many bytes.
+     */
+    public TitleQuery setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+}
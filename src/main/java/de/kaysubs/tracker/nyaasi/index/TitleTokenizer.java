@@ -0,0 +1,51 @@
+package de.kaysubs.tracker.nyaasi.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Split release names into lower case tokens.
+ *
+ * Brackets, dots, underscores, dashes and all other characters that are neither letters nor digits separate tokens.
+ * Leading zeros of numbers are dropped, also inside of tokens, so episode numbers match regardless of their padding:
+ * "[Group] Show_S01E05.1080p" becomes "group show s1e5 1080p" and "Show - 05" becomes "show 5".
+ * Ideographs are not separated by spaces, so each of them is a token of its own.
+ */
+public class TitleTokenizer {
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        int length = text.length();
+        int i = 0;
+
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (Character.isIdeographic(codePoint)) {
+                addToken(tokens, token);
+                token.appendCodePoint(codePoint);
+                addToken(tokens, token);
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                // drop a zero that starts a number, unless the number is only that zero
+                boolean startsNumber = token.length() == 0 || !Character.isDigit(token.charAt(token.length() - 1));
+                boolean isPadding = codePoint == '0' && startsNumber && i < length && Character.isDigit(text.charAt(i));
+                if (!isPadding)
+                    token.appendCodePoint(Character.toLowerCase(codePoint));
+            } else {
+                addToken(tokens, token);
+            }
+        }
+
+        addToken(tokens, token);
+        return tokens;
+    }
+
+    private static void addToken(List<String> tokens, StringBuilder token) {
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+            token.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package de.kaysubs.tracker.nyaasi.metainfo;
+
+import de.kaysubs.tracker.nyaasi.exception.InvalidTorrentFileException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read bencoded values from a buffer, using absolute positions so the buffer itself is never modified.
+ *
+ * Strings are not copied when they are read, only their position is remembered.
+ * They can then be compared, decoded or skipped, which keeps large strings like the piece hashes in place.
+ */
+class BencodeReader {
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    private int stringStart;
+    private int stringLength;
+
+    BencodeReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    int position() {
+        return position;
+    }
+
+    private byte peek() {
+        if (position >= limit)
+            throw error("Unexpected end of file");
+
+        return buffer.get(position);
+    }
+
+    private InvalidTorrentFileException error(String message) {
+        return new InvalidTorrentFileException(message + " at byte " + position);
+    }
+
+    void expect(char c) {
+        if (peek() != c)
+            throw error("Expected '" + c + "'");
+
+        position++;
+    }
+
+    /**
+     * Check if another value follows in the current list or dictionary and consume the end marker otherwise.
+     */
+    boolean hasNext() {
+        if (peek() == 'e') {
+            position++;
+            return false;
+        }
+
+        return true;
+    }
+
+    long readInt() {
+        expect('i');
+
+        boolean negative = peek() == '-';
+        if (negative)
+            position++;
+
+        long value = readDigits('e');
+        return negative ? -value : value;
+    }
+
+    private long readDigits(char terminator) {
+        int start = position;
+        long value = 0;
+
+        byte b;
+        while ((b = peek()) != terminator) {
+            if (b < '0' || b > '9')
+                throw error("Expected a digit");
+
+            try {
+                value = Math.addExact(Math.multiplyExact(value, 10), b - '0');
+            } catch (ArithmeticException e) {
+                throw error("Number too large");
+            }
+            position++;
+        }
+
+        if (position == start)
+            throw error("Expected a number");
+
+        position++;
+        return value;
+    }
+
+    /**
+     * Read a string without copying it, it can then be accessed with the string methods.
+     *
+     * @return the length of the string
+     */
+    int readString() {
+        long length = readDigits(':');
+        if (length > limit - position)
+            throw error("String of " + length + " bytes exceeds the file");
+
+        stringStart = position;
+        stringLength = (int) length;
+        position += stringLength;
+        return stringLength;
+    }
+
+    /**
+     * Position of the last read string in the buffer.
+     */
+    int stringStart() {
+        return stringStart;
+    }
+
+    /**
+     * Compare the last read string with an ascii string, without decoding it.
+     */
+    boolean stringEquals(String ascii) {
+        if (stringLength != ascii.length())
+            return false;
+
+        for (int i = 0; i < stringLength; i++)
+            if (buffer.get(stringStart + i) != ascii.charAt(i))
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Decode the last read string as UTF-8.
+     */
+    String stringValue() {
+        byte[] bytes = new byte[stringLength];
+        buffer.get(stringStart, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    String readUtf8() {
+        readString();
+        return stringValue();
+    }
+
+    /**
+     * Skip any value, including nested lists and dictionaries, without recursion.
+     */
+    void skip() {
+        int depth = 0;
+
+        do {
+            switch (peek()) {
+                case 'i':
+                    readInt();
+                    break;
+                case 'l':
+                case 'd':
+                    position++;
+                    depth++;
+                    break;
+                case 'e':
+                    if (depth == 0)
+                        throw error("Unexpected end of list");
+                    position++;
+                    depth--;
+                    break;
+                default:
+                    readString();
+            }
+        } while (depth > 0);
+    }
+}
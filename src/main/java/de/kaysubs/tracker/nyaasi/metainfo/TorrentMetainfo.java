@@ -0,0 +1,471 @@
+package de.kaysubs.tracker.nyaasi.metainfo;
+
+import de.kaysubs.tracker.nyaasi.exception.InvalidTorrentFileException;
+import de.kaysubs.tracker.nyaasi.model.FileTree;
+import de.kaysubs.tracker.nyaasi.model.MagnetLinks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Contents of a .torrent file, read directly from a buffer.
+ *
+ * The piece hashes are not copied, {@link #getPieces()} is a view of the buffer.
+ * The info hash is computed from the bencoded info dictionary in the buffer when it is first requested.
+ * Unlike the file list of the website, file sizes are exact.
+ *
+ * Only torrents with a v1 piece layout are supported, which includes hybrid v1/v2 torrents.
+ */
+public class TorrentMetainfo {
+    private final static int PIECE_HASH_SIZE = 20;
+
+    private final ByteBuffer buffer;
+    private final int infoStart;
+    private final int infoEnd;
+    private final String announce;
+    private final List<List<String>> announceList;
+    private final String comment;
+    private final String createdBy;
+    private final long creationDate;
+    private final String name;
+    private final long pieceLength;
+    private final int piecesStart;
+    private final int pieceCount;
+    private final boolean isPrivate;
+    private final boolean isSingleFile;
+    private final String[] filePaths;
+    private final long[] fileLengths;
+    private final long[] fileOffsets;
+    private final long totalSize;
+    private byte[] infoHash;
+    private FileTree fileTree;
+
+    private TorrentMetainfo(ByteBuffer buffer, Parser parser) {
+        this.buffer = buffer;
+        this.infoStart = parser.infoStart;
+        this.infoEnd = parser.infoEnd;
+        this.announce = parser.announce;
+        this.announceList = parser.announceList;
+        this.comment = parser.comment;
+        this.createdBy = parser.createdBy;
+        this.creationDate = parser.creationDate;
+        this.name = parser.name;
+        this.pieceLength = parser.pieceLength;
+        this.piecesStart = parser.piecesStart;
+        this.pieceCount = parser.piecesLength / PIECE_HASH_SIZE;
+        this.isPrivate = parser.isPrivate;
+        this.isSingleFile = parser.isSingleFile;
+        this.filePaths = parser.filePaths.toArray(new String[0]);
+        this.fileLengths = Arrays.copyOf(parser.fileLengths, filePaths.length);
+
+        this.fileOffsets = new long[filePaths.length];
+        long offset = 0;
+        for (int i = 0; i < filePaths.length; i++) {
+            fileOffsets[i] = offset;
+            try {
+                offset = Math.addExact(offset, fileLengths[i]);
+            } catch (ArithmeticException e) {
+                throw new InvalidTorrentFileException("Total size of the files is too large", e);
+            }
+        }
+        this.totalSize = offset;
+
+        long expectedPieces = totalSize == 0 ? 0 : (totalSize - 1) / pieceLength + 1;
+        if (expectedPieces != pieceCount)
+            throw new InvalidTorrentFileException("Expected " + expectedPieces + " pieces, but there are " + pieceCount);
+    }
+
+    /**
+     * Parse the bytes between the position and the limit of a buffer, which are not modified.
+     * The buffer is kept for {@link #getPieces()} and {@link #getInfoHash()}.
+     *
+     * @throws InvalidTorrentFileException the buffer does not contain a valid torrent file
+     */
+    public static TorrentMetainfo parse(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        return new TorrentMetainfo(view, new Parser(new BencodeReader(view)));
+    }
+
+    /**
+     * Map a .torrent file into memory and parse it.
+     *
+     * @throws InvalidTorrentFileException the file is not a valid torrent file
+     */
+    public static TorrentMetainfo read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new InvalidTorrentFileException("Torrent file of " + channel.size() + " bytes is too large");
+
+            // the mapping stays valid after the channel is closed
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + file, e);
+        }
+    }
+
+    private static class Parser {
+        private int infoStart = -1;
+        private int infoEnd;
+        private String announce;
+        private List<List<String>> announceList = Collections.emptyList();
+        private String comment;
+        private String createdBy;
+        private long creationDate = -1;
+        private String name;
+        private long pieceLength;
+        private int piecesStart = -1;
+        private int piecesLength;
+        private boolean isPrivate;
+        private boolean isSingleFile;
+        private long singleFileLength = -1;
+        private final List<String> filePaths = new ArrayList<>();
+        private long[] fileLengths = new long[16];
+
+        Parser(BencodeReader reader) {
+            try {
+                parseTorrent(reader);
+            } catch (IndexOutOfBoundsException e) {
+                throw new InvalidTorrentFileException("Unexpected end of file", e);
+            }
+        }
+
+        private void parseTorrent(BencodeReader reader) {
+            reader.expect('d');
+            while (reader.hasNext()) {
+                reader.readString();
+
+                if (reader.stringEquals("info")) {
+                    infoStart = reader.position();
+                    parseInfo(reader);
+                    infoEnd = reader.position();
+                } else if (reader.stringEquals("announce")) {
+                    announce = reader.readUtf8();
+                } else if (reader.stringEquals("announce-list")) {
+                    announceList = parseAnnounceList(reader);
+                } else if (reader.stringEquals("comment")) {
+                    comment = reader.readUtf8();
+                } else if (reader.stringEquals("created by")) {
+                    createdBy = reader.readUtf8();
+                } else if (reader.stringEquals("creation date")) {
+                    creationDate = reader.readInt();
+                } else {
+                    reader.skip();
+                }
+            }
+
+            if (infoStart < 0)
+                throw new InvalidTorrentFileException("Missing info dictionary");
+            if (name == null || pieceLength <= 0 || piecesStart < 0)
+                throw new InvalidTorrentFileException("Missing name, piece length or pieces, only v1 torrents are supported");
+            if (piecesLength % PIECE_HASH_SIZE != 0)
+                throw new InvalidTorrentFileException("Pieces are not a multiple of " + PIECE_HASH_SIZE + " bytes");
+
+            if (singleFileLength >= 0) {
+                isSingleFile = true;
+                filePaths.clear();
+                filePaths.add(name);
+                fileLengths[0] = singleFileLength;
+            } else if (filePaths.isEmpty()) {
+                throw new InvalidTorrentFileException("Missing length or files");
+            }
+        }
+
+        private List<List<String>> parseAnnounceList(BencodeReader reader) {
+            List<List<String>> tiers = new ArrayList<>();
+
+            reader.expect('l');
+            while (reader.hasNext()) {
+                List<String> tier = new ArrayList<>();
+                reader.expect('l');
+                while (reader.hasNext())
+                    tier.add(reader.readUtf8());
+                tiers.add(tier);
+            }
+
+            return tiers;
+        }
+
+        private void parseInfo(BencodeReader reader) {
+            reader.expect('d');
+            while (reader.hasNext()) {
+                reader.readString();
+
+                if (reader.stringEquals("name")) {
+                    name = reader.readUtf8();
+                } else if (reader.stringEquals("piece length")) {
+                    pieceLength = reader.readInt();
+                } else if (reader.stringEquals("pieces")) {
+                    piecesLength = reader.readString();
+                    piecesStart = reader.stringStart();
+                } else if (reader.stringEquals("private")) {
+                    isPrivate = reader.readInt() == 1;
+                } else if (reader.stringEquals("length")) {
+                    singleFileLength = reader.readInt();
+                } else if (reader.stringEquals("files")) {
+                    parseFiles(reader);
+                } else {
+                    reader.skip();
+                }
+            }
+        }
+
+        private void parseFiles(BencodeReader reader) {
+            StringBuilder path = new StringBuilder();
+
+            reader.expect('l');
+            while (reader.hasNext()) {
+                long length = -1;
+                path.setLength(0);
+
+                reader.expect('d');
+                while (reader.hasNext()) {
+                    reader.readString();
+
+                    if (reader.stringEquals("length")) {
+                        length = reader.readInt();
+                    } else if (reader.stringEquals("path")) {
+                        reader.expect('l');
+                        while (reader.hasNext()) {
+                            if (path.length() > 0)
+                                path.append('/');
+                            path.append(reader.readUtf8());
+                        }
+                    } else {
+                        reader.skip();
+                    }
+                }
+
+                if (length < 0 || path.length() == 0)
+                    throw new InvalidTorrentFileException("File without length or path");
+
+                if (filePaths.size() == fileLengths.length)
+                    fileLengths = Arrays.copyOf(fileLengths, fileLengths.length * 2);
+                fileLengths[filePaths.size()] = length;
+                filePaths.add(path.toString());
+            }
+        }
+    }
+
+    /**
+     * SHA-1 hash of the bencoded info dictionary, which identifies the torrent.
+     */
+    public synchronized byte[] getInfoHash() {
+        if (infoHash == null) {
+            try {
+                MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+                sha1.update(buffer.duplicate().limit(infoEnd).position(infoStart));
+                infoHash = sha1.digest();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-1 is not available", e);
+            }
+        }
+
+        return infoHash.clone();
+    }
+
+    public String getInfoHashHex() {
+        return MagnetLinks.toHex(getInfoHash());
+    }
+
+    /**
+     * Magnet link with the trackers of nyaa.
+     */
+    public URI getMagnetLink() {
+        return MagnetLinks.build(getInfoHashHex(), name);
+    }
+
+    /**
+     * @return the tracker or null if the torrent only has an announce list or none at all
+     */
+    public String getAnnounce() {
+        return announce;
+    }
+
+    /**
+     * Tiers of trackers, which is empty if the torrent has none.
+     */
+    public List<List<String>> getAnnounceList() {
+        return announceList;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    /**
+     * @return creation date in seconds since the epoch or -1 if unknown
+     */
+    public long getCreationDate() {
+        return creationDate;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isPrivate() {
+        return isPrivate;
+    }
+
+    /**
+     * Size of all pieces except the last one, which may be shorter.
+     */
+    public long getPieceLength() {
+        return pieceLength;
+    }
+
+    public int getPieceCount() {
+        return pieceCount;
+    }
+
+    /**
+     * The concatenated 20 byte SHA-1 hashes of all pieces, as a read only view of the parsed buffer.
+     */
+    public ByteBuffer getPieces() {
+        return buffer.duplicate()
+                .limit(piecesStart + pieceCount * PIECE_HASH_SIZE)
+                .position(piecesStart)
+                .slice()
+                .asReadOnlyBuffer();
+    }
+
+    public byte[] getPieceHash(int piece) {
+        if (piece < 0 || piece >= pieceCount)
+            throw new IndexOutOfBoundsException("Piece " + piece + " of " + pieceCount);
+
+        byte[] hash = new byte[PIECE_HASH_SIZE];
+        buffer.get(piecesStart + piece * PIECE_HASH_SIZE, hash);
+        return hash;
+    }
+
+    /**
+     * Size of all files in bytes.
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Whether the torrent consists of a single file named like the torrent, instead of a folder.
+     */
+    public boolean isSingleFile() {
+        return isSingleFile;
+    }
+
+    public int getFileCount() {
+        return filePaths.length;
+    }
+
+    /**
+     * Path of a file inside of the torrent folder, with the names separated by "/".
+     * Files are numbered in the order of the torrent, which is the order of their data in the pieces.
+     */
+    public String getFilePath(int file) {
+        return filePaths[file];
+    }
+
+    /**
+     * Exact size of a file in bytes.
+     */
+    public long getFileLength(int file) {
+        return fileLengths[file];
+    }
+
+    /**
+     * Position of the first byte of a file in the data of all files.
+     */
+    public long getFileOffset(int file) {
+        return fileOffsets[file];
+    }
+
+    /**
+     * The first piece that contains data of a file.
+     */
+    public int getFirstPiece(int file) {
+        return (int) (fileOffsets[file] / pieceLength);
+    }
+
+    /**
+     * The last piece that contains data of a file, which is before the first piece for empty files.
+     */
+    public int getLastPiece(int file) {
+        // empty files may start in the middle of a piece
+        if (fileLengths[file] == 0)
+            return getFirstPiece(file) - 1;
+
+        return (int) ((fileOffsets[file] + fileLengths[file] - 1) / pieceLength);
+    }
+
+    /**
+     * The files as a tree, with a folder named like the torrent unless it is a single file.
+     * Files and folders are sorted by name, like on the website.
+     */
+    public synchronized FileTree getFileTree() {
+        if (fileTree == null)
+            fileTree = buildFileTree();
+
+        return fileTree;
+    }
+
+    private FileTree buildFileTree() {
+        FileTree.Builder builder = new FileTree.Builder();
+        if (isSingleFile)
+            return builder.addFile(name, fileLengths[0]).build();
+
+        // sort by path, so the contents of every folder are next to each other
+        String[][] paths = new String[filePaths.length][];
+        Integer[] order = new Integer[filePaths.length];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = filePaths[i].split("/");
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(i -> paths[i], TorrentMetainfo::comparePaths));
+
+        builder.openFolder(name);
+        String[] openFolders = new String[0];
+        for (int file : order) {
+            String[] path = paths[file];
+            int folderCount = path.length - 1;
+
+            int common = 0;
+            while (common < Math.min(openFolders.length, folderCount) && openFolders[common].equals(path[common]))
+                common++;
+
+            for (int i = openFolders.length; i > common; i--)
+                builder.closeFolder();
+            for (int i = common; i < folderCount; i++)
+                builder.openFolder(path[i]);
+
+            openFolders = Arrays.copyOf(path, folderCount);
+            builder.addFile(path[folderCount], fileLengths[file]);
+        }
+
+        return builder.build();
+    }
+
+    private static int comparePaths(String[] a, String[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int compare = a[i].compareTo(b[i]);
+            if (compare != 0)
+                return compare;
+        }
+
+        return Integer.compare(a.length, b.length);
+    }
+}
@@ -0,0 +1,200 @@
+package de.kaysubs.tracker.nyaasi.model;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Leaner alternative to {@link TorrentPreview} for keeping many search results in memory.
+ *
+ * The size is an exact count of bytes, the upload date a count of seconds since the epoch
+ * and the info hash is packed into primitive fields.
+ * Download and magnet links are built when they are requested.
+ * The built magnet link carries the trackers of nyaa, which are the same as on the website.
+ */
+public class CompactTorrentPreview {
+    private final int id;
+    private final TorrentState torrentState;
+    private final SubCategory category;
+    private final String title;
+    private final int commentCount;
+    private final boolean hasDownloadLink;
+    private final boolean hasInfoHash;
+    // the 20 bytes of the info hash, in big endian order
+    private final long infoHash0;
+    private final long infoHash1;
+    private final int infoHash2;
+    private final long size;
+    private final long uploadedAt;
+    private final int seeders;
+    private final int leechers;
+    private final int completed;
+
+    /**
+     * @param infoHash 20 bytes or null if unknown
+     * @param size size in bytes or -1 if unknown
+     * @param uploadedAt seconds since the epoch
+     */
+    public CompactTorrentPreview(int id, TorrentState torrentState, SubCategory category, String title, int commentCount,
+                                 boolean hasDownloadLink, byte[] infoHash, long size, long uploadedAt,
+                                 int seeders, int leechers, int completed) {
+        if (infoHash != null && infoHash.length != 20)
+            throw new IllegalArgumentException("Info hash must have 20 bytes");
+
+        this.id = id;
+        this.torrentState = torrentState;
+        this.category = category;
+        this.title = title;
+        this.commentCount = commentCount;
+        this.hasDownloadLink = hasDownloadLink;
+        this.hasInfoHash = infoHash != null;
+        this.infoHash0 = infoHash == null ? 0 : readLong(infoHash, 0);
+        this.infoHash1 = infoHash == null ? 0 : readLong(infoHash, 8);
+        this.infoHash2 = infoHash == null ? 0 : (int) (readLong(infoHash, 12) & 0xffffffffL);
+        this.size = size;
+        this.uploadedAt = uploadedAt;
+        this.seeders = seeders;
+        this.leechers = leechers;
+        this.completed = completed;
+    }
+
+    /**
+     * Convert a regular preview. Its size is only as exact as the rounded value shown on the website.
+     */
+    public static CompactTorrentPreview of(TorrentPreview preview) {
+        DataSize size = preview.getSize();
+        return new CompactTorrentPreview(preview.getId(), preview.getTorrentState(), preview.getCategory(),
+                preview.getTitle(), preview.getCommentCount(), preview.getDownloadLink() != null,
+                preview.getMagnetLink() == null ? null : MagnetLinks.parseInfoHash(preview.getMagnetLink().toString()),
+                size == null ? -1 : size.getBytes(),
+                preview.getDate() == null ? 0 : Math.floorDiv(preview.getDate().getTime(), 1000L),
+                preview.getSeeders(), preview.getLeechers(), preview.getCompleted());
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++)
+            value = value << 8 | (bytes[offset + i] & 0xff);
+        return value;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public TorrentState getTorrentState() {
+        return torrentState;
+    }
+
+    public SubCategory getCategory() {
+        return category;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getCommentCount() {
+        return commentCount;
+    }
+
+    /**
+     * @return size in bytes or -1 if unknown
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return upload date in seconds since the epoch
+     */
+    public long getUploadedAt() {
+        return uploadedAt;
+    }
+
+    public Instant getDate() {
+        return Instant.ofEpochSecond(uploadedAt);
+    }
+
+    public int getSeeders() {
+        return seeders;
+    }
+
+    public int getLeechers() {
+        return leechers;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public boolean hasInfoHash() {
+        return hasInfoHash;
+    }
+
+    /**
+     * @return the 20 bytes of the info hash or null if unknown
+     */
+    public byte[] getInfoHash() {
+        if (!hasInfoHash)
+            return null;
+
+        byte[] hash = new byte[20];
+        for (int i = 0; i < 8; i++) {
+            hash[i] = (byte) (infoHash0 >>> (56 - 8 * i));
+            hash[8 + i] = (byte) (infoHash1 >>> (56 - 8 * i));
+        }
+        for (int i = 0; i < 4; i++)
+            hash[16 + i] = (byte) (infoHash2 >>> (24 - 8 * i));
+
+        return hash;
+    }
+
+    /**
+     * @return the info hash as 40 hex digits or null if unknown
+     */
+    public String getInfoHashHex() {
+        return hasInfoHash ? MagnetLinks.toHex(getInfoHash()) : null;
+    }
+
+    private boolean isSukebei() {
+        return category != null && category.isSukebei();
+    }
+
+    /**
+     * @return link to the torrent file or null if the torrent is only available as magnet link
+     */
+    public URL getDownloadLink() {
+        if (!hasDownloadLink)
+            return null;
+
+        try {
+            return new URL((isSukebei() ? "https://sukebei.nyaa.si" : "https://nyaa.si") + "/download/" + id + ".torrent");
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Rebuild the magnet link from the info hash. Only the info hash of the served link is kept,
+     * so the trackers are the fixed {@link MagnetLinks#TRACKERS} and may differ from the ones nyaa serves now.
+     * Use {@link #getInfoHash()} to add trackers of your own.
+     *
+     * @return magnet link with the trackers of nyaa or null if the info hash is unknown
+     */
+    public URI getMagnetLink() {
+        return hasInfoHash ? MagnetLinks.build(getInfoHashHex(), title) : null;
+    }
+
+    /**
+     * Convert into a regular preview, with the size in the largest unit that represents it exactly.
+     */
+    public TorrentPreview toTorrentPreview() {
+        DataSize dataSize = size < 0 ? null : DataSize.ofBytes(size);
+
+        return new TorrentPreview(id, torrentState, category, title, commentCount, getDownloadLink(), getMagnetLink(),
+                dataSize, new Date(uploadedAt * 1000L), seeders, leechers, completed);
+    }
+}
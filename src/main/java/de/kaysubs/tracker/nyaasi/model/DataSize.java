@@ -26,6 +26,28 @@ public class DataSize {
         this.unit = unit;
     }
 
+    /**
+     * Express a number of bytes in the largest unit that represents it exactly,
+     * or in a larger rounded down unit if the value would not fit into an int.
+     */
+    public static DataSize ofBytes(long bytes) {
+        DataUnit[] units = DataUnit.values();
+        int unit = 0;
+        while (unit + 1 < units.length && (bytes & ((1L << (10 * (unit + 1))) - 1)) == 0 && bytes != 0)
+            unit++;
+        while (unit + 1 < units.length && (bytes >> (10 * unit)) > Integer.MAX_VALUE)
+            unit++;
+
+        return new DataSize((int) (bytes >> (10 * unit)), units[unit]);
+    }
+
+    /**
+     * Size in bytes, with units of 1024.
+     */
+    public long getBytes() {
+        return (long) value << (10 * unit.ordinal());
+    }
+
     public int getValue() {
         return value;
     }
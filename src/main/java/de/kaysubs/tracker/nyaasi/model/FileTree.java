@@ -0,0 +1,300 @@
+package de.kaysubs.tracker.nyaasi.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * The files of a torrent, stored in flat arrays instead of one object per file.
+ *
+ * Nodes are numbered in the order in which they appear in the file list, so every folder comes before its contents
+ * and the contents of a folder are the nodes up to {@link #getSubtreeEnd(int)}.
+ * Names are pooled, so names that repeat in many folders are only stored once.
+ * Folders have the total size of their contents, so the size of the torrent is known without iterating.
+ */
+public class FileTree {
+    private final int nodeCount;
+    private final int[] parents;
+    private final int[] subtreeEnds;
+    private final boolean[] folders;
+    private final long[] sizes;
+    private final int[] nameIds;
+    private final String[] names;
+    private final int fileCount;
+    private final long totalSize;
+
+    private FileTree(Builder builder) {
+        this.nodeCount = builder.nodeCount;
+        this.parents = Arrays.copyOf(builder.parents, nodeCount);
+        this.subtreeEnds = Arrays.copyOf(builder.subtreeEnds, nodeCount);
+        this.folders = Arrays.copyOf(builder.folders, nodeCount);
+        this.sizes = Arrays.copyOf(builder.sizes, nodeCount);
+        this.nameIds = Arrays.copyOf(builder.nameIds, nodeCount);
+        this.names = builder.names.toArray(new String[0]);
+        this.fileCount = builder.fileCount;
+        this.totalSize = builder.totalSize;
+    }
+
+    /**
+     * Build a tree by adding nodes in the order of the file list.
+     * Folders are opened, filled and closed again, so no recursion is needed.
+     */
+    public static class Builder {
+        private int nodeCount;
+        private int[] parents = new int[16];
+        private int[] subtreeEnds = new int[16];
+        private boolean[] folders = new boolean[16];
+        private long[] sizes = new long[16];
+        private int[] nameIds = new int[16];
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> nameIndex = new HashMap<>();
+        private int[] openFolders = new int[8];
+        private int depth;
+        private int fileCount;
+        private long totalSize;
+
+        /**
+         * Add a folder. Following nodes are placed inside of it, until it is closed.
+         */
+        public Builder openFolder(String name) {
+            int node = addNode(name, true, 0);
+
+            if (depth == openFolders.length)
+                openFolders = Arrays.copyOf(openFolders, depth * 2);
+            openFolders[depth++] = node;
+            return this;
+        }
+
+        public Builder closeFolder() {
+            if (depth == 0)
+                throw new IllegalStateException("No folder is open");
+
+            int folder = openFolders[--depth];
+            subtreeEnds[folder] = nodeCount;
+
+            // the size of the contents is known now and added up towards the root
+            if (depth > 0)
+                sizes[openFolders[depth - 1]] += sizes[folder];
+            return this;
+        }
+
+        /**
+         * @param size size in bytes
+         */
+        public Builder addFile(String name, long size) {
+            int node = addNode(name, false, size);
+            subtreeEnds[node] = node + 1;
+
+            if (depth > 0)
+                sizes[openFolders[depth - 1]] += size;
+            fileCount++;
+            totalSize += size;
+            return this;
+        }
+
+        private int addNode(String name, boolean isFolder, long size) {
+            if (nodeCount == parents.length) {
+                int capacity = nodeCount * 2;
+                parents = Arrays.copyOf(parents, capacity);
+                subtreeEnds = Arrays.copyOf(subtreeEnds, capacity);
+                folders = Arrays.copyOf(folders, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                nameIds = Arrays.copyOf(nameIds, capacity);
+            }
+
+            Integer nameId = nameIndex.get(name);
+            if (nameId == null) {
+                nameId = names.size();
+                names.add(name);
+                nameIndex.put(name, nameId);
+            }
+
+            int node = nodeCount++;
+            parents[node] = depth == 0 ? -1 : openFolders[depth - 1];
+            folders[node] = isFolder;
+            sizes[node] = size;
+            nameIds[node] = nameId;
+            return node;
+        }
+
+        /**
+         * Close all folders that are still open and build the tree.
+         */
+        public FileTree build() {
+            while (depth > 0)
+                closeFolder();
+
+            return new FileTree(this);
+        }
+    }
+
+    /**
+     * Convert a tree of file nodes, e.g. one that was created by hand.
+     */
+    public static FileTree of(TorrentInfo.FileNode root) {
+        Builder builder = new Builder();
+
+        // each stack entry is a folder and the index of its next child
+        List<TorrentInfo.Folder> stack = new ArrayList<>();
+        List<Integer> nextChild = new ArrayList<>();
+        TorrentInfo.FileNode node = root;
+
+        while (true) {
+            if (node instanceof TorrentInfo.Folder) {
+                builder.openFolder(node.getName());
+                stack.add((TorrentInfo.Folder) node);
+                nextChild.add(0);
+            } else if (node != null) {
+                TorrentInfo.File file = (TorrentInfo.File) node;
+                builder.addFile(file.getName(), file.getSize() == null ? 0 : file.getSize().getBytes());
+            }
+
+            node = null;
+            while (node == null && !stack.isEmpty()) {
+                int top = stack.size() - 1;
+                TorrentInfo.FileNode[] children = stack.get(top).getChildren();
+                int index = nextChild.get(top);
+
+                if (index < children.length) {
+                    nextChild.set(top, index + 1);
+                    node = children[index];
+                } else {
+                    builder.closeFolder();
+                    stack.remove(top);
+                    nextChild.remove(top);
+                }
+            }
+
+            if (node == null)
+                return builder.build();
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Size of all files in bytes.
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * @return the parent folder or -1 for the root
+     */
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    public String getName(int node) {
+        return names[nameIds[node]];
+    }
+
+    public boolean isFolder(int node) {
+        return folders[node];
+    }
+
+    /**
+     * Size in bytes, which is the size of all contained files for folders.
+     */
+    public long getSize(int node) {
+        return sizes[node];
+    }
+
+    /**
+     * @return the node after the last node inside of this one
+     */
+    public int getSubtreeEnd(int node) {
+        return subtreeEnds[node];
+    }
+
+    /**
+     * @return the first node inside of a folder or -1 if there is none
+     */
+    public int getFirstChild(int node) {
+        return node + 1 < subtreeEnds[node] ? node + 1 : -1;
+    }
+
+    /**
+     * @return the next node in the same folder or -1 if there is none
+     */
+    public int getNextSibling(int node) {
+        int next = subtreeEnds[node];
+        int parent = parents[node];
+        int end = parent < 0 ? nodeCount : subtreeEnds[parent];
+        return next < end ? next : -1;
+    }
+
+    /**
+     * Path of a node starting at the root, with the names separated by "/".
+     */
+    public String getPath(int node) {
+        int length = -1;
+        for (int n = node; n >= 0; n = parents[n])
+            length += getName(n).length() + 1;
+
+        char[] path = new char[length];
+        int end = length;
+        for (int n = node; n >= 0; n = parents[n]) {
+            String name = getName(n);
+            end -= name.length();
+            name.getChars(0, name.length(), path, end);
+            if (end > 0)
+                path[--end] = '/';
+        }
+
+        return new String(path);
+    }
+
+    /**
+     * Pass the index of every file, in the order of the file list.
+     */
+    public void forEachFile(IntConsumer action) {
+        for (int node = 0; node < nodeCount; node++)
+            if (!folders[node])
+                action.accept(node);
+    }
+
+    /**
+     * Build the tree of {@link TorrentInfo.FileNode} objects, starting at the first node.
+     *
+     * @return the root or null if the tree is empty
+     */
+    public TorrentInfo.FileNode toFileNode() {
+        if (nodeCount == 0)
+            return null;
+
+        // contents come after their folder, so building from the end finds all children already built
+        TorrentInfo.FileNode[] built = new TorrentInfo.FileNode[nodeCount];
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            if (!folders[node]) {
+                built[node] = new TorrentInfo.File(getName(node), DataSize.ofBytes(sizes[node]));
+                continue;
+            }
+
+            int childCount = 0;
+            for (int child = getFirstChild(node); child >= 0; child = getNextSibling(child))
+                childCount++;
+
+            TorrentInfo.FileNode[] children = new TorrentInfo.FileNode[childCount];
+            int index = 0;
+            for (int child = getFirstChild(node); child >= 0; child = getNextSibling(child)) {
+                children[index++] = built[child];
+                built[child] = null;
+            }
+
+            built[node] = new TorrentInfo.Folder(getName(node), children);
+        }
+
+        return built[0];
+    }
+}
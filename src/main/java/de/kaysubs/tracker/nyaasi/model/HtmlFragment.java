@@ -0,0 +1,79 @@
+package de.kaysubs.tracker.nyaasi.model;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Html of a single element, stored as UTF-8 bytes instead of a parsed element.
+ *
+ * Parsed elements point to their parent and thereby keep the whole page alive.
+ * A fragment keeps only its own html and parses it again when the element is requested.
+ */
+public class HtmlFragment {
+    private final byte[] html;
+    private SoftReference<Element> element;
+
+    private HtmlFragment(byte[] html) {
+        this.html = html;
+    }
+
+    /**
+     * The html is rendered with the output settings of the element's document,
+     * so pretty printing should be disabled there to keep the fragment small.
+     *
+     * @return the html of the element or null if the element is null
+     */
+    public static HtmlFragment of(Element element) {
+        return element == null ? null : new HtmlFragment(element.outerHtml().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static HtmlFragment fromHtml(String html) {
+        return html == null ? null : new HtmlFragment(html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getHtml() {
+        return new String(html, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Size of the stored html in bytes.
+     */
+    public int getByteSize() {
+        return html.length;
+    }
+
+    /**
+     * Get the parsed element. It is parsed again after it was reclaimed by the garbage collector.
+     */
+    public synchronized Element getElement() {
+        Element parsed = element == null ? null : element.get();
+        if (parsed == null) {
+            parsed = parse();
+            element = new SoftReference<>(parsed);
+        }
+
+        return parsed;
+    }
+
+    /**
+     * Parse the html into a new element, that is not shared with other callers.
+     */
+    public Element parse() {
+        Document document = Jsoup.parseBodyFragment(getHtml());
+        document.outputSettings().prettyPrint(false);
+        return document.body().firstElementChild();
+    }
+
+    public String getText() {
+        return getElement().text();
+    }
+
+    @Override
+    public String toString() {
+        return getHtml();
+    }
+}
@@ -0,0 +1,127 @@
+package de.kaysubs.tracker.nyaasi.model;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Build magnet links and read the info hash out of them.
+ */
+public class MagnetLinks {
+    /**
+     * Trackers that nyaa added to its own magnet links when this list was written.
+     * They are not read from the site, so links built from them go stale if nyaa changes its trackers.
+     */
+    public final static String[] TRACKERS = {
+            "http://nyaa.tracker.wf:7777/announce",
+            "udp://open.stealth.si:80/announce",
+            "udp://tracker.opentrackr.org:1337/announce",
+            "udp://exodus.desync.com:6969/announce",
+            "udp://tracker.torrent.eu.org:451/announce"
+    };
+
+    private final static String BTIH = "urn:btih:";
+    private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Build a magnet link with the {@link #TRACKERS}, not with the trackers of the link that nyaa served.
+     *
+     * @param infoHash info hash as 40 hex digits
+     */
+    public static URI build(String infoHash, String title) {
+        StringBuilder magnet = new StringBuilder("magnet:?xt=urn:btih:").append(infoHash)
+                .append("&dn=").append(URLEncoder.encode(title, StandardCharsets.UTF_8));
+
+        for (String tracker : TRACKERS)
+            magnet.append("&tr=").append(URLEncoder.encode(tracker, StandardCharsets.UTF_8));
+
+        return URI.create(magnet.toString());
+    }
+
+    /**
+     * Decode the info hash of a magnet link, given as 40 hex digits or 32 base32 characters.
+     *
+     * @return the 20 bytes of the info hash or null if the link contains none
+     */
+    public static byte[] parseInfoHash(CharSequence magnetLink) {
+        int start = indexOf(magnetLink, BTIH);
+        if (start < 0)
+            return null;
+        start += BTIH.length();
+
+        int end = start;
+        while (end < magnetLink.length() && magnetLink.charAt(end) != '&')
+            end++;
+
+        if (end - start == 40)
+            return decodeHex(magnetLink, start);
+        if (end - start == 32)
+            return decodeBase32(magnetLink, start);
+
+        return null;
+    }
+
+    public static String toHex(byte[] infoHash) {
+        char[] hex = new char[infoHash.length * 2];
+        for (int i = 0; i < infoHash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(infoHash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[infoHash[i] & 0xf];
+        }
+
+        return new String(hex);
+    }
+
+    private static byte[] decodeHex(CharSequence string, int start) {
+        byte[] hash = new byte[20];
+        for (int i = 0; i < 20; i++) {
+            int high = Character.digit(string.charAt(start + 2 * i), 16);
+            int low = Character.digit(string.charAt(start + 2 * i + 1), 16);
+            if (high < 0 || low < 0)
+                return null;
+
+            hash[i] = (byte) (high << 4 | low);
+        }
+
+        return hash;
+    }
+
+    private static byte[] decodeBase32(CharSequence string, int start) {
+        byte[] hash = new byte[20];
+        long buffer = 0;
+        int bits = 0;
+        int index = 0;
+
+        for (int i = 0; i < 32; i++) {
+            char c = Character.toUpperCase(string.charAt(start + i));
+            int value;
+            if (c >= 'A' && c <= 'Z')
+                value = c - 'A';
+            else if (c >= '2' && c <= '7')
+                value = c - '2' + 26;
+            else
+                return null;
+
+            buffer = buffer << 5 | value;
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                hash[index++] = (byte) (buffer >> bits);
+            }
+        }
+
+        return hash;
+    }
+
+    private static int indexOf(CharSequence string, String part) {
+        outer:
+        for (int i = 0; i + part.length() <= string.length(); i++) {
+            for (int j = 0; j < part.length(); j++)
+                if (Character.toLowerCase(string.charAt(i + j)) != part.charAt(j))
+                    continue outer;
+
+            return i;
+        }
+
+        return -1;
+    }
+}
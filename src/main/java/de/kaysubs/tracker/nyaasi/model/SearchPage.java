@@ -0,0 +1,50 @@
+package de.kaysubs.tracker.nyaasi.model;
+
+import java.util.OptionalInt;
+
+/**
+ * One page of search results together with the pagination info of the search.
+ */
+public class SearchPage {
+    private final TorrentPreview[] torrents;
+    private final int page;
+    private final int lastPage;
+    private final OptionalInt totalResults;
+
+    public SearchPage(TorrentPreview[] torrents, int page, int lastPage, OptionalInt totalResults) {
+        this.torrents = torrents;
+        this.page = page;
+        this.lastPage = lastPage;
+        this.totalResults = totalResults;
+    }
+
+    public TorrentPreview[] getTorrents() {
+        return torrents;
+    }
+
+    /**
+     * Number of this page, where page 1 is the first one.
+     */
+    public int getPage() {
+        return page;
+    }
+
+    /**
+     * Number of the last page that nyaa will show for this search.
+     */
+    public int getLastPage() {
+        return lastPage;
+    }
+
+    /**
+     * Total number of results as reported by nyaa.
+     * For full text searches, nyaa may show fewer results than this.
+     */
+    public OptionalInt getTotalResults() {
+        return totalResults;
+    }
+
+    public boolean isLastPage() {
+        return page >= lastPage;
+    }
+}
@@ -56,6 +56,22 @@ public class SearchRequest {
         }
     }
 
+    /**
+     * Create an independent copy of this request,
+     * so it can be modified without affecting the original.
+     */
+    public SearchRequest copy() {
+        SearchRequest copy = new SearchRequest();
+        copy.term = term;
+        copy.category = category;
+        copy.filter = filter;
+        copy.user = user;
+        copy.page = page;
+        copy.ordering = ordering;
+        copy.sortedBy = sortedBy;
+        return copy;
+    }
+
     public Optional<String> getTerm() {
         return term;
     }
@@ -0,0 +1,298 @@
+package de.kaysubs.tracker.nyaasi.model;
+
+import java.util.Arrays;
+
+/**
+ * Search results stored as one primitive array per attribute instead of one object per torrent.
+ *
+ * Scanning a single column for ranking or aggregation only touches the memory of that column.
+ * Row {@code i} of every column belongs to the same torrent.
+ *
+ * Categories are stored as the code {@code 10 * mainCategoryId + subCategoryId}
+ * and states as the ordinal of {@link TorrentState}.
+ * Titles are stored back to back in one char array, so no String object is kept per row.
+ */
+public class TorrentColumns {
+    private final static TorrentState[] STATES = TorrentState.values();
+    private final static int AVERAGE_TITLE_LENGTH = 64;
+
+    private final boolean isSukebei;
+    private int size;
+    private int[] ids;
+    private byte[] states;
+    private byte[] categories;
+    private char[] titleChars;
+    private int[] titleEnds;
+    private int titleLength;
+    private int[] commentCounts;
+    private long[] sizeBytes;
+    private long[] epochSeconds;
+    private int[] seeders;
+    private int[] leechers;
+    private int[] completed;
+
+    public TorrentColumns(boolean isSukebei, int capacity) {
+        this.isSukebei = isSukebei;
+        this.ids = new int[capacity];
+        this.states = new byte[capacity];
+        this.categories = new byte[capacity];
+        this.titleChars = new char[capacity * AVERAGE_TITLE_LENGTH];
+        this.titleEnds = new int[capacity];
+        this.commentCounts = new int[capacity];
+        this.sizeBytes = new long[capacity];
+        this.epochSeconds = new long[capacity];
+        this.seeders = new int[capacity];
+        this.leechers = new int[capacity];
+        this.completed = new int[capacity];
+    }
+
+    public static TorrentColumns of(TorrentPreview[] previews, boolean isSukebei) {
+        TorrentColumns columns = new TorrentColumns(isSukebei, previews.length);
+        for (TorrentPreview preview : previews) {
+            CompactTorrentPreview compact = CompactTorrentPreview.of(preview);
+            columns.add(compact.getId(), compact.getTorrentState(), compact.getCategory(), compact.getTitle(),
+                    compact.getCommentCount(), compact.getSize(), compact.getUploadedAt(),
+                    compact.getSeeders(), compact.getLeechers(), compact.getCompleted());
+        }
+
+        return columns;
+    }
+
+    /**
+     * Append a row, growing the columns if necessary.
+     *
+     * @param sizeBytes size in bytes or -1 if unknown
+     * @param epochSeconds upload date in seconds since the epoch
+     */
+    public void add(int id, TorrentState state, SubCategory category, String title, int commentCount,
+                    long sizeBytes, long epochSeconds, int seeders, int leechers, int completed) {
+        if (size == ids.length)
+            grow();
+
+        this.ids[size] = id;
+        this.states[size] = (byte) state.ordinal();
+        this.categories[size] = categoryCode(category);
+        ensureTitleCapacity(title.length());
+        title.getChars(0, title.length(), titleChars, titleLength);
+        titleLength += title.length();
+        this.titleEnds[size] = titleLength;
+        this.commentCounts[size] = commentCount;
+        this.sizeBytes[size] = sizeBytes;
+        this.epochSeconds[size] = epochSeconds;
+        this.seeders[size] = seeders;
+        this.leechers[size] = leechers;
+        this.completed[size] = completed;
+        size++;
+    }
+
+    /**
+     * Append all rows of other columns, e.g. to combine several pages of a search.
+     */
+    public void addAll(TorrentColumns other) {
+        if (other.isSukebei != isSukebei)
+            throw new IllegalArgumentException("Columns belong to a different site");
+
+        while (size + other.size > ids.length)
+            grow();
+
+        System.arraycopy(other.ids, 0, ids, size, other.size);
+        System.arraycopy(other.states, 0, states, size, other.size);
+        System.arraycopy(other.categories, 0, categories, size, other.size);
+        ensureTitleCapacity(other.titleLength);
+        System.arraycopy(other.titleChars, 0, titleChars, titleLength, other.titleLength);
+        for (int i = 0; i < other.size; i++)
+            titleEnds[size + i] = titleLength + other.titleEnds[i];
+        titleLength += other.titleLength;
+        System.arraycopy(other.commentCounts, 0, commentCounts, size, other.size);
+        System.arraycopy(other.sizeBytes, 0, sizeBytes, size, other.size);
+        System.arraycopy(other.epochSeconds, 0, epochSeconds, size, other.size);
+        System.arraycopy(other.seeders, 0, seeders, size, other.size);
+        System.arraycopy(other.leechers, 0, leechers, size, other.size);
+        System.arraycopy(other.completed, 0, completed, size, other.size);
+        size += other.size;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        states = Arrays.copyOf(states, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        titleEnds = Arrays.copyOf(titleEnds, capacity);
+        commentCounts = Arrays.copyOf(commentCounts, capacity);
+        sizeBytes = Arrays.copyOf(sizeBytes, capacity);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        seeders = Arrays.copyOf(seeders, capacity);
+        leechers = Arrays.copyOf(leechers, capacity);
+        completed = Arrays.copyOf(completed, capacity);
+    }
+
+    private void ensureTitleCapacity(int additional) {
+        if (titleLength + additional > titleChars.length)
+            titleChars = Arrays.copyOf(titleChars, Math.max(titleChars.length * 2, titleLength + additional));
+    }
+
+    public static byte categoryCode(SubCategory category) {
+        return (byte) (10 * category.getMainCategoryId() + category.getSubCategoryId());
+    }
+
+    public boolean isSukebei() {
+        return isSukebei;
+    }
+
+    /**
+     * Number of rows. The column arrays may be longer than this.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int[] getIds() {
+        return ids;
+    }
+
+    /**
+     * @see TorrentState#ordinal()
+     */
+    public byte[] getStates() {
+        return states;
+    }
+
+    /**
+     * @see #categoryCode(SubCategory)
+     */
+    public byte[] getCategories() {
+        return categories;
+    }
+
+    public String getTitle(int row) {
+        int start = getTitleStart(row);
+        return new String(titleChars, start, titleEnds[row] - start);
+    }
+
+    /**
+     * Characters of all titles, e.g. for matching them without creating strings.
+     * The title of a row lies between {@link #getTitleStart(int)} and {@link #getTitleEnd(int)}.
+     */
+    public char[] getTitleChars() {
+        return titleChars;
+    }
+
+    public int getTitleStart(int row) {
+        return row == 0 ? 0 : titleEnds[row - 1];
+    }
+
+    public int getTitleEnd(int row) {
+        return titleEnds[row];
+    }
+
+    public int[] getCommentCounts() {
+        return commentCounts;
+    }
+
+    /**
+     * Sizes in bytes, -1 if unknown.
+     */
+    public long[] getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Upload dates in seconds since the epoch.
+     */
+    public long[] getEpochSeconds() {
+        return epochSeconds;
+    }
+
+    public int[] getSeeders() {
+        return seeders;
+    }
+
+    public int[] getLeechers() {
+        return leechers;
+    }
+
+    public int[] getCompleted() {
+        return completed;
+    }
+
+    public TorrentState getTorrentState(int row) {
+        return STATES[states[row]];
+    }
+
+    public SubCategory getCategory(int row) {
+        int mainCategoryId = categories[row] / 10;
+        MainCategory mainCategory = isSukebei ?
+                MainCategory.Sukebei.fromId(mainCategoryId) :
+                MainCategory.Nyaa.fromId(mainCategoryId);
+
+        return mainCategory.getSubcategoryFromId(categories[row] % 10);
+    }
+
+    /**
+     * Rows with the largest values of a column, largest first.
+     * Rows with equal values keep their order.
+     *
+     * @param column one of the int columns, such as {@link #getSeeders()}
+     */
+    public int[] topRows(int[] column, int n) {
+        n = Math.min(n, size);
+        int[] top = new int[n];
+        int count = 0;
+
+        // same as for long columns, repeated so the column is read in place
+        for (int row = 0; row < size; row++) {
+            int value = column[row];
+            if (count == n && (n == 0 || column[top[n - 1]] >= value))
+                continue;
+
+            int i = count == n ? n - 1 : count++;
+            while (i > 0 && column[top[i - 1]] < value) {
+                top[i] = top[i - 1];
+                i--;
+            }
+            top[i] = row;
+        }
+
+        return top;
+    }
+
+    /**
+     * Rows with the largest values of a column, largest first.
+     * Rows with equal values keep their order.
+     *
+     * @param column one of the long columns, such as {@link #getSizeBytes()}
+     */
+    public int[] topRows(long[] column, int n) {
+        n = Math.min(n, size);
+        int[] top = new int[n];
+        int count = 0;
+
+        // insertion into a sorted array, which is cheap since n is usually small
+        for (int row = 0; row < size; row++) {
+            long value = column[row];
+            if (count == n && (n == 0 || column[top[n - 1]] >= value))
+                continue;
+
+            int i = count == n ? n - 1 : count++;
+            while (i > 0 && column[top[i - 1]] < value) {
+                top[i] = top[i - 1];
+                i--;
+            }
+            top[i] = row;
+        }
+
+        return top;
+    }
+
+    /**
+     * Sum of the sizes of all rows with a known size.
+     */
+    public long totalSizeBytes() {
+        long total = 0;
+        for (int i = 0; i < size; i++)
+            if (sizeBytes[i] > 0)
+                total += sizeBytes[i];
+
+        return total;
+    }
+}
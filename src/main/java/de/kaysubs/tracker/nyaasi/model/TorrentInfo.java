@@ -6,10 +6,21 @@ import java.net.URI;
 import java.net.URL;
 import java.util.Date;
 import java.util.Optional;
-
+import java.util.function.Supplier;
+
+/**
+ * Informations about a torrent.
+ *
+ * The file tree and the comments may be parsed lazily,
+ * when their getter is called for the first time.
+ * Errors while parsing them are thrown by that getter.
+ *
+ * Html is kept as {@link HtmlFragment}, so a torrent info does not keep the parsed page alive.
+ * Sections that were not parsed yet keep their part of the page until they are parsed, see {@link #detach()}.
+ */
 public class TorrentInfo {
     private String title;
-    private Element descriptionDiv;
+    private Section<HtmlFragment> description = Section.of(null);
     private SubCategory category;
     private DataSize size;
     private Date date;
@@ -22,8 +33,42 @@ public class TorrentInfo {
     private String hash;
     private URL downloadLink;
     private URI magnetLink;
-    private FileNode file;
-    private Comment[] comments;
+    private Section<FileTree> files = Section.of(null);
+    private Section<Comment[]> comments = Section.of(null);
+
+    /**
+     * A value that is loaded on first access. Copies of a torrent info share their sections,
+     * so the value is loaded at most once.
+     */
+    private final static class Section<T> {
+        private Supplier<T> loader;
+        private T value;
+
+        private Section(Supplier<T> loader, T value) {
+            this.loader = loader;
+            this.value = value;
+        }
+
+        static <T> Section<T> of(T value) {
+            return new Section<>(null, value);
+        }
+
+        static <T> Section<T> lazy(Supplier<T> loader) {
+            return new Section<>(loader, null);
+        }
+
+        synchronized T get() {
+            if (loader != null) {
+                value = loader.get();
+                loader = null;
+            }
+            return value;
+        }
+
+        synchronized boolean isLoaded() {
+            return loader == null;
+        }
+    }
 
     public static class Comment {
         private final int commentId;
@@ -31,15 +76,19 @@ public class TorrentInfo {
         private final boolean isTrusted;
         private final String avatar;
         private final Date date;
-        private final Element commentDiv;
+        private final HtmlFragment commentHtml;
 
         public Comment(int commentId, String username, boolean isTrusted, String avatar, Date date, Element commentDiv) {
+            this(commentId, username, isTrusted, avatar, date, HtmlFragment.of(commentDiv));
+        }
+
+        public Comment(int commentId, String username, boolean isTrusted, String avatar, Date date, HtmlFragment commentHtml) {
             this.commentId = commentId;
             this.username = username;
             this.isTrusted = isTrusted;
             this.avatar = avatar;
             this.date = date;
-            this.commentDiv = commentDiv;
+            this.commentHtml = commentHtml;
         }
 
         public int getCommentId() {
@@ -63,11 +112,18 @@ public class TorrentInfo {
         }
 
         public String getComment() {
-            return getCommentDiv().text();
+            return commentHtml.getText();
         }
 
+        /**
+         * Parsed again from {@link #getCommentHtml()} when needed.
+         */
         public Element getCommentDiv() {
-            return commentDiv;
+            return commentHtml.getElement();
+        }
+
+        public HtmlFragment getCommentHtml() {
+            return commentHtml;
         }
     }
 
@@ -111,6 +167,51 @@ public class TorrentInfo {
         }
     }
 
+    /**
+     * Create a shallow copy, so the setters of the copy do not affect this object.
+     * The html fragments and the file tree are shared.
+     */
+    public TorrentInfo copy() {
+        TorrentInfo copy = new TorrentInfo();
+        copy.title = title;
+        copy.description = description;
+        copy.category = category;
+        copy.size = size;
+        copy.date = date;
+        copy.uploader = uploader;
+        copy.torrentState = torrentState;
+        copy.seeders = seeders;
+        copy.leechers = leechers;
+        copy.completed = completed;
+        copy.information = information;
+        copy.hash = hash;
+        copy.downloadLink = downloadLink;
+        copy.magnetLink = magnetLink;
+        copy.files = files;
+
+        // every copy gets its own array, without loading the comments now
+        Section<Comment[]> comments = this.comments;
+        copy.comments = comments.isLoaded() ?
+                Section.of(cloneComments(comments.get())) :
+                Section.lazy(() -> cloneComments(comments.get()));
+        return copy;
+    }
+
+    /**
+     * Parse all sections that are still pending, so this torrent info no longer keeps parsed html alive.
+     * Caches should call this before keeping a torrent info for a long time.
+     */
+    public TorrentInfo detach() {
+        description.get();
+        files.get();
+        comments.get();
+        return this;
+    }
+
+    private static Comment[] cloneComments(Comment[] comments) {
+        return comments == null ? null : comments.clone();
+    }
+
     public String getTitle() {
         return title;
     }
@@ -120,17 +221,30 @@ public class TorrentInfo {
     }
 
     public String getDescription() {
-        return getDescriptionDiv().text();
+        return getDescriptionHtml().getText();
     }
 
+    /**
+     * Parsed again from {@link #getDescriptionHtml()} when needed.
+     */
     public Element getDescriptionDiv() {
-        return descriptionDiv;
+        HtmlFragment html = getDescriptionHtml();
+        return html == null ? null : html.getElement();
     }
 
     public void setDescriptionDiv(Element descriptionDiv) {
-        this.descriptionDiv = descriptionDiv;
+        setDescriptionHtml(HtmlFragment.of(descriptionDiv));
+    }
+
+    public HtmlFragment getDescriptionHtml() {
+        return description.get();
+    }
+
+    public void setDescriptionHtml(HtmlFragment description) {
+        this.description = Section.of(description);
     }
 
+
     public SubCategory getCategory() {
         return category;
     }
@@ -228,19 +342,45 @@ public class TorrentInfo {
         this.magnetLink = magnetLink;
     }
 
+    /**
+     * Build the files as a tree of objects. For large torrents, {@link #getFileTree()} is much cheaper.
+     */
     public FileNode getFile() {
-        return file;
+        FileTree files = getFileTree();
+        return files == null ? null : files.toFileNode();
     }
 
     public void setFile(FileNode file) {
-        this.file = file;
+        setFileTree(file == null ? null : FileTree.of(file));
+    }
+
+    public FileTree getFileTree() {
+        return files.get();
+    }
+
+    public void setFileTree(FileTree files) {
+        this.files = Section.of(files);
+    }
+
+    /**
+     * Parse the file tree when it is first requested.
+     */
+    public void setFileTreeLoader(Supplier<FileTree> loader) {
+        this.files = Section.lazy(loader);
     }
 
     public Comment[] getComments() {
-        return comments;
+        return comments.get();
     }
 
     public void setComments(Comment[] comments) {
-        this.comments = comments;
+        this.comments = Section.of(comments);
+    }
+
+    /**
+     * Parse the comments when they are first requested.
+     */
+    public void setCommentsLoader(Supplier<Comment[]> loader) {
+        this.comments = Section.lazy(loader);
     }
 }
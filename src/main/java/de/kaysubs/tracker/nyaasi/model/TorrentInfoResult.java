@@ -0,0 +1,56 @@
+package de.kaysubs.tracker.nyaasi.model;
+
+import java.util.Optional;
+
+/**
+ * Outcome of loading the info of a single torrent as part of a batch.
+ */
+public class TorrentInfoResult {
+    private final int torrentId;
+    private final Optional<TorrentInfo> info;
+    private final Optional<RuntimeException> error;
+
+    private TorrentInfoResult(int torrentId, Optional<TorrentInfo> info, Optional<RuntimeException> error) {
+        this.torrentId = torrentId;
+        this.info = info;
+        this.error = error;
+    }
+
+    public static TorrentInfoResult success(int torrentId, TorrentInfo info) {
+        return new TorrentInfoResult(torrentId, Optional.of(info), Optional.empty());
+    }
+
+    public static TorrentInfoResult failure(int torrentId, RuntimeException error) {
+        return new TorrentInfoResult(torrentId, Optional.empty(), Optional.of(error));
+    }
+
+    public int getTorrentId() {
+        return torrentId;
+    }
+
+    public boolean isSuccess() {
+        return info.isPresent();
+    }
+
+    public Optional<TorrentInfo> getInfo() {
+        return info;
+    }
+
+    /**
+     * Exception that was thrown while loading the torrent,
+     * e.g. a NoSuchTorrentException if the id does not exist.
+     */
+    public Optional<RuntimeException> getError() {
+        return error;
+    }
+
+    /**
+     * Get the torrent info or rethrow the exception that occurred while loading it.
+     */
+    public TorrentInfo get() {
+        if (error.isPresent())
+            throw error.get();
+
+        return info.get();
+    }
+}
@@ -0,0 +1,321 @@
+package de.kaysubs.tracker.nyaasi.store;
+
+import de.kaysubs.tracker.nyaasi.model.Category;
+import de.kaysubs.tracker.nyaasi.model.DataSize;
+import de.kaysubs.tracker.nyaasi.model.MainCategory;
+import de.kaysubs.tracker.nyaasi.model.SubCategory;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/**
+ * Append-only store of torrent previews in memory mapped files.
+ *
+ * Every preview is written as a fixed size record, while its strings are appended to a separate string pool.
+ * Storing a torrent id again appends a new record that replaces the old one.
+ * An index from torrent id to record is kept on the heap as an int array
+ * and rebuilt with a sequential scan when the store is opened.
+ *
+ * Appending is synchronized, reading is safe from any thread.
+ * Changes become visible to the operating system immediately, use {@link #flush()} to force them to the disk.
+ */
+public class CrawlStore implements AutoCloseable {
+    private final static int MAGIC = 0x4e435331; // "NCS1"
+    private final static int VERSION = 1;
+
+    // header of the record file
+    private final static int HEADER_MAGIC = 0;
+    private final static int HEADER_VERSION = 4;
+    private final static int HEADER_SUKEBEI = 8;
+    private final static int HEADER_RECORD_COUNT = 16;
+    private final static int HEADER_STRING_POOL_SIZE = 24;
+    private final static int HEADER_SIZE = 64;
+
+    // layout of a record, aligned so that no value straddles two mapped segments
+    final static int ID = 0;
+    final static int STATE = 4;
+    final static int MAIN_CATEGORY = 5;
+    final static int SUB_CATEGORY = 6;
+    final static int SIZE_UNIT = 7;
+    final static int SIZE_VALUE = 8;
+    final static int COMMENTS = 12;
+    final static int SEEDERS = 16;
+    final static int LEECHERS = 20;
+    final static int COMPLETED = 24;
+    final static int DATE = 32;
+    final static int TITLE = 40;
+    final static int DOWNLOAD_LINK = 48;
+    final static int MAGNET_LINK = 56;
+    final static int RECORD_SIZE = 64;
+
+    private final static long NULL_STRING = -1;
+
+    /**
+     * Highest torrent id that can be stored, since the index needs 4 bytes for every id up to the highest stored one.
+     */
+    public final static int MAX_TORRENT_ID = (1 << 27) - 1;
+
+    final static TorrentState[] TORRENT_STATES = TorrentState.values();
+    final static DataSize.DataUnit[] DATA_UNITS = DataSize.DataUnit.values();
+
+    private final boolean isSukebei;
+    private final SubCategory[][] categories;
+    final MappedFile records;
+    private final MappedFile strings;
+
+    // record number + 1 by torrent id, 0 if the torrent is not stored
+    // entries are only written while appending, a grown index is a copy that replaces the old one
+    private volatile AtomicIntegerArray index = new AtomicIntegerArray(0);
+    private volatile long recordCount;
+    private long stringPoolSize;
+    private int torrentCount;
+
+    /**
+     * Open the store in the directory or create a new one.
+     *
+     * @param isSukebei whether the previews are from sukebei, which is needed to restore their categories
+     */
+    public CrawlStore(Path directory, boolean isSukebei) {
+        this.isSukebei = isSukebei;
+        this.categories = buildCategoryTable(isSukebei ? Category.Sukebei.mainCategories : Category.Nyaa.mainCategories);
+
+        try {
+            Files.createDirectories(directory);
+            this.records = new MappedFile(directory.resolve(isSukebei ? "sukebei-previews.bin" : "nyaa-previews.bin"));
+            this.strings = new MappedFile(directory.resolve(isSukebei ? "sukebei-strings.bin" : "nyaa-strings.bin"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open crawl store", e);
+        }
+
+        if (records.getInt(HEADER_MAGIC) == 0) {
+            records.putInt(HEADER_MAGIC, MAGIC);
+            records.putInt(HEADER_VERSION, VERSION);
+            records.putByte(HEADER_SUKEBEI, (byte) (isSukebei ? 1 : 0));
+        } else if (records.getInt(HEADER_MAGIC) != MAGIC || records.getInt(HEADER_VERSION) != VERSION) {
+            close();
+            throw new IllegalStateException("Unsupported crawl store format in " + directory);
+        } else if (records.getByte(HEADER_SUKEBEI) != (isSukebei ? 1 : 0)) {
+            close();
+            throw new IllegalStateException("Crawl store in " + directory + " belongs to a different site");
+        }
+
+        // records and strings written after the last update of the header are discarded
+        recordCount = records.getLong(HEADER_RECORD_COUNT);
+        stringPoolSize = records.getLong(HEADER_STRING_POOL_SIZE);
+        rebuildIndex();
+    }
+
+    private static SubCategory[][] buildCategoryTable(MainCategory[] mainCategories) {
+        int maxMainId = Arrays.stream(mainCategories).mapToInt(MainCategory::getMainCategoryId).max().orElse(0);
+        SubCategory[][] table = new SubCategory[maxMainId + 1][];
+
+        for (MainCategory mainCategory : mainCategories) {
+            SubCategory[] subCategories = mainCategory.getSubCategories();
+            int maxSubId = Arrays.stream(subCategories).mapToInt(SubCategory::getSubCategoryId).max().orElse(0);
+
+            table[mainCategory.getMainCategoryId()] = new SubCategory[maxSubId + 1];
+            for (SubCategory subCategory : subCategories)
+                table[mainCategory.getMainCategoryId()][subCategory.getSubCategoryId()] = subCategory;
+        }
+
+        return table;
+    }
+
+    SubCategory getCategory(int mainId, int subId) {
+        return categories[mainId][subId];
+    }
+
+    private void rebuildIndex() {
+        for (long i = 0; i < recordCount; i++) {
+            int torrentId = records.getInt(recordPosition(i) + ID);
+            if (torrentId < 0 || torrentId > MAX_TORRENT_ID)
+                throw new IllegalStateException("Corrupt record " + i + " with torrent id " + torrentId + " in crawl store");
+
+            if (putIndex(torrentId, i))
+                torrentCount++;
+        }
+    }
+
+    /**
+     * @return whether the torrent id was not stored before
+     */
+    private boolean putIndex(int torrentId, long recordNumber) {
+        if (recordNumber + 1 > Integer.MAX_VALUE)
+            throw new IllegalStateException("Crawl store is full");
+
+        AtomicIntegerArray current = index;
+        if (torrentId >= current.length()) {
+            int length = (int) Math.min(MAX_TORRENT_ID + 1L, Math.max(torrentId + 1L, current.length() * 3L / 2));
+            AtomicIntegerArray grown = new AtomicIntegerArray(length);
+            for (int i = 0; i < current.length(); i++)
+                grown.lazySet(i, current.get(i));
+
+            // readers keep using the old index until the copy is complete
+            index = current = grown;
+        }
+
+        return current.getAndSet(torrentId, (int) (recordNumber + 1)) == 0;
+    }
+
+    private static long recordPosition(long recordNumber) {
+        return HEADER_SIZE + recordNumber * RECORD_SIZE;
+    }
+
+    public boolean isSukebei() {
+        return isSukebei;
+    }
+
+    /**
+     * Store a preview, replacing a previously stored preview with the same id.
+     */
+    public synchronized void append(TorrentPreview preview) {
+        if (preview.getId() < 0)
+            throw new IllegalArgumentException("Negative torrent id " + preview.getId());
+        if (preview.getId() > MAX_TORRENT_ID)
+            throw new IllegalArgumentException("Torrent id " + preview.getId() + " exceeds the maximum of " + MAX_TORRENT_ID);
+        if (preview.getCategory() != null && preview.getCategory().isSukebei() != isSukebei)
+            throw new IllegalArgumentException("Torrent " + preview.getId() + " belongs to a different site");
+
+        long position = recordPosition(recordCount);
+        try {
+            records.ensureCapacity(position + RECORD_SIZE);
+
+            records.putLong(position + TITLE, appendString(preview.getTitle()));
+            records.putLong(position + DOWNLOAD_LINK, appendString(preview.getDownloadLink() == null ? null : preview.getDownloadLink().toString()));
+            records.putLong(position + MAGNET_LINK, appendString(preview.getMagnetLink() == null ? null : preview.getMagnetLink().toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot grow crawl store", e);
+        }
+
+        records.putInt(position + ID, preview.getId());
+        records.putByte(position + STATE, (byte) (preview.getTorrentState() == null ? -1 : preview.getTorrentState().ordinal()));
+        records.putByte(position + MAIN_CATEGORY, (byte) (preview.getCategory() == null ? -1 : preview.getCategory().getMainCategoryId()));
+        records.putByte(position + SUB_CATEGORY, (byte) (preview.getCategory() == null ? -1 : preview.getCategory().getSubCategoryId()));
+        records.putByte(position + SIZE_UNIT, (byte) (preview.getSize() == null ? -1 : preview.getSize().getUnit().ordinal()));
+        records.putInt(position + SIZE_VALUE, preview.getSize() == null ? 0 : preview.getSize().getValue());
+        records.putInt(position + COMMENTS, preview.getCommentCount());
+        records.putInt(position + SEEDERS, preview.getSeeders());
+        records.putInt(position + LEECHERS, preview.getLeechers());
+        records.putInt(position + COMPLETED, preview.getCompleted());
+        records.putLong(position + DATE, preview.getDate() == null ? Long.MIN_VALUE : preview.getDate().getTime());
+
+        // the header is updated last, so a crash never exposes a partially written record
+        records.putLong(HEADER_STRING_POOL_SIZE, stringPoolSize);
+        records.putLong(HEADER_RECORD_COUNT, recordCount + 1);
+
+        if (putIndex(preview.getId(), recordCount))
+            torrentCount++;
+        recordCount++;
+    }
+
+    /**
+     * Store all previews, replacing previously stored previews with the same ids.
+     */
+    public synchronized void appendAll(TorrentPreview[] previews) {
+        for (TorrentPreview preview : previews)
+            append(preview);
+    }
+
+    private long appendString(String string) throws IOException {
+        if (string == null)
+            return NULL_STRING;
+
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length + 4 > MappedFile.SEGMENT_SIZE)
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long for the crawl store");
+
+        long position = MappedFile.alignToSegment(stringPoolSize, bytes.length + 4);
+        strings.ensureCapacity(position + bytes.length + 4);
+        strings.putInt(position, bytes.length);
+        strings.putBytes(position + 4, bytes);
+
+        stringPoolSize = position + bytes.length + 4;
+        return position;
+    }
+
+    String readString(long reference) {
+        if (reference == NULL_STRING)
+            return null;
+
+        byte[] bytes = new byte[strings.getInt(reference)];
+        strings.getBytes(reference + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public boolean contains(int torrentId) {
+        AtomicIntegerArray current = index;
+        return torrentId >= 0 && torrentId < current.length() && current.get(torrentId) != 0;
+    }
+
+    /**
+     * Get the latest stored preview of a torrent.
+     */
+    public Optional<TorrentPreview> get(int torrentId) {
+        AtomicIntegerArray current = index;
+        int record = torrentId < 0 || torrentId >= current.length() ? 0 : current.get(torrentId);
+        if (record == 0)
+            return Optional.empty();
+
+        StoredPreview preview = new StoredPreview(this);
+        preview.moveTo(recordPosition(record - 1));
+        return Optional.of(preview.toTorrentPreview());
+    }
+
+    /**
+     * Number of distinct torrents in the store.
+     */
+    public synchronized int size() {
+        return torrentCount;
+    }
+
+    /**
+     * Visit the latest record of every stored torrent in the order in which they were stored.
+     *
+     * The records are read sequentially from the mapped file and a single {@link StoredPreview}
+     * is reused for all of them, so scanning does not allocate unless strings are read.
+     */
+    public void forEach(Consumer<StoredPreview> action) {
+        StoredPreview preview = new StoredPreview(this);
+        AtomicIntegerArray current = index;
+        long count = Math.min(recordCount, Integer.MAX_VALUE);
+
+        for (long i = 0; i < count; i++) {
+            long position = recordPosition(i);
+            int torrentId = records.getInt(position + ID);
+
+            // skip records that have been replaced by a later one
+            if (torrentId < current.length() && current.get(torrentId) == i + 1) {
+                preview.moveTo(position);
+                action.accept(preview);
+            }
+        }
+    }
+
+    /**
+     * Force all changes to the disk.
+     */
+    public synchronized void flush() {
+        strings.force();
+        records.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            // the string pool goes first, since the record header refers to it
+            strings.close();
+            records.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close crawl store", e);
+        }
+    }
+}
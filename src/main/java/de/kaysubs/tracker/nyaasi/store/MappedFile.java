@@ -0,0 +1,111 @@
+package de.kaysubs.tracker.nyaasi.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A file that is memory mapped in segments of fixed size and grows by mapping more segments.
+ *
+ * Positions are longs, so the file is not limited to the 2 GiB of a single mapped buffer.
+ * Values never straddle two segments as long as they are aligned to their size.
+ */
+class MappedFile implements Closeable {
+    final static int SEGMENT_BITS = 26;
+    final static int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private final static int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final FileChannel channel;
+
+    // replaced instead of modified, so readers never see a partially grown array
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    MappedFile(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ensureCapacity(Math.max(1, channel.size()));
+    }
+
+    /**
+     * Map segments until the file is at least size bytes long.
+     */
+    synchronized void ensureCapacity(long size) throws IOException {
+        MappedByteBuffer[] mapped = segments;
+        int required = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+        if (required <= mapped.length)
+            return;
+
+        MappedByteBuffer[] grown = Arrays.copyOf(mapped, required);
+        for (int i = mapped.length; i < required; i++)
+            grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << SEGMENT_BITS, SEGMENT_SIZE);
+
+        segments = grown;
+    }
+
+    private MappedByteBuffer segment(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)];
+    }
+
+    private static int offset(long position) {
+        return (int) (position & SEGMENT_MASK);
+    }
+
+    /**
+     * Position of the next segment if length bytes at position would straddle two segments.
+     */
+    static long alignToSegment(long position, int length) {
+        if (offset(position) + length > SEGMENT_SIZE)
+            return ((position >>> SEGMENT_BITS) + 1) << SEGMENT_BITS;
+
+        return position;
+    }
+
+    byte getByte(long position) {
+        return segment(position).get(offset(position));
+    }
+
+    int getInt(long position) {
+        return segment(position).getInt(offset(position));
+    }
+
+    long getLong(long position) {
+        return segment(position).getLong(offset(position));
+    }
+
+    void getBytes(long position, byte[] destination) {
+        segment(position).get(offset(position), destination);
+    }
+
+    void putByte(long position, byte value) {
+        segment(position).put(offset(position), value);
+    }
+
+    void putInt(long position, int value) {
+        segment(position).putInt(offset(position), value);
+    }
+
+    void putLong(long position, long value) {
+        segment(position).putLong(offset(position), value);
+    }
+
+    void putBytes(long position, byte[] source) {
+        segment(position).put(offset(position), source);
+    }
+
+    /**
+     * Write all changes to the disk.
+     */
+    void force() {
+        for (MappedByteBuffer segment : segments)
+            segment.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
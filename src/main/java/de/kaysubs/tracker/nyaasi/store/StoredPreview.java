@@ -0,0 +1,122 @@
+package de.kaysubs.tracker.nyaasi.store;
+
+import de.kaysubs.tracker.nyaasi.model.DataSize;
+import de.kaysubs.tracker.nyaasi.model.SubCategory;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.Date;
+
+/**
+ * View of a single record in a {@link CrawlStore}.
+ *
+ * The primitive getters read directly from the mapped file without allocating.
+ * During a scan the same instance is moved from record to record,
+ * so it must not be kept after the callback returned; use {@link #toTorrentPreview()} instead.
+ */
+public class StoredPreview {
+    private final CrawlStore store;
+    private long position;
+
+    StoredPreview(CrawlStore store) {
+        this.store = store;
+    }
+
+    void moveTo(long position) {
+        this.position = position;
+    }
+
+    public int getId() {
+        return store.records.getInt(position + CrawlStore.ID);
+    }
+
+    /**
+     * @return state or null if it was not known
+     */
+    public TorrentState getTorrentState() {
+        byte state = store.records.getByte(position + CrawlStore.STATE);
+        return state < 0 ? null : CrawlStore.TORRENT_STATES[state];
+    }
+
+    /**
+     * @return category or null if it was not known
+     */
+    public SubCategory getCategory() {
+        byte mainId = store.records.getByte(position + CrawlStore.MAIN_CATEGORY);
+        byte subId = store.records.getByte(position + CrawlStore.SUB_CATEGORY);
+        return mainId < 0 ? null : store.getCategory(mainId, subId);
+    }
+
+    public int getCommentCount() {
+        return store.records.getInt(position + CrawlStore.COMMENTS);
+    }
+
+    public int getSeeders() {
+        return store.records.getInt(position + CrawlStore.SEEDERS);
+    }
+
+    public int getLeechers() {
+        return store.records.getInt(position + CrawlStore.LEECHERS);
+    }
+
+    public int getCompleted() {
+        return store.records.getInt(position + CrawlStore.COMPLETED);
+    }
+
+    /**
+     * @return value of the size in its unit or 0 if the size was not known
+     */
+    public int getSizeValue() {
+        return store.records.getInt(position + CrawlStore.SIZE_VALUE);
+    }
+
+    /**
+     * @return unit of the size or null if the size was not known
+     */
+    public DataSize.DataUnit getSizeUnit() {
+        byte unit = store.records.getByte(position + CrawlStore.SIZE_UNIT);
+        return unit < 0 ? null : CrawlStore.DATA_UNITS[unit];
+    }
+
+    /**
+     * @return upload date in milliseconds since the epoch or {@link Long#MIN_VALUE} if it was not known
+     */
+    public long getDateMillis() {
+        return store.records.getLong(position + CrawlStore.DATE);
+    }
+
+    public String getTitle() {
+        return store.readString(store.records.getLong(position + CrawlStore.TITLE));
+    }
+
+    public URL getDownloadLink() {
+        String link = store.readString(store.records.getLong(position + CrawlStore.DOWNLOAD_LINK));
+        try {
+            return link == null ? null : new URL(link);
+        } catch (MalformedURLException e) {
+            throw new UncheckedIOException("Corrupt download link in crawl store", e);
+        }
+    }
+
+    public URI getMagnetLink() {
+        String link = store.readString(store.records.getLong(position + CrawlStore.MAGNET_LINK));
+        return link == null ? null : URI.create(link);
+    }
+
+    /**
+     * Copy the record into a regular torrent preview.
+     */
+    public TorrentPreview toTorrentPreview() {
+        DataSize.DataUnit unit = getSizeUnit();
+        DataSize size = unit == null ? null : new DataSize(getSizeValue(), unit);
+        long date = getDateMillis();
+
+        return new TorrentPreview(getId(), getTorrentState(), getCategory(), getTitle(), getCommentCount(),
+                getDownloadLink(), getMagnetLink(), size, date == Long.MIN_VALUE ? null : new Date(date),
+                getSeeders(), getLeechers(), getCompleted());
+    }
+}
@@ -0,0 +1,342 @@
+package de.kaysubs.tracker.nyaasi.util;
+
+import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.exception.MissedTorrentsException;
+import de.kaysubs.tracker.nyaasi.model.SearchRequest;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Periodically search for new uploads and pass them to subscribers.
+ *
+ * For every query, the highest torrent id that has been passed to the subscriber is saved to a file,
+ * so after a restart only torrents uploaded since then are reported.
+ * The id is only saved once the subscriber accepted the torrents, so a torrent may be reported again
+ * after a crash or a failed save, but it is never lost.
+ * Searches are sorted by date, so pages are only loaded until a known torrent shows up.
+ *
+ * Queries that change often are polled more frequently than queries that rarely change.
+ */
+public class NewTorrentPoller implements AutoCloseable {
+    private final NyaaSiApi api;
+    private final Path watermarkFile;
+    private final Map<String, Integer> watermarks = new ConcurrentHashMap<>();
+    private final Map<String, Query> queries = new ConcurrentHashMap<>();
+
+    private Duration minInterval = Duration.ofSeconds(30);
+    private Duration maxInterval = Duration.ofMinutes(15);
+    private int maxPages = 10;
+    private boolean useRss = false;
+    private BiConsumer<String, RuntimeException> errorHandler = (name, e) -> {};
+
+    private ScheduledExecutorService scheduler;
+
+    private class Query {
+        private final String name;
+        private final SearchRequest request;
+        private final Consumer<TorrentPreview> subscriber;
+        private Duration interval = minInterval;
+
+        private Query(String name, SearchRequest request, Consumer<TorrentPreview> subscriber) {
+            this.name = name;
+            this.request = request;
+            this.subscriber = subscriber;
+        }
+    }
+
+    /**
+     * @param watermarkFile file that stores the highest seen torrent id of every query
+     */
+    public NewTorrentPoller(NyaaSiApi api, Path watermarkFile) {
+        this.api = api;
+        this.watermarkFile = watermarkFile;
+        loadWatermarks();
+    }
+
+    /**
+     * Shortest time between two polls of the same query.
+     */
+    public NewTorrentPoller setMinInterval(Duration minInterval) {
+        this.minInterval = minInterval;
+        return this;
+    }
+
+    /**
+     * Longest time between two polls of the same query.
+     */
+    public NewTorrentPoller setMaxInterval(Duration maxInterval) {
+        this.maxInterval = maxInterval;
+        return this;
+    }
+
+    /**
+     * Maximum number of pages loaded by a single poll,
+     * in case very many torrents have been uploaded since the last one.
+     *
+     * If the last page is reached before a known torrent, the older torrents in between are not loaded.
+     * This is reported to the error handler as a {@link MissedTorrentsException}.
+     */
+    public NewTorrentPoller setMaxPages(int maxPages) {
+        this.maxPages = maxPages;
+        return this;
+    }
+
+    /**
+     * Poll the much smaller rss feeds instead of the html pages.
+     * Only the first page of a feed is read, so polls should be frequent enough
+     * that less than one page of new torrents is uploaded in between.
+     * Otherwise a {@link MissedTorrentsException} is reported to the error handler.
+     */
+    public NewTorrentPoller setUseRss(boolean useRss) {
+        this.useRss = useRss;
+        return this;
+    }
+
+    /**
+     * Called with the name of the query if a poll, a subscriber or saving the watermarks fails.
+     * Failed polls are retried after the next interval.
+     * If a subscriber fails, the torrent and all newer ones are passed to it again by the next poll.
+     */
+    public NewTorrentPoller setErrorHandler(BiConsumer<String, RuntimeException> errorHandler) {
+        this.errorHandler = errorHandler;
+        return this;
+    }
+
+    /**
+     * Register a query whose new torrents are passed to the subscriber, oldest first.
+     *
+     * The first poll of a query without a saved watermark only records the latest torrent,
+     * so existing torrents are not reported.
+     *
+     * @param name unique name under which the watermark of the query is saved
+     */
+    public NewTorrentPoller subscribe(String name, SearchRequest request, Consumer<TorrentPreview> subscriber) {
+        SearchRequest sorted = request.copy()
+                .setSortedBy(SearchRequest.Sort.DATE)
+                .setOrdering(SearchRequest.Ordering.DESCENDING)
+                .setPage(null);
+
+        Query query = new Query(name, sorted, subscriber);
+        if (queries.putIfAbsent(name, query) != null)
+            throw new IllegalArgumentException("A query named \"" + name + "\" is already registered");
+
+        synchronized (this) {
+            if (scheduler != null)
+                scheduler.execute(() -> pollAndReschedule(query));
+        }
+
+        return this;
+    }
+
+    /**
+     * Start polling all queries in the background.
+     */
+    public synchronized void start() {
+        if (scheduler != null)
+            throw new IllegalStateException("Poller has already been started");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nyaasi-new-torrent-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        queries.values().forEach(query -> scheduler.execute(() -> pollAndReschedule(query)));
+    }
+
+    /**
+     * Poll every query once on the calling thread.
+     */
+    public void pollAll() {
+        queries.values().forEach(this::poll);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null)
+            scheduler.shutdownNow();
+    }
+
+    private void pollAndReschedule(Query query) {
+        boolean foundNew = poll(query);
+
+        // poll faster while new torrents show up, slow down while nothing changes
+        long intervalMillis = foundNew ?
+                Math.max(minInterval.toMillis(), query.interval.toMillis() / 2) :
+                Math.min(maxInterval.toMillis(), query.interval.toMillis() * 3 / 2);
+        query.interval = Duration.ofMillis(intervalMillis);
+
+        synchronized (this) {
+            if (!scheduler.isShutdown())
+                scheduler.schedule(() -> pollAndReschedule(query), intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return whether new torrents have been found
+     */
+    private boolean poll(Query query) {
+        // pollAll may run at the same time as a scheduled poll
+        synchronized (query) {
+            return pollLocked(query);
+        }
+    }
+
+    private boolean pollLocked(Query query) {
+        Integer watermark = watermarks.get(query.name);
+        List<TorrentPreview> newTorrents;
+        try {
+            newTorrents = findNewTorrents(query, watermark);
+        } catch (RuntimeException e) {
+            errorHandler.accept(query.name, e);
+            return false;
+        }
+
+        if (newTorrents.isEmpty())
+            return false;
+
+        newTorrents.sort(Comparator.comparingInt(TorrentPreview::getId));
+
+        // a new query only records the latest torrent
+        if (watermark == null) {
+            updateWatermark(query, null, newTorrents.get(newTorrents.size() - 1).getId());
+            return false;
+        }
+
+        int delivered = watermark;
+        for (TorrentPreview torrent : newTorrents) {
+            try {
+                query.subscriber.accept(torrent);
+            } catch (RuntimeException e) {
+                // the watermark stays below this torrent, so the next poll passes it again
+                errorHandler.accept(query.name, e);
+                break;
+            }
+            delivered = torrent.getId();
+        }
+
+        if (delivered > watermark)
+            updateWatermark(query, watermark, delivered);
+
+        return true;
+    }
+
+    /**
+     * @param watermark highest id that has been passed to the subscriber or null for a new query
+     * @return torrents above the watermark, or the first page for a new query
+     */
+    private List<TorrentPreview> findNewTorrents(Query query, Integer watermark) {
+        List<TorrentPreview> newTorrents = new ArrayList<>();
+        // uploads during the poll shift torrents onto the next page, where they show up again
+        Set<Integer> collectedIds = new HashSet<>();
+        boolean reachedWatermark = false;
+
+        for (int page = 1; page <= maxPages && !reachedWatermark; page++) {
+            TorrentPreview[] torrents = useRss ?
+                    api.searchRss(query.request) :
+                    api.search(query.request.copy().setPage(page));
+
+            reachedWatermark = torrents.length == 0;
+            for (TorrentPreview torrent : torrents) {
+                if (watermark != null && torrent.getId() <= watermark)
+                    reachedWatermark = true;
+                else if (collectedIds.add(torrent.getId()))
+                    newTorrents.add(torrent);
+            }
+
+            // a new query only needs the latest torrent
+            if (watermark == null)
+                return newTorrents;
+
+            // the rss feed has no pages
+            if (useRss)
+                break;
+        }
+
+        if (!reachedWatermark && !newTorrents.isEmpty()) {
+            int oldestId = newTorrents.stream().mapToInt(TorrentPreview::getId).min().getAsInt();
+            errorHandler.accept(query.name, new MissedTorrentsException(watermark, oldestId));
+        }
+
+        return newTorrents;
+    }
+
+    /**
+     * Save the new watermark of a query, or keep the previous one if it cannot be saved,
+     * so the watermark in memory never gets ahead of the file.
+     */
+    private synchronized void updateWatermark(Query query, Integer previous, int watermark) {
+        watermarks.put(query.name, watermark);
+
+        try {
+            saveWatermarks();
+        } catch (RuntimeException e) {
+            if (previous == null)
+                watermarks.remove(query.name);
+            else
+                watermarks.put(query.name, previous);
+
+            errorHandler.accept(query.name, e);
+        }
+    }
+
+    private void loadWatermarks() {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(watermarkFile)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read watermark file", e);
+        }
+
+        for (String name : properties.stringPropertyNames())
+            watermarks.put(name, Integer.parseInt(properties.getProperty(name)));
+    }
+
+    private synchronized void saveWatermarks() {
+        Properties properties = new Properties();
+        watermarks.forEach((name, id) -> properties.setProperty(name, Integer.toString(id)));
+
+        try {
+            Path directory = watermarkFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, watermarkFile.getFileName().toString(), ".tmp");
+
+            try {
+                try (OutputStream out = Files.newOutputStream(tempFile)) {
+                    properties.store(out, "Highest torrent id passed to the subscriber per query");
+                }
+
+                // a crash while saving never leaves a truncated file behind
+                Files.move(tempFile, watermarkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write watermark file", e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package de.kaysubs.tracker.nyaasi.util;
+
+import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.model.SearchPage;
+import de.kaysubs.tracker.nyaasi.model.SearchRequest;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterate over all search results while the next pages are loaded in the background.
+ *
+ * Unlike {@link SearchIterator}, the request passed in is never modified.
+ * The pages are loaded with {@link NyaaSiApi#searchPage(SearchRequest)}, so the lookahead starts once the first page
+ * tells the last one and no page after it is requested. Iteration ends at the last page or the first empty page.
+ */
+public class PrefetchingSearchIterator implements Iterator<TorrentPreview>, AutoCloseable {
+    public final static int DEFAULT_LOOKAHEAD = 4;
+
+    private final NyaaSiApi api;
+    private final SearchRequest request;
+    private final int lookahead;
+    private final Executor executor;
+
+    private final ArrayDeque<FutureTask<SearchPage>> pending = new ArrayDeque<>();
+    private int nextPage;
+    // as reported by the latest page, 0 until the first page is loaded
+    private int lastPage = 0;
+    private boolean exhausted = false;
+
+    private TorrentPreview[] current = new TorrentPreview[0];
+    private int index = 0;
+
+    public PrefetchingSearchIterator(NyaaSiApi api, SearchRequest request) {
+        this(api, request, DEFAULT_LOOKAHEAD, RequestExecutors.getDefault());
+    }
+
+    /**
+     * @param lookahead number of pages that are requested ahead of the page currently being consumed
+     * @param executor executor that runs the blocking page requests, see {@link RequestExecutors#getDefault()}
+     */
+    public PrefetchingSearchIterator(NyaaSiApi api, SearchRequest request, int lookahead, Executor executor) {
+        if (lookahead < 0)
+            throw new IllegalArgumentException("lookahead must not be negative");
+
+        this.api = api;
+        this.request = request.copy();
+        this.lookahead = lookahead;
+        this.executor = executor;
+        this.nextPage = request.getPage().orElse(1);
+    }
+
+    /**
+     * Stream all search results, loading up to {@link #DEFAULT_LOOKAHEAD} pages ahead.
+     */
+    public static Stream<TorrentPreview> stream(NyaaSiApi api, SearchRequest request) {
+        return stream(new PrefetchingSearchIterator(api, request));
+    }
+
+    /**
+     * Stream all search results, loading up to lookahead pages ahead.
+     */
+    public static Stream<TorrentPreview> stream(NyaaSiApi api, SearchRequest request, int lookahead, Executor executor) {
+        return stream(new PrefetchingSearchIterator(api, request, lookahead, executor));
+    }
+
+    private static Stream<TorrentPreview> stream(PrefetchingSearchIterator iterator) {
+        Spliterator<TorrentPreview> spliterator = Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
+
+    private boolean hasMorePages() {
+        // until the last page is known, only the first page is requested
+        return lastPage == 0 ? pending.isEmpty() : nextPage <= lastPage;
+    }
+
+    private void requestPages() {
+        // the page being consumed plus the lookahead
+        while (!exhausted && pending.size() <= lookahead && hasMorePages()) {
+            SearchRequest pageRequest = request.copy().setPage(nextPage++);
+            FutureTask<SearchPage> task = new FutureTask<>(() -> api.searchPage(pageRequest));
+            pending.add(task);
+            executor.execute(task);
+        }
+    }
+
+    private static SearchPage await(FutureTask<SearchPage> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a search page", e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (index >= current.length) {
+            if (exhausted)
+                return false;
+
+            requestPages();
+            if (pending.isEmpty()) {
+                close();
+                return false;
+            }
+
+            SearchPage page;
+            try {
+                page = await(pending.remove());
+            } catch (RuntimeException | Error e) {
+                close();
+                throw e;
+            }
+
+            lastPage = page.getLastPage();
+            if (page.getTorrents().length == 0) {
+                close();
+                return false;
+            }
+
+            current = page.getTorrents();
+            index = 0;
+        }
+
+        return true;
+    }
+
+    @Override
+    public TorrentPreview next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        return current[index++];
+    }
+
+    /**
+     * Stop loading pages. Queued requests are never sent and running requests are interrupted,
+     * which stops them while they wait for a connection or the rate limit.
+     * A request whose response is already being read finishes in the background and is discarded.
+     */
+    @Override
+    public void close() {
+        exhausted = true;
+        pending.forEach(future -> future.cancel(true));
+        pending.clear();
+    }
+}
@@ -0,0 +1,142 @@
+package de.kaysubs.tracker.nyaasi.util;
+
+import de.kaysubs.tracker.common.exception.HttpException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+
+/**
+ * Executor that the utilities of this package run their blocking requests on, unless they are given their own.
+ *
+ * Every utility limits its own number of concurrent requests, i.e. its concurrency, lookahead or parallelism,
+ * and the shared executor starts a daemon thread for every request that finds no idle one.
+ * So a large batch or scan never takes threads away from other utilities and its concurrency is not capped,
+ * while the connections per host and the rate limit of the api still bound the requests that are actually sent.
+ * Idle threads are stopped after a minute.
+ */
+public class RequestExecutors {
+    private final static ExecutorService DEFAULT_EXECUTOR = createUnbounded("nyaasi-request");
+
+    public static ExecutorService getDefault() {
+        return DEFAULT_EXECUTOR;
+    }
+
+    /**
+     * Create an executor with at most the given number of daemon threads, which queues requests beyond that.
+     * Utilities that share it split its threads.
+     */
+    public static ExecutorService create(int threads, String name) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1");
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(), threadFactory(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ExecutorService createUnbounded(String name) {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 1, TimeUnit.MINUTES, new SynchronousQueue<>(), threadFactory(name));
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Run a task for every index from 0 to count - 1, with at most parallelism tasks at the same time.
+     *
+     * The calling thread runs tasks as well and the executor only contributes up to parallelism - 1 helpers,
+     * which take the next index whenever they finish one. So the tasks complete even if all threads of the executor
+     * are busy, e.g. because this method is called from one of them. Helpers that did not start in time are dropped.
+     * The first exception of a task stops the others and is thrown.
+     *
+     * @return results of the tasks by index
+     */
+    public static <T> List<T> invokeAll(int count, int parallelism, Executor executor, IntFunction<T> task) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+
+        Object[] results = new Object[count];
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Runnable worker = () -> {
+            try {
+                for (int i = nextIndex.getAndIncrement(); i < count && failure.get() == null; i = nextIndex.getAndIncrement())
+                    results[i] = task.apply(i);
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        };
+
+        List<Helper> helpers = new ArrayList<>();
+        for (int i = 1; i < Math.min(parallelism, count); i++) {
+            Helper helper = new Helper(worker);
+            helpers.add(helper);
+            executor.execute(helper);
+        }
+
+        worker.run();
+
+        try {
+            for (Helper helper : helpers) {
+                if (failure.get() != null)
+                    helper.cancel(true);
+                else if (!helper.claimed.compareAndSet(false, true))
+                    // the helper is running, helpers that did not start yet have nothing left to do
+                    helper.get();
+            }
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e.getCause());
+        } catch (InterruptedException e) {
+            helpers.forEach(helper -> helper.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new HttpException("Interrupted while waiting for requests", e);
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) Arrays.asList(results);
+        return list;
+    }
+
+    private static class Helper extends FutureTask<Void> {
+        // taken by the helper when it starts or by the caller once it no longer needs the helper
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Helper(Runnable worker) {
+            super(worker, null);
+        }
+
+        @Override
+        public void run() {
+            if (claimed.compareAndSet(false, true))
+                super.run();
+        }
+    }
+}
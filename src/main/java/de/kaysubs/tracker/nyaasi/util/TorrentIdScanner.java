@@ -0,0 +1,403 @@
+package de.kaysubs.tracker.nyaasi.util;
+
+import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfoResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Load the infos of all torrents in a range of ids with a limited number of concurrent requests.
+ *
+ * Ids that do not exist are skipped without creating an exception.
+ * Other failures do not stop the scan, their exception is part of the result instead.
+ *
+ * If a checkpoint file is set, the progress of the scan is saved to it,
+ * so a scan that has been interrupted continues where it stopped.
+ * An id counts as scanned once its result has been returned, or once it turned out to not exist.
+ * Ids whose request failed, e.g. due to a rate limit or a timeout, are saved to the checkpoint as well
+ * and are requested again before any other id when the scan continues.
+ */
+public class TorrentIdScanner implements Iterator<TorrentInfoResult>, AutoCloseable {
+    public final static int DEFAULT_CONCURRENCY = 4;
+    public final static int DEFAULT_CHECKPOINT_INTERVAL = 100;
+    public final static int DEFAULT_REORDER_WINDOW = 64;
+
+    private final NyaaSiApi api;
+    private final int fromId;
+    private final int toId;
+
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private boolean ordered = false;
+    private int reorderWindow = DEFAULT_REORDER_WINDOW;
+    private Executor executor = RequestExecutors.getDefault();
+    private Path checkpointFile;
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    private CompletionService<Scanned> completionService;
+    private final Set<Future<Scanned>> running = new HashSet<>();
+    // results that have been loaded but not returned, only used in ordered mode
+    private final Map<Integer, Scanned> reorderBuffer = new HashMap<>();
+    // submitted ids in the order in which they are returned, only used in ordered mode
+    private final ArrayDeque<Integer> pendingIds = new ArrayDeque<>();
+    // scanned ids above the first id that has not been scanned
+    private final TreeSet<Integer> scanned = new TreeSet<>();
+    // ids whose last request failed, they are saved to the checkpoint
+    private final TreeSet<Integer> failedIds = new TreeSet<>();
+    // failed ids of an earlier scan that have not been requested again yet
+    private final ArrayDeque<Integer> retryIds = new ArrayDeque<>();
+
+    private int nextId;
+    private int firstUnscannedId;
+    private int checkpointedId;
+    private boolean failedIdsChanged = false;
+    private TorrentInfoResult nextResult;
+    private boolean started = false;
+    private boolean closed = false;
+
+    private static class Scanned {
+        private final int torrentId;
+        // null if the torrent does not exist
+        private final TorrentInfoResult result;
+
+        private Scanned(int torrentId, TorrentInfoResult result) {
+            this.torrentId = torrentId;
+            this.result = result;
+        }
+    }
+
+    /**
+     * @param fromId first id of the range
+     * @param toId last id of the range, inclusive
+     */
+    public TorrentIdScanner(NyaaSiApi api, int fromId, int toId) {
+        if (fromId > toId)
+            throw new IllegalArgumentException("fromId must not be greater than toId");
+
+        this.api = api;
+        this.fromId = fromId;
+        this.toId = toId;
+    }
+
+    /**
+     * Maximum number of requests that run at the same time.
+     */
+    public TorrentIdScanner setConcurrency(int concurrency) {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("concurrency must be at least 1");
+
+        requireNotStarted();
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Return results in the order of their ids instead of the order in which they complete.
+     *
+     * A slow request then holds back all results with higher ids, see {@link #setReorderWindow(int)}.
+     */
+    public TorrentIdScanner setOrdered(boolean ordered) {
+        requireNotStarted();
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Maximum number of ids that are requested ahead of the next result in ordered mode.
+     *
+     * Results that complete before a slow request with a lower id are held back,
+     * so this limits the number of torrent infos in memory. Fewer requests run at the same time
+     * than the concurrency if the window is smaller.
+     */
+    public TorrentIdScanner setReorderWindow(int reorderWindow) {
+        if (reorderWindow < 1)
+            throw new IllegalArgumentException("reorderWindow must be at least 1");
+
+        requireNotStarted();
+        this.reorderWindow = reorderWindow;
+        return this;
+    }
+
+    /**
+     * Executor that runs the blocking requests, by default {@link RequestExecutors#getDefault()}.
+     */
+    public TorrentIdScanner setExecutor(Executor executor) {
+        requireNotStarted();
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * File that stores the first id that has not been scanned yet, followed by the ids whose request failed.
+     * If the file already exists, the scan retries the failed ids and then continues from the first id.
+     */
+    public TorrentIdScanner setCheckpointFile(Path checkpointFile) {
+        requireNotStarted();
+        this.checkpointFile = checkpointFile;
+        return this;
+    }
+
+    /**
+     * Number of scanned ids after which the checkpoint file is updated.
+     */
+    public TorrentIdScanner setCheckpointInterval(int checkpointInterval) {
+        requireNotStarted();
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    /**
+     * Stream the results of the scan. Closing the stream saves the checkpoint.
+     */
+    public Stream<TorrentInfoResult> stream() {
+        Spliterator<TorrentInfoResult> spliterator = Spliterators.spliteratorUnknownSize(this,
+                (ordered ? Spliterator.ORDERED : 0) | Spliterator.NONNULL);
+
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * First id that has not been scanned yet.
+     */
+    public synchronized int getFirstUnscannedId() {
+        start();
+        return firstUnscannedId;
+    }
+
+    /**
+     * Ids whose last request failed, including failures of an earlier scan that have not been retried yet.
+     */
+    public synchronized SortedSet<Integer> getFailedIds() {
+        start();
+        return new TreeSet<>(failedIds);
+    }
+
+    private void requireNotStarted() {
+        if (started)
+            throw new IllegalStateException("Scan has already been started");
+    }
+
+    private void start() {
+        if (started)
+            return;
+
+        started = true;
+        completionService = new ExecutorCompletionService<>(executor);
+        firstUnscannedId = fromId;
+        readCheckpoint();
+        checkpointedId = firstUnscannedId;
+        nextId = firstUnscannedId;
+        retryIds.addAll(failedIds);
+    }
+
+    private void readCheckpoint() {
+        if (checkpointFile == null)
+            return;
+
+        String[] ids;
+        try {
+            ids = Files.readString(checkpointFile, StandardCharsets.UTF_8).trim().split("\\s+");
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read checkpoint file", e);
+        }
+
+        firstUnscannedId = Math.max(fromId, Integer.parseInt(ids[0]));
+        for (int i = 1; i < ids.length; i++) {
+            int failedId = Integer.parseInt(ids[i]);
+            if (failedId >= fromId && failedId < firstUnscannedId)
+                failedIds.add(failedId);
+        }
+    }
+
+    private void writeCheckpoint() {
+        if (checkpointFile == null || (checkpointedId == firstUnscannedId && !failedIdsChanged))
+            return;
+
+        StringBuilder checkpoint = new StringBuilder().append(firstUnscannedId).append('\n');
+        for (int failedId : failedIds)
+            checkpoint.append(failedId).append('\n');
+
+        try {
+            Path directory = checkpointFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, checkpointFile.getFileName().toString(), ".tmp");
+
+            try {
+                Files.writeString(tempFile, checkpoint, StandardCharsets.UTF_8);
+
+                // a crash while saving never leaves a truncated file behind
+                Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint file", e);
+        }
+
+        checkpointedId = firstUnscannedId;
+        failedIdsChanged = false;
+    }
+
+    private void markScanned(int torrentId, boolean failed) {
+        if (failed ? failedIds.add(torrentId) : failedIds.remove(torrentId))
+            failedIdsChanged = true;
+
+        // retried ids lie below the first unscanned id
+        if (torrentId >= firstUnscannedId)
+            scanned.add(torrentId);
+        while (!scanned.isEmpty() && scanned.first() == firstUnscannedId) {
+            scanned.pollFirst();
+            firstUnscannedId++;
+        }
+
+        if (firstUnscannedId - checkpointedId >= checkpointInterval || firstUnscannedId > toId)
+            writeCheckpoint();
+    }
+
+    private void submitRequests() {
+        while (!closed && running.size() < concurrency && (!retryIds.isEmpty() || nextId <= toId)
+                && (!ordered || pendingIds.size() < reorderWindow)) {
+            int torrentId = retryIds.isEmpty() ? nextId++ : retryIds.removeFirst();
+            if (ordered)
+                pendingIds.add(torrentId);
+
+            running.add(completionService.submit(() -> {
+                try {
+                    Optional<TorrentInfo> info = api.findTorrentInfo(torrentId);
+                    return new Scanned(torrentId, info.map(i -> TorrentInfoResult.success(torrentId, i)).orElse(null));
+                } catch (RuntimeException e) {
+                    return new Scanned(torrentId, TorrentInfoResult.failure(torrentId, e));
+                }
+            }));
+        }
+    }
+
+    private Scanned takeCompleted() {
+        Future<Scanned> future;
+        try {
+            future = completionService.take();
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for torrent info", e);
+        }
+        running.remove(future);
+
+        // keep the number of running requests at the limit while the result is consumed
+        submitRequests();
+
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // failures of single requests are already part of the result, so this is an Error
+            close();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the next result or null if all ids have been scanned
+     */
+    private TorrentInfoResult findNextResult() {
+        submitRequests();
+
+        while (!closed) {
+            if (ordered && !pendingIds.isEmpty()) {
+                Scanned buffered = reorderBuffer.remove(pendingIds.peekFirst());
+
+                if (buffered != null) {
+                    // the window moves on, so the next id can be requested
+                    pendingIds.removeFirst();
+                    submitRequests();
+
+                    if (buffered.result != null)
+                        return buffered.result;
+
+                    markScanned(buffered.torrentId, false);
+                    continue;
+                }
+            }
+
+            if (running.isEmpty())
+                return null;
+
+            Scanned completed = takeCompleted();
+            if (ordered) {
+                reorderBuffer.put(completed.torrentId, completed);
+            } else if (completed.result != null) {
+                return completed.result;
+            } else {
+                markScanned(completed.torrentId, false);
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        start();
+        if (nextResult == null && !closed)
+            nextResult = findNextResult();
+
+        return nextResult != null;
+    }
+
+    @Override
+    public synchronized TorrentInfoResult next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        TorrentInfoResult result = nextResult;
+        nextResult = null;
+        markScanned(result.getTorrentId(), !result.isSuccess());
+        return result;
+    }
+
+    /**
+     * Stop the scan and save the checkpoint. Queued requests are never sent and running requests are interrupted.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        running.forEach(future -> future.cancel(true));
+        running.clear();
+        reorderBuffer.clear();
+        pendingIds.clear();
+
+        if (started)
+            writeCheckpoint();
+    }
+}
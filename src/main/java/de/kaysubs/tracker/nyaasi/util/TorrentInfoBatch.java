@@ -0,0 +1,145 @@
+package de.kaysubs.tracker.nyaasi.util;
+
+import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfoResult;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Load the infos of many torrents with a limited number of concurrent requests.
+ *
+ * Results are returned in the order in which they complete, not in the order of the ids.
+ * A torrent that cannot be loaded does not stop the batch, its exception is part of the result instead.
+ */
+public class TorrentInfoBatch implements Iterator<TorrentInfoResult>, AutoCloseable {
+    public final static int DEFAULT_CONCURRENCY = 4;
+
+    private final NyaaSiApi api;
+    private final int[] torrentIds;
+    private final int concurrency;
+    private final CompletionService<TorrentInfoResult> completionService;
+
+    private final Set<Future<TorrentInfoResult>> running = new HashSet<>();
+    private int nextIndex = 0;
+    private boolean closed = false;
+
+    public TorrentInfoBatch(NyaaSiApi api, int[] torrentIds) {
+        this(api, torrentIds, DEFAULT_CONCURRENCY, RequestExecutors.getDefault());
+    }
+
+    /**
+     * @param concurrency maximum number of requests that run at the same time
+     * @param executor executor that runs the blocking requests, see {@link RequestExecutors#getDefault()}
+     */
+    public TorrentInfoBatch(NyaaSiApi api, int[] torrentIds, int concurrency, Executor executor) {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("concurrency must be at least 1");
+
+        this.api = api;
+        this.torrentIds = torrentIds.clone();
+        this.concurrency = concurrency;
+        this.completionService = new ExecutorCompletionService<>(executor);
+    }
+
+    /**
+     * Stream the infos of all torrents in completion order.
+     */
+    public static Stream<TorrentInfoResult> stream(NyaaSiApi api, int[] torrentIds, int concurrency, Executor executor) {
+        return stream(new TorrentInfoBatch(api, torrentIds, concurrency, executor));
+    }
+
+    /**
+     * Stream the infos of all torrents in completion order.
+     */
+    public static Stream<TorrentInfoResult> stream(NyaaSiApi api, int[] torrentIds, int concurrency) {
+        return stream(new TorrentInfoBatch(api, torrentIds, concurrency, RequestExecutors.getDefault()));
+    }
+
+    /**
+     * Stream the infos of all torrents in completion order,
+     * with up to {@link #DEFAULT_CONCURRENCY} concurrent requests.
+     */
+    public static Stream<TorrentInfoResult> stream(NyaaSiApi api, int... torrentIds) {
+        return stream(new TorrentInfoBatch(api, torrentIds));
+    }
+
+    private static Stream<TorrentInfoResult> stream(TorrentInfoBatch batch) {
+        Spliterator<TorrentInfoResult> spliterator = Spliterators.spliterator(batch, batch.torrentIds.length,
+                Spliterator.SIZED | Spliterator.NONNULL);
+
+        return StreamSupport.stream(spliterator, false).onClose(batch::close);
+    }
+
+    private void submitRequests() {
+        while (!closed && running.size() < concurrency && nextIndex < torrentIds.length) {
+            int torrentId = torrentIds[nextIndex++];
+            running.add(completionService.submit(() -> {
+                try {
+                    return TorrentInfoResult.success(torrentId, api.getTorrentInfo(torrentId));
+                } catch (RuntimeException e) {
+                    return TorrentInfoResult.failure(torrentId, e);
+                }
+            }));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !closed && (!running.isEmpty() || nextIndex < torrentIds.length);
+    }
+
+    @Override
+    public TorrentInfoResult next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        submitRequests();
+
+        Future<TorrentInfoResult> future;
+        try {
+            future = completionService.take();
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for torrent info", e);
+        }
+        running.remove(future);
+
+        // keep the number of running requests at the limit while the result is consumed
+        submitRequests();
+
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // failures of single requests are already part of the result, so this is an Error
+            close();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Stop the batch. Queued requests are never sent and running requests are interrupted,
+     * which stops them while they wait for a connection or the rate limit.
+     * A request whose response is already being read finishes in the background and is discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        running.forEach(future -> future.cancel(true));
+        running.clear();
+    }
+}
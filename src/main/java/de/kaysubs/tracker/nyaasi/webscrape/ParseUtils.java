@@ -1,5 +1,6 @@
 package de.kaysubs.tracker.nyaasi.webscrape;
 
+import de.kaysubs.tracker.nyaasi.model.Category;
 import de.kaysubs.tracker.nyaasi.model.MainCategory;
 import de.kaysubs.tracker.nyaasi.model.SubCategory;
 import de.kaysubs.tracker.nyaasi.exception.WebScrapeException;
@@ -47,6 +48,158 @@ public class ParseUtils {
         throw new WebScrapeException("Unknown unit size \"" + unitName + "\"");
     }
 
+    /**
+     * Parse a size like "1.5 GiB" into a number of bytes, without allocating.
+     * Unlike {@link #parseDataSize(String)}, the value cannot overflow
+     * and the fraction is applied to the unit, so "1.5 GiB" is 1610612736 bytes.
+     */
+    public static long parseSizeBytes(CharSequence string, int start, int end) {
+        while (start < end && isSpace(string.charAt(start)))
+            start++;
+        while (end > start && isSpace(string.charAt(end - 1)))
+            end--;
+
+        long integer = 0;
+        long fraction = 0;
+        long fractionScale = 1;
+        boolean inFraction = false;
+        int i = start;
+        for (; i < end; i++) {
+            char c = string.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (!inFraction) {
+                    if (integer > (Long.MAX_VALUE - (c - '0')) / 10)
+                        throw new WebScrapeException("Data size " + string.subSequence(start, end) + " is too large");
+                    integer = integer * 10 + (c - '0');
+                } else if (fractionScale < 1_000_000) {
+                    fraction = fraction * 10 + (c - '0');
+                    fractionScale *= 10;
+                }
+            } else if (c == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                break;
+            }
+        }
+
+        if (i == start)
+            throw new WebScrapeException("Cannot parse data size " + string.subSequence(start, end));
+
+        while (i < end && isSpace(string.charAt(i)))
+            i++;
+
+        DataSize.DataUnit unit = null;
+        for (DataSize.DataUnit candidate : DataSize.DataUnit.values())
+            if (regionMatches(string, i, end, candidate.getUnitName()))
+                unit = candidate;
+
+        if (unit == null)
+            throw new WebScrapeException("Unknown unit size \"" + string.subSequence(i, end) + "\"");
+
+        int shift = 10 * unit.ordinal();
+        if (integer > (Long.MAX_VALUE >> shift))
+            throw new WebScrapeException("Data size " + string.subSequence(start, end) + " is too large");
+
+        // at most 6 fraction digits are used, so the fraction times 2^40 still fits into a long
+        long fractionBytes = ((fraction << shift) + fractionScale / 2) / fractionScale;
+        if (fractionBytes > Long.MAX_VALUE - (integer << shift))
+            throw new WebScrapeException("Data size " + string.subSequence(start, end) + " is too large");
+
+        return (integer << shift) + fractionBytes;
+    }
+
+    private final static SubCategory[][] NYAA_CATEGORIES = buildCategoryTable(Category.Nyaa.mainCategories);
+    private final static SubCategory[][] SUKEBEI_CATEGORIES = buildCategoryTable(Category.Sukebei.mainCategories);
+
+    private static SubCategory[][] buildCategoryTable(MainCategory[] mainCategories) {
+        SubCategory[][] table = new SubCategory[10][10];
+        for (MainCategory mainCategory : mainCategories)
+            for (SubCategory subCategory : mainCategory.getSubCategories())
+                table[mainCategory.getMainCategoryId()][subCategory.getSubCategoryId()] = subCategory;
+
+        return table;
+    }
+
+    /**
+     * Same as {@link #parseSubCategory(String, boolean, boolean)} for a category url,
+     * but without a regex and with a lookup table instead of searching the categories.
+     */
+    public static SubCategory parseCategoryUrl(String url, boolean isSukebei) {
+        // the url looks like "/?c=1_2"
+        int start = url.indexOf("c=");
+        if (start < 0 || start + 5 > url.length() || url.charAt(start + 3) != '_')
+            throw new WebScrapeException("Cannot parse category url");
+
+        int mainId = url.charAt(start + 2) - '0';
+        int subId = url.charAt(start + 4) - '0';
+        SubCategory[][] table = isSukebei ? SUKEBEI_CATEGORIES : NYAA_CATEGORIES;
+        if (mainId < 0 || mainId > 9 || subId < 0 || subId > 9 || table[mainId][subId] == null)
+            throw new WebScrapeException("Unknown category " + url.substring(start + 2));
+
+        return table[mainId][subId];
+    }
+
+    /**
+     * Parse the torrent id of a "/view/123" url without a regex.
+     */
+    public static int parseViewUrl(String url) {
+        if (!url.startsWith("/view/") || url.length() == 6)
+            throw new WebScrapeException("Cannot parse view url");
+
+        return parseInt(url, 6, url.length());
+    }
+
+    /**
+     * Parse a non-negative long that may be surrounded by whitespace, without allocating.
+     * Only the ascii digits are accepted, no sign.
+     */
+    public static long parseLong(CharSequence string, int start, int end) {
+        return parseDigits(string, start, end, Long.MAX_VALUE);
+    }
+
+    /**
+     * Parse a non-negative int that may be surrounded by whitespace, without allocating.
+     * Only the ascii digits are accepted, no sign.
+     */
+    public static int parseInt(CharSequence string, int start, int end) {
+        return (int) parseDigits(string, start, end, Integer.MAX_VALUE);
+    }
+
+    private static long parseDigits(CharSequence string, int start, int end, long max) {
+        while (start < end && isSpace(string.charAt(start)))
+            start++;
+        while (end > start && isSpace(string.charAt(end - 1)))
+            end--;
+
+        if (start == end)
+            throw new WebScrapeException("Cannot parse number " + string.subSequence(start, end));
+
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = string.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value > (max - digit) / 10)
+                throw new WebScrapeException("Cannot parse number " + string.subSequence(start, end));
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 160;
+    }
+
+    private static boolean regionMatches(CharSequence string, int start, int end, String part) {
+        if (end - start != part.length())
+            return false;
+
+        for (int i = 0; i < part.length(); i++)
+            if (Character.toLowerCase(string.charAt(start + i)) != Character.toLowerCase(part.charAt(i)))
+                return false;
+
+        return true;
+    }
+
     public static Date parseTimeStamp(String timestamp) {
         return new Date(Long.parseLong(timestamp) * 1000L);
     }
@@ -0,0 +1,61 @@
+package de.kaysubs.tracker.nyaasi.webscrape;
+
+import de.kaysubs.tracker.nyaasi.model.SearchPage;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.OptionalInt;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parse a torrent list together with the "Displaying results X-Y out of N" header and the pagination block.
+ */
+public class SearchPageParser implements Parser<SearchPage> {
+    private final static Pattern PAGE_INFO_PATTERN = Pattern.compile("results\\s+([0-9]+)\\s*-\\s*([0-9]+)\\s+out of\\s+([0-9]+)");
+    private final static Pattern PAGE_NUMBER_PATTERN = Pattern.compile("^([0-9]+)");
+
+    private final int requestedPage;
+
+    /**
+     * @param requestedPage page that was requested, used if the page does not show which page is active
+     */
+    public SearchPageParser(int requestedPage) {
+        this.requestedPage = requestedPage;
+    }
+
+    @Override
+    public SearchPage parsePage(Document page, boolean isSukebei) {
+        TorrentPreview[] torrents = new TorrentListPage().parsePage(page, isSukebei);
+
+        OptionalInt totalResults = OptionalInt.empty();
+        Element pageInfo = page.selectFirst(".pagination-page-info");
+        if (pageInfo != null) {
+            Matcher matcher = PAGE_INFO_PATTERN.matcher(pageInfo.text());
+            if (matcher.find())
+                totalResults = OptionalInt.of(Integer.parseInt(matcher.group(3)));
+        }
+
+        int currentPage = parsePageNumber(page.selectFirst("ul.pagination li.active"))
+                .orElse(requestedPage);
+
+        // the first and last pages are always linked, even if the pages in between are left out
+        int lastPage = currentPage;
+        for (Element link : page.select("ul.pagination li a")) {
+            OptionalInt number = parsePageNumber(link);
+            if (number.isPresent())
+                lastPage = Math.max(lastPage, number.getAsInt());
+        }
+
+        return new SearchPage(torrents, currentPage, lastPage, totalResults);
+    }
+
+    private static OptionalInt parsePageNumber(Element element) {
+        if (element == null)
+            return OptionalInt.empty();
+
+        Matcher matcher = PAGE_NUMBER_PATTERN.matcher(element.text());
+        return matcher.find() ? OptionalInt.of(Integer.parseInt(matcher.group(1))) : OptionalInt.empty();
+    }
+}
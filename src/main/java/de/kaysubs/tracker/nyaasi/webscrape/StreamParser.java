@@ -0,0 +1,13 @@
+package de.kaysubs.tracker.nyaasi.webscrape;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Parser that consumes a page while it is read, without building a Jsoup {@link org.jsoup.nodes.Document}.
+ */
+public interface StreamParser<T> {
+
+    T parsePage(Reader page, boolean isSukebei) throws IOException;
+
+}
@@ -1,17 +1,25 @@
 package de.kaysubs.tracker.nyaasi.webscrape;
 
 import de.kaysubs.tracker.nyaasi.model.SubCategory;
+import de.kaysubs.tracker.nyaasi.exception.NyaaSiException;
 import de.kaysubs.tracker.nyaasi.exception.WebScrapeException;
 import de.kaysubs.tracker.nyaasi.model.*;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
 
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,23 +35,75 @@ public class TorrentInfoParser implements Parser<TorrentInfo> {
         }
     }
 
+    private final boolean lazy;
+
+    public TorrentInfoParser() {
+        this(false);
+    }
+
+    /**
+     * @param lazy only parse the main panel and description now, and the file tree and comments
+     *             when their getters are first called. Their elements are moved out of the parsed page.
+     */
+    public TorrentInfoParser(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Pretty printing of the page is disabled, so the stored html fragments stay small.
+     */
     @Override
     public TorrentInfo parsePage(Document page, boolean isSukebei) {
         TorrentInfo info = new TorrentInfo();
+        page.outputSettings().prettyPrint(false);
 
         parseMainPanel(page, info, isSukebei);
-        parseFileList(page, info);
-        parseDescription(page, info);
-        parseComments(page, info);
+        info.setDescriptionDiv(parseDescription(page));
+
+        if (lazy) {
+            // the sections only keep their own subtree, so the rest of the page can be garbage collected
+            Document fileList = moveToOwnDocument(page.selectFirst("div.torrent-file-list"));
+            Document comments = moveToOwnDocument(page.selectFirst("div#comments"));
+            info.setFileTreeLoader(() -> parseSection(() -> parseFileList(fileList)));
+            info.setCommentsLoader(() -> parseSection(() -> parseComments(comments)));
+        } else {
+            info.setFileTree(parseFileList(page));
+            info.setComments(parseComments(page));
+        }
 
         return info;
     }
 
+    /**
+     * Move an element out of the page, which is cheaper than copying it.
+     * Every section gets a document of its own, so sections can be parsed from different threads.
+     */
+    private static Document moveToOwnDocument(Element element) {
+        if (element == null)
+            return null;
+
+        Document document = Document.createShell("");
+        document.outputSettings().prettyPrint(false);
+        document.body().appendChild(element);
+        return document;
+    }
+
+    private static <T> T parseSection(Supplier<T> parser) {
+        try {
+            return parser.get();
+        } catch (NyaaSiException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new WebScrapeException(e);
+        }
+    }
+
     private void parseMainPanel(Document page, TorrentInfo info, boolean isSukebei) {
-        // select first/only panel with footer
-        Element panel = page.select("div.panel").stream()
-                .filter(e -> e.selectFirst("div.panel-footer.clearfix") != null)
-                .findFirst().get();
+        // the first/only panel with footer, found from the footer instead of searching every panel
+        Element footer = page.selectFirst("div.panel-footer.clearfix");
+        Element panel = footer == null ? null : footer.closest("div.panel");
+        if (panel == null)
+            throw new WebScrapeException("Cannot find torrent panel");
 
         TorrentState torrentState;
         if(panel.is(".panel-danger"))
@@ -57,25 +117,24 @@ public class TorrentInfoParser implements Parser<TorrentInfo> {
                 .selectFirst(".panel-title")
                 .text();
 
-        Element body = panel.selectFirst("div.panel-body");
+        Element[][] cells = indexCells(panel.selectFirst("div.panel-body"));
         SubCategory category = ParseUtils.parseSubCategory(
-                getCell(body, 0, 0)
+                getCell(cells, 0, 0)
                 .select("a").get(1)
                 .attr("href"),
                 true, isSukebei);
 
-        Optional<String> uploader = Optional.ofNullable(getCell(body, 1, 0).selectFirst("a")).map(Element::text);
-        String information = getCell(body, 2, 0).text();
-        DataSize size = ParseUtils.parseDataSize(getCell(body, 3, 0).text());
+        Optional<String> uploader = Optional.ofNullable(getCell(cells, 1, 0).selectFirst("a")).map(Element::text);
+        String information = getCell(cells, 2, 0).text();
+        DataSize size = ParseUtils.parseDataSize(getCell(cells, 3, 0).text());
 
-        Date date = ParseUtils.parseTimeStamp(getCell(body, 0, 1).attr("data-timestamp"));
-        int seeders = Integer.parseInt(getCell(body, 1, 1).selectFirst("span").text());
-        int leechers = Integer.parseInt(getCell(body, 2, 1).selectFirst("span").text());
+        Date date = ParseUtils.parseTimeStamp(getCell(cells, 0, 1).attr("data-timestamp"));
+        int seeders = Integer.parseInt(getCell(cells, 1, 1).selectFirst("span").text());
+        int leechers = Integer.parseInt(getCell(cells, 2, 1).selectFirst("span").text());
         int completed = Integer.parseInt(
-                getCell(body, 3, 1).text());
-        String hash = getCell(body, 4, 0).selectFirst("kbd").text();
+                getCell(cells, 3, 1).text());
+        String hash = getCell(cells, 4, 0).selectFirst("kbd").text();
 
-        Element footer = panel.selectFirst("div.panel-footer.clearfix");
         String downloadLink = footer.select("a[href^=/download/]").attr("href");
         String magnetLink = footer.select("a.card-footer-item").attr("href");
 
@@ -102,17 +161,39 @@ public class TorrentInfoParser implements Parser<TorrentInfo> {
         }
     }
 
-    private Element getCell(Element panelBody, int row, int col) {
-        return panelBody
-                .select("div.row").get(row)
-                .select("div.col-md-5").get(col);
+    /**
+     * Collect the "div.col-md-5" cells of every "div.row" in one pass over the panel body.
+     */
+    private static Element[][] indexCells(Element panelBody) {
+        Elements rows = panelBody.select("div.row");
+        Element[][] cells = new Element[rows.size()][];
+
+        for (int row = 0; row < cells.length; row++) {
+            Elements children = rows.get(row).children();
+            int count = 0;
+            Element[] rowCells = new Element[children.size()];
+            for (Element child : children)
+                if (child.nameIs("div") && child.hasClass("col-md-5"))
+                    rowCells[count++] = child;
+
+            cells[row] = Arrays.copyOf(rowCells, count);
+        }
+
+        return cells;
     }
 
-    private void parseComments(Document page, TorrentInfo info) {
-        info.setComments(page.selectFirst("div#comments")
+    private static Element getCell(Element[][] cells, int row, int col) {
+        if (row >= cells.length || col >= cells[row].length)
+            throw new WebScrapeException("Missing cell " + row + "/" + col + " in torrent panel");
+
+        return cells[row][col];
+    }
+
+    private TorrentInfo.Comment[] parseComments(Element page) {
+        return page.selectFirst("div#comments")
                 .select("div.comment-panel").stream()
                 .map(this::parseComment)
-                .toArray(TorrentInfo.Comment[]::new));
+                .toArray(TorrentInfo.Comment[]::new);
     }
 
     private TorrentInfo.Comment parseComment(Element commentPanel) {
@@ -130,37 +211,58 @@ public class TorrentInfoParser implements Parser<TorrentInfo> {
         return new TorrentInfo.Comment(torrentId, username, isTrusted, avatar, date, commentDiv);
     }
 
-    private void parseFileList(Document page, TorrentInfo info) {
-        Element node = page.selectFirst("div.torrent-file-list > ul > li");
-        info.setFile(parseFileNode(node));
-    }
+    private FileTree parseFileList(Element page) {
+        Element root = page.selectFirst("div.torrent-file-list > ul > li");
+        if (root == null)
+            throw new WebScrapeException("Cannot find file list");
 
-    private TorrentInfo.FileNode parseFileNode(Element li) {
-        Element folderLink = li.selectFirst("a.folder");
+        FileTree.Builder files = new FileTree.Builder();
 
-        if(folderLink == null) {
-            String name = li.textNodes().get(0).text().trim();
+        // an explicit stack of the lists that are being read, so deeply nested folders cannot overflow the call stack
+        Deque<Iterator<Element>> lists = new ArrayDeque<>();
+        lists.push(Collections.singletonList(root).iterator());
 
-            String sizeText = li.selectFirst("span.file-size").text();
-            sizeText = sizeText.substring(1, sizeText.length() - 1); // trim brackets
-            DataSize size = ParseUtils.parseDataSize(sizeText);
+        while (!lists.isEmpty()) {
+            Iterator<Element> items = lists.peek();
+            if (!items.hasNext()) {
+                lists.pop();
+                if (!lists.isEmpty())
+                    files.closeFolder();
+                continue;
+            }
 
-            return new TorrentInfo.File(name, size);
-        } else {
-            String name = folderLink.text();
-            TorrentInfo.FileNode[] children = Optional.ofNullable(li.selectFirst("ul"))
-                    .map(e -> e.children().stream()
-                            .map(this::parseFileNode)
-                            .toArray(TorrentInfo.FileNode[]::new))
-                    .orElse(new TorrentInfo.FileNode[0]);
-
-            return new TorrentInfo.Folder(name, children);
+            Element li = items.next();
+            Element folderLink = null;
+            Element children = null;
+            Element fileSize = null;
+            for (Element child : li.children()) {
+                if (child.nameIs("a") && child.hasClass("folder"))
+                    folderLink = child;
+                else if (child.nameIs("ul"))
+                    children = child;
+                else if (child.hasClass("file-size"))
+                    fileSize = child;
+            }
+
+            if (folderLink != null) {
+                files.openFolder(folderLink.text());
+                lists.push(children == null ? Collections.emptyIterator() : children.children().iterator());
+            } else {
+                if (fileSize == null)
+                    throw new WebScrapeException("Cannot find file size");
+
+                String name = li.textNodes().get(0).text().trim();
+                String sizeText = fileSize.text();
+                // skip the brackets around the size
+                files.addFile(name, ParseUtils.parseSizeBytes(sizeText, 1, sizeText.length() - 1));
+            }
         }
+
+        return files.build();
     }
 
-    private void parseDescription(Document page, TorrentInfo info) {
-        Element descriptionDiv = page.selectFirst("div#torrent-description");
-        info.setDescriptionDiv(descriptionDiv);
+    private Element parseDescription(Document page) {
+        return page.selectFirst("div#torrent-description");
     }
 
 }
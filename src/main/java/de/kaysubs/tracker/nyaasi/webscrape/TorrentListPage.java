@@ -3,6 +3,7 @@ package de.kaysubs.tracker.nyaasi.webscrape;
 import de.kaysubs.tracker.nyaasi.exception.WebScrapeException;
 import de.kaysubs.tracker.nyaasi.model.DataSize;
 import de.kaysubs.tracker.nyaasi.model.SubCategory;
+import de.kaysubs.tracker.nyaasi.model.TorrentColumns;
 import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
 import de.kaysubs.tracker.nyaasi.model.TorrentState;
 import org.jsoup.nodes.Document;
@@ -33,6 +34,66 @@ public class TorrentListPage implements Parser<TorrentPreview[]> {
                         .toArray(TorrentPreview[]::new);
     }
 
+    /**
+     * Parse the torrent list into columns, without creating an object per torrent.
+     * Sizes are exact and parsed like {@link ParseUtils#parseSizeBytes(CharSequence, int, int)}.
+     */
+    public TorrentColumns parseColumns(Document page, boolean isSukebei) {
+        Element body = Optional.ofNullable(page.selectFirst("table.torrent-list"))
+                .map(element -> element.selectFirst("tbody"))
+                .orElse(null);
+        if (body == null)
+            return new TorrentColumns(isSukebei, 0);
+
+        TorrentColumns columns = new TorrentColumns(isSukebei, body.childrenSize());
+        for (Element row : body.children())
+            if (row.nameIs("tr"))
+                addRow(columns, row, isSukebei);
+
+        return columns;
+    }
+
+    private void addRow(TorrentColumns columns, Element row, boolean isSukebei) {
+        TorrentState torrentState;
+        if(row.hasClass("danger"))
+            torrentState = TorrentState.REMAKE;
+        else if(row.hasClass("success"))
+            torrentState = TorrentState.TRUSTED;
+        else
+            torrentState = TorrentState.NORMAL;
+
+        Elements cells = row.children();
+        if (cells.size() < 8)
+            throw new WebScrapeException("Torrent row has only " + cells.size() + " cells");
+
+        Element categoryLink = cells.get(0).selectFirst("a");
+        if (categoryLink == null)
+            throw new WebScrapeException("Cannot parse category url");
+        SubCategory category = ParseUtils.parseCategoryUrl(categoryLink.attr("href"), isSukebei);
+
+        Element titleCell = cells.get(1);
+        Element titleLink = titleCell.selectFirst("a:not(.comments)");
+        if (titleLink == null)
+            throw new WebScrapeException("Cannot find title link");
+        Element commentLink = titleCell.selectFirst("a.comments");
+        int commentCount = commentLink == null ? 0 : parseNumber(commentLink);
+
+        String sizeText = cells.get(3).text();
+        String timestamp = cells.get(4).attr("data-timestamp");
+        if (timestamp.isEmpty())
+            throw new WebScrapeException("Cannot find upload timestamp");
+
+        columns.add(ParseUtils.parseViewUrl(titleLink.attr("href")), torrentState, category, titleLink.text(), commentCount,
+                ParseUtils.parseSizeBytes(sizeText, 0, sizeText.length()),
+                ParseUtils.parseLong(timestamp, 0, timestamp.length()),
+                parseNumber(cells.get(5)), parseNumber(cells.get(6)), parseNumber(cells.get(7)));
+    }
+
+    private static int parseNumber(Element element) {
+        String text = element.text();
+        return ParseUtils.parseInt(text, 0, text.length());
+    }
+
     private TorrentPreview parseTorrent(Element row, boolean isSukebei) {
         TorrentState torrentState;
         if(row.is(".danger"))
@@ -82,8 +143,8 @@ public class TorrentListPage implements Parser<TorrentPreview[]> {
         return new TorrentPreview(torrentId, torrentState, category, title, commentCount, downloadLink, magnetLink, size, date, seeders, leechers, completed);
     }
 
-    Pattern VIEW_URL_PATTERN = Pattern.compile("/view/([0-9]+)");
-    private int parseViewUrl(String viewUrl) {
+    private final static Pattern VIEW_URL_PATTERN = Pattern.compile("/view/([0-9]+)");
+    static int parseViewUrl(String viewUrl) {
         Matcher matcher = VIEW_URL_PATTERN.matcher(viewUrl);
         if(matcher.matches()) {
             return Integer.parseInt(matcher.group(1));
@@ -0,0 +1,133 @@
+package de.kaysubs.tracker.nyaasi.webscrape;
+
+import de.kaysubs.tracker.nyaasi.exception.WebScrapeException;
+import de.kaysubs.tracker.nyaasi.model.DataSize;
+import de.kaysubs.tracker.nyaasi.model.MagnetLinks;
+import de.kaysubs.tracker.nyaasi.model.SubCategory;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parse the rss feed of a search ({@code ?page=rss}) with a StAX parser.
+ *
+ * The feed contains the info hash instead of a magnet link,
+ * so the magnet link is built with the trackers that nyaa uses for its own magnet links, see {@link MagnetLinks}.
+ */
+public class TorrentListRssParser implements StreamParser<TorrentPreview[]> {
+    private final static XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    @Override
+    public TorrentPreview[] parsePage(Reader page, boolean isSukebei) throws IOException {
+        List<TorrentPreview> torrents = new ArrayList<>();
+
+        try {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(page);
+            try {
+                Map<String, String> item = null;
+
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT:
+                            if (reader.getLocalName().equals("item")) {
+                                item = new HashMap<>();
+                            } else if (item != null) {
+                                // all children of an item are text only
+                                item.put(reader.getLocalName(), reader.getElementText().trim());
+                            }
+                            break;
+                        case XMLStreamConstants.END_ELEMENT:
+                            if (item != null && reader.getLocalName().equals("item")) {
+                                torrents.add(parseItem(item, isSukebei));
+                                item = null;
+                            }
+                            break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new WebScrapeException("Cannot parse rss feed", e);
+        }
+
+        return torrents.toArray(new TorrentPreview[0]);
+    }
+
+    private TorrentPreview parseItem(Map<String, String> item, boolean isSukebei) {
+        TorrentState torrentState;
+        if ("Yes".equals(item.get("remake")))
+            torrentState = TorrentState.REMAKE;
+        else if ("Yes".equals(item.get("trusted")))
+            torrentState = TorrentState.TRUSTED;
+        else
+            torrentState = TorrentState.NORMAL;
+
+        String title = require(item, "title");
+        SubCategory category = ParseUtils.parseSubCategory(require(item, "categoryId"), false, isSukebei);
+
+        URL downloadLink;
+        URI magnetLink;
+        int torrentId;
+        try {
+            torrentId = TorrentListPage.parseViewUrl(new URI(require(item, "guid")).getPath());
+
+            String link = require(item, "link");
+            downloadLink = link.startsWith("magnet:") ? null : new URL(link);
+            magnetLink = MagnetLinks.build(require(item, "infoHash"), title);
+        } catch (MalformedURLException e) {
+            throw new WebScrapeException("Cannot parse download url");
+        } catch (URISyntaxException e) {
+            throw new WebScrapeException("Cannot parse view url");
+        }
+
+        Date date;
+        try {
+            date = Date.from(ZonedDateTime.parse(require(item, "pubDate"), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new WebScrapeException("Cannot parse publication date", e);
+        }
+
+        DataSize size = ParseUtils.parseDataSize(require(item, "size"));
+        int commentCount = Integer.parseInt(item.getOrDefault("comments", "0"));
+        int seeders = Integer.parseInt(require(item, "seeders"));
+        int leechers = Integer.parseInt(require(item, "leechers"));
+        int completed = Integer.parseInt(require(item, "downloads"));
+
+        return new TorrentPreview(torrentId, torrentState, category, title, commentCount, downloadLink, magnetLink, size, date, seeders, leechers, completed);
+    }
+
+    private static String require(Map<String, String> item, String name) {
+        String value = item.get(name);
+        if (value == null)
+            throw new WebScrapeException("Rss item has no " + name);
+
+        return value;
+    }
+}
@@ -0,0 +1,685 @@
+package de.kaysubs.tracker.nyaasi.webscrape;
+
+import de.kaysubs.tracker.nyaasi.exception.WebScrapeException;
+import de.kaysubs.tracker.nyaasi.model.CompactTorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.DataSize;
+import de.kaysubs.tracker.nyaasi.model.MagnetLinks;
+import de.kaysubs.tracker.nyaasi.model.SubCategory;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+import org.jsoup.nodes.Entities;
+import org.jsoup.parser.Parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Single pass alternative to {@link TorrentListPage}.
+ *
+ * The page is scanned tag by tag and only the cells of the torrent table are kept,
+ * so no DOM is built. A row is emitted as soon as it has been read
+ * and nothing after the torrent table is read at all.
+ */
+public class TorrentListStreamParser implements StreamParser<TorrentPreview[]> {
+
+    @Override
+    public TorrentPreview[] parsePage(Reader page, boolean isSukebei) throws IOException {
+        List<TorrentPreview> torrents = new ArrayList<>();
+        parseRows(page, isSukebei, torrent -> torrents.add(torrent));
+        return torrents.toArray(new TorrentPreview[0]);
+    }
+
+    /**
+     * Pass every row of the torrent table to a callback as soon as it has been read.
+     *
+     * @param onRow returns false to stop parsing, the rest of the page will not be read
+     * @return false if parsing was stopped by the callback
+     */
+    public boolean parseRows(Reader page, boolean isSukebei, Predicate<TorrentPreview> onRow) throws IOException {
+        return new Scanner<>(page, isSukebei, TorrentListStreamParser::parseTorrent, onRow).run();
+    }
+
+    /**
+     * Pass every row of the torrent table to a callback as a {@link CompactTorrentPreview}.
+     * Numbers and sizes are parsed straight from the scanned text, without allocating.
+     *
+     * @param onRow returns false to stop parsing, the rest of the page will not be read
+     * @return false if parsing was stopped by the callback
+     */
+    public boolean parseCompactRows(Reader page, boolean isSukebei, Predicate<CompactTorrentPreview> onRow) throws IOException {
+        return new Scanner<>(page, isSukebei, TorrentListStreamParser::parseCompactTorrent, onRow).run();
+    }
+
+    private static class Anchor {
+        private final String href;
+        private final String classes;
+        private final int textStart;
+        private int textEnd = -1;
+
+        private Anchor(String href, String classes, int textStart) {
+            this.href = href;
+            this.classes = classes;
+            this.textStart = textStart;
+        }
+    }
+
+    private static class Cell {
+        private final String timestamp;
+        private final StringBuilder text = new StringBuilder();
+        private final List<Anchor> anchors = new ArrayList<>(2);
+
+        private Cell(String timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        private String text() {
+            return normalizeText(text);
+        }
+
+        private String text(Anchor anchor) {
+            int end = anchor.textEnd == -1 ? text.length() : anchor.textEnd;
+            return normalizeText(text.subSequence(anchor.textStart, end));
+        }
+    }
+
+    private static class Row {
+        private final String classes;
+        private final List<Cell> cells = new ArrayList<>(8);
+
+        private Row(String classes) {
+            this.classes = classes;
+        }
+    }
+
+    private static class Scanner<T> {
+        private final Reader in;
+        private final boolean isSukebei;
+        private final BiFunction<Row, Boolean, T> rowParser;
+        private final Predicate<T> onRow;
+
+        private final char[] buffer = new char[8192];
+        private int position = 0;
+        private int limit = 0;
+        private int pushedBack = -1;
+
+        private final StringBuilder tagName = new StringBuilder();
+        private final StringBuilder attributeName = new StringBuilder();
+        private final StringBuilder attributeValue = new StringBuilder();
+        private String classAttribute;
+        private String hrefAttribute;
+        private String timestampAttribute;
+
+        private int tableDepth = 0;
+        private boolean inBody = false;
+        private boolean stopped = false;
+        private boolean cancelled = false;
+        private Row row;
+        private Cell cell;
+        private Anchor anchor;
+
+        private Scanner(Reader in, boolean isSukebei, BiFunction<Row, Boolean, T> rowParser, Predicate<T> onRow) {
+            this.in = in;
+            this.isSukebei = isSukebei;
+            this.rowParser = rowParser;
+            this.onRow = onRow;
+        }
+
+        private boolean run() throws IOException {
+            int c;
+            while (!stopped && (c = read()) != -1) {
+                if (c == '<')
+                    readMarkup();
+                else if (cell != null)
+                    cell.text.append((char) c);
+            }
+
+            if (!stopped)
+                finishRow();
+
+            return !cancelled;
+        }
+
+        private int read() throws IOException {
+            if (pushedBack != -1) {
+                int c = pushedBack;
+                pushedBack = -1;
+                return c;
+            }
+
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+
+            return buffer[position++];
+        }
+
+        private void readMarkup() throws IOException {
+            int c = read();
+            if (c == '!') {
+                int c2 = read();
+                if (c2 == '-' && read() == '-')
+                    skipPast("-->");
+                else
+                    skipPast(">");
+            } else if (c == '?') {
+                skipPast(">");
+            } else if (c == '/') {
+                readName(tagName);
+                skipPast(">");
+                if (tagName.length() > 0)
+                    handleEndTag(tagName.toString());
+            } else if (isLetter(c)) {
+                pushedBack = c;
+                readName(tagName);
+                String name = tagName.toString();
+                boolean selfClosing = readAttributes();
+                handleStartTag(name);
+
+                if (!selfClosing && isRawText(name))
+                    skipPast("</" + name);
+            } else {
+                // a lone '<' is text
+                if (cell != null)
+                    cell.text.append('<');
+                if (c != -1)
+                    pushedBack = c;
+            }
+        }
+
+        private void readName(StringBuilder name) throws IOException {
+            name.setLength(0);
+            int c;
+            while ((c = read()) != -1) {
+                if (isWhitespace(c) || c == '>' || c == '/' || c == '=') {
+                    pushedBack = c;
+                    return;
+                }
+                name.append(Character.toLowerCase((char) c));
+            }
+        }
+
+        /**
+         * Read the attributes of a start tag up to and including the closing '>'.
+         *
+         * @return whether the tag was self closing
+         */
+        private boolean readAttributes() throws IOException {
+            classAttribute = null;
+            hrefAttribute = null;
+            timestampAttribute = null;
+
+            boolean selfClosing = false;
+            int c;
+            while ((c = read()) != -1) {
+                if (c == '>')
+                    return selfClosing;
+
+                if (isWhitespace(c))
+                    continue;
+
+                if (c == '/') {
+                    selfClosing = true;
+                    continue;
+                }
+
+                selfClosing = false;
+                pushedBack = c;
+                readName(attributeName);
+                if (attributeName.length() == 0) {
+                    // stray '=' without a name
+                    read();
+                    continue;
+                }
+
+                c = skipWhitespace();
+                if (c == '=') {
+                    readAttributeValue();
+                    storeAttribute(attributeName.toString(), attributeValue.toString());
+                } else {
+                    if (c != -1)
+                        pushedBack = c;
+                    storeAttribute(attributeName.toString(), "");
+                }
+            }
+
+            return selfClosing;
+        }
+
+        private void readAttributeValue() throws IOException {
+            attributeValue.setLength(0);
+
+            int c = skipWhitespace();
+            if (c == '"' || c == '\'') {
+                int quote = c;
+                while ((c = read()) != -1 && c != quote)
+                    attributeValue.append((char) c);
+            } else {
+                while (c != -1 && !isWhitespace(c) && c != '>') {
+                    attributeValue.append((char) c);
+                    c = read();
+                }
+                if (c != -1)
+                    pushedBack = c;
+            }
+        }
+
+        private void storeAttribute(String name, String value) {
+            // the first occurrence of an attribute wins, just as in jsoup
+            switch (name) {
+                case "class":
+                    if (classAttribute == null)
+                        classAttribute = value;
+                    break;
+                case "href":
+                    if (hrefAttribute == null)
+                        hrefAttribute = unescape(value, true);
+                    break;
+                case "data-timestamp":
+                    if (timestampAttribute == null)
+                        timestampAttribute = unescape(value, true);
+                    break;
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            while ((c = read()) != -1 && isWhitespace(c));
+            return c;
+        }
+
+        private void skipPast(String terminator) throws IOException {
+            int length = terminator.length();
+            char[] window = new char[length];
+            int seen = 0;
+            int c;
+            while ((c = read()) != -1) {
+                System.arraycopy(window, 1, window, 0, length - 1);
+                window[length - 1] = Character.toLowerCase((char) c);
+                seen++;
+
+                if (seen >= length && endsWith(window, terminator)) {
+                    if (terminator.charAt(0) == '<')
+                        skipPast(">");
+                    return;
+                }
+            }
+        }
+
+        private boolean endsWith(char[] window, String terminator) {
+            for (int i = 0; i < window.length; i++)
+                if (window[i] != terminator.charAt(i))
+                    return false;
+            return true;
+        }
+
+        private void handleStartTag(String name) {
+            if (name.equals("table")) {
+                if (tableDepth > 0)
+                    tableDepth++;
+                else if (hasClass(classAttribute, "torrent-list"))
+                    tableDepth = 1;
+                return;
+            }
+
+            if (tableDepth == 0)
+                return;
+
+            switch (name) {
+                case "tbody":
+                    inBody = true;
+                    break;
+                case "tr":
+                    if (inBody) {
+                        finishRow();
+                        row = new Row(classAttribute);
+                    }
+                    break;
+                case "td":
+                    if (row != null) {
+                        cell = new Cell(timestampAttribute);
+                        anchor = null;
+                        row.cells.add(cell);
+                    }
+                    break;
+                case "a":
+                    if (cell != null) {
+                        anchor = new Anchor(hrefAttribute, classAttribute, cell.text.length());
+                        cell.anchors.add(anchor);
+                    }
+                    break;
+                case "br":
+                    if (cell != null)
+                        cell.text.append(' ');
+                    break;
+            }
+        }
+
+        private void handleEndTag(String name) {
+            if (tableDepth == 0)
+                return;
+
+            switch (name) {
+                case "table":
+                    tableDepth--;
+                    if (tableDepth == 0)
+                        stop();
+                    break;
+                case "tbody":
+                    if (tableDepth == 1 && inBody)
+                        stop();
+                    break;
+                case "tr":
+                    finishRow();
+                    break;
+                case "td":
+                    cell = null;
+                    anchor = null;
+                    break;
+                case "a":
+                    if (anchor != null) {
+                        anchor.textEnd = cell.text.length();
+                        anchor = null;
+                    }
+                    break;
+            }
+        }
+
+        private void stop() {
+            finishRow();
+            stopped = true;
+        }
+
+        private void finishRow() {
+            if (row == null || stopped)
+                return;
+
+            T torrent;
+            try {
+                torrent = rowParser.apply(row, isSukebei);
+            } catch (WebScrapeException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw new WebScrapeException(e);
+            }
+
+            row = null;
+            cell = null;
+            anchor = null;
+
+            if (!onRow.test(torrent)) {
+                stopped = true;
+                cancelled = true;
+            }
+        }
+    }
+
+    private static TorrentPreview parseTorrent(Row row, boolean isSukebei) {
+        TorrentState torrentState;
+        if (hasClass(row.classes, "danger"))
+            torrentState = TorrentState.REMAKE;
+        else if (hasClass(row.classes, "success"))
+            torrentState = TorrentState.TRUSTED;
+        else
+            torrentState = TorrentState.NORMAL;
+
+        Cell[] cells = row.cells.toArray(new Cell[0]);
+
+        String categoryHref = cells[0].anchors.stream()
+                .filter(a -> a.href != null).findFirst()
+                .map(a -> a.href).orElse("");
+        SubCategory category = ParseUtils.parseSubCategory(categoryHref, true, isSukebei);
+
+        Cell titleCell = cells[1];
+        Anchor titleLink = titleCell.anchors.stream()
+                .filter(a -> !hasClass(a.classes, "comments")).findFirst()
+                .orElseThrow(() -> new WebScrapeException("Cannot find title link"));
+        String title = titleCell.text(titleLink);
+        int torrentId = TorrentListPage.parseViewUrl(hrefOf(titleLink));
+
+        int commentCount = titleCell.anchors.stream()
+                .filter(a -> hasClass(a.classes, "comments")).findFirst()
+                .map(a -> Integer.parseInt(titleCell.text(a)))
+                .orElse(0);
+
+        URL downloadLink;
+        URI magnetLink;
+        List<Anchor> links = cells[2].anchors;
+        try {
+            URL baseUrl = new URL(isSukebei ? "https://sukebei.nyaa.si" : "https://nyaa.si");
+            if (hrefOf(links.get(0)).contains("magnet")) {
+                downloadLink = null;
+                magnetLink = new URI(hrefOf(links.get(0)));
+            } else {
+                downloadLink = new URL(baseUrl, hrefOf(links.get(0)));
+                magnetLink = new URI(hrefOf(links.get(1)));
+            }
+        } catch (MalformedURLException e) {
+            throw new WebScrapeException("Cannot parse download url");
+        } catch (URISyntaxException e) {
+            throw new WebScrapeException("Cannot parse magnet uri");
+        }
+
+        DataSize size = ParseUtils.parseDataSize(cells[3].text());
+        Date date = ParseUtils.parseTimeStamp(cells[4].timestamp == null ? "" : cells[4].timestamp);
+        int seeders = Integer.parseInt(cells[5].text());
+        int leechers = Integer.parseInt(cells[6].text());
+        int completed = Integer.parseInt(cells[7].text());
+
+        return new TorrentPreview(torrentId, torrentState, category, title, commentCount, downloadLink, magnetLink, size, date, seeders, leechers, completed);
+    }
+
+    private static CompactTorrentPreview parseCompactTorrent(Row row, boolean isSukebei) {
+        TorrentState torrentState;
+        if (hasClass(row.classes, "danger"))
+            torrentState = TorrentState.REMAKE;
+        else if (hasClass(row.classes, "success"))
+            torrentState = TorrentState.TRUSTED;
+        else
+            torrentState = TorrentState.NORMAL;
+
+        List<Cell> cells = row.cells;
+        if (cells.size() < 8)
+            throw new WebScrapeException("Torrent row has only " + cells.size() + " cells");
+
+        SubCategory category = null;
+        for (Anchor anchor : cells.get(0).anchors) {
+            if (anchor.href != null) {
+                category = ParseUtils.parseCategoryUrl(anchor.href, isSukebei);
+                break;
+            }
+        }
+        if (category == null)
+            throw new WebScrapeException("Cannot parse category url");
+
+        Cell titleCell = cells.get(1);
+        Anchor titleLink = null;
+        Anchor commentLink = null;
+        for (Anchor anchor : titleCell.anchors) {
+            if (!hasClass(anchor.classes, "comments")) {
+                if (titleLink == null)
+                    titleLink = anchor;
+            } else if (commentLink == null) {
+                commentLink = anchor;
+            }
+        }
+        if (titleLink == null)
+            throw new WebScrapeException("Cannot find title link");
+
+        String title = titleCell.text(titleLink);
+        int torrentId = ParseUtils.parseViewUrl(hrefOf(titleLink));
+        int commentCount = commentLink == null ? 0 : ParseUtils.parseInt(titleCell.text, commentLink.textStart,
+                commentLink.textEnd == -1 ? titleCell.text.length() : commentLink.textEnd);
+
+        List<Anchor> links = cells.get(2).anchors;
+        if (links.isEmpty())
+            throw new WebScrapeException("Cannot find download links");
+        boolean hasDownloadLink = !hrefOf(links.get(0)).startsWith("magnet:");
+        String magnetLink = hasDownloadLink ? (links.size() > 1 ? hrefOf(links.get(1)) : "") : hrefOf(links.get(0));
+
+        StringBuilder sizeText = cells.get(3).text;
+        long size = ParseUtils.parseSizeBytes(sizeText, 0, sizeText.length());
+
+        String timestamp = cells.get(4).timestamp;
+        if (timestamp == null || timestamp.isEmpty())
+            throw new WebScrapeException("Cannot find upload timestamp");
+        long uploadedAt = ParseUtils.parseLong(timestamp, 0, timestamp.length());
+
+        return new CompactTorrentPreview(torrentId, torrentState, category, title, commentCount, hasDownloadLink,
+                MagnetLinks.parseInfoHash(magnetLink), size, uploadedAt,
+                parseNumber(cells.get(5)), parseNumber(cells.get(6)), parseNumber(cells.get(7)));
+    }
+
+    private static int parseNumber(Cell cell) {
+        return ParseUtils.parseInt(cell.text, 0, cell.text.length());
+    }
+
+    private static String hrefOf(Anchor anchor) {
+        return anchor.href == null ? "" : anchor.href;
+    }
+
+    private static boolean hasClass(String classes, String className) {
+        if (classes == null)
+            return false;
+
+        // compare each whitespace separated class in place, instead of splitting the attribute
+        int length = classes.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && isWhitespace(classes.charAt(start)))
+                start++;
+
+            int end = start;
+            while (end < length && !isWhitespace(classes.charAt(end)))
+                end++;
+
+            if (end - start == className.length() && classes.regionMatches(true, start, className, 0, className.length()))
+                return true;
+
+            start = end;
+        }
+
+        return false;
+    }
+
+    private static boolean isRawText(String tagName) {
+        switch (tagName) {
+            case "script":
+            case "style":
+            case "title":
+            case "textarea":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Jsoup sets up a whole tokeniser to decode entities, so well-formed references are decoded here
+     * and only unusual input is handed over to jsoup.
+     */
+    private static String unescape(String string, boolean inAttribute) {
+        int amp = string.indexOf('&');
+        if (amp == -1)
+            return string;
+
+        StringBuilder decoded = new StringBuilder(string.length());
+        decoded.append(string, 0, amp);
+
+        int i = amp;
+        while (i < string.length()) {
+            char c = string.charAt(i);
+            if (c != '&') {
+                decoded.append(c);
+                i++;
+                continue;
+            }
+
+            int semicolon = string.indexOf(';', i + 1);
+            if (semicolon == -1 || semicolon - i > 32)
+                return Parser.unescapeEntities(string, inAttribute);
+
+            String reference = string.substring(i + 1, semicolon);
+            if (reference.startsWith("#")) {
+                int codePoint = parseCodePoint(reference);
+                if (codePoint == -1)
+                    return Parser.unescapeEntities(string, inAttribute);
+                decoded.appendCodePoint(codePoint);
+            } else if (Entities.isNamedEntity(reference)) {
+                decoded.append(Entities.getByName(reference));
+            } else {
+                return Parser.unescapeEntities(string, inAttribute);
+            }
+
+            i = semicolon + 1;
+        }
+
+        return decoded.toString();
+    }
+
+    /**
+     * @return code point of a numeric character reference
+     *         or -1 if it has to be remapped or replaced like jsoup does
+     */
+    private static int parseCodePoint(String reference) {
+        try {
+            boolean isHex = reference.length() > 1 && (reference.charAt(1) == 'x' || reference.charAt(1) == 'X');
+            int codePoint = isHex ?
+                    Integer.parseInt(reference.substring(2), 16) :
+                    Integer.parseInt(reference.substring(1));
+
+            boolean isPlain = codePoint > 0 && codePoint <= Character.MAX_CODE_POINT
+                    && (codePoint < 0x80 || codePoint > 0x9F)
+                    && (codePoint < Character.MIN_SURROGATE || codePoint > Character.MAX_SURROGATE);
+
+            return isPlain ? codePoint : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Decode entities and collapse whitespace the same way as {@link org.jsoup.nodes.Element#text()}.
+     */
+    private static String normalizeText(CharSequence raw) {
+        String decoded = unescape(raw.toString(), false);
+
+        StringBuilder text = new StringBuilder(decoded.length());
+        boolean lastWasWhite = false;
+        for (int i = 0; i < decoded.length(); i++) {
+            char c = decoded.charAt(i);
+            if (isWhitespace(c) || c == 160) {
+                if (lastWasWhite)
+                    continue;
+                text.append(' ');
+                lastWasWhite = true;
+            } else if (c != 8203 && c != 173) {
+                text.append(c);
+                lastWasWhite = false;
+            }
+        }
+
+        return text.toString().trim();
+    }
+}
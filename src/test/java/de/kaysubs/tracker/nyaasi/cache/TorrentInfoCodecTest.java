@@ -0,0 +1,162 @@
+package de.kaysubs.tracker.nyaasi.cache;
+
+import de.kaysubs.tracker.nyaasi.model.Category;
+import de.kaysubs.tracker.nyaasi.model.DataSize;
+import de.kaysubs.tracker.nyaasi.model.FileTree;
+import de.kaysubs.tracker.nyaasi.model.HtmlFragment;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TorrentInfoCodecTest {
+
+    private static TorrentInfo torrentInfo() throws Exception {
+        TorrentInfo info = new TorrentInfo();
+        info.setTitle("[Group] Show - 01 [1080p] \u30c6\u30b9\u30c8");
+        info.setDescriptionHtml(HtmlFragment.fromHtml("<div id=\"torrent-description\"><p>" + "long ".repeat(20000) + "</p></div>"));
+        info.setCategory(Category.Nyaa.anime.english);
+        info.setSize(new DataSize(1300, DataSize.DataUnit.MEGABYTE));
+        info.setDate(new Date(1700000000000L));
+        info.setUploader(Optional.of("uploader"));
+        info.setTorrentState(TorrentState.TRUSTED);
+        info.setSeeders(12);
+        info.setLeechers(3);
+        info.setCompleted(456);
+        info.setInformation(null);
+        info.setHash("0123456789abcdef0123456789abcdef01234567");
+        info.setDownloadLink(new URL("https://nyaa.si/download/1.torrent"));
+        info.setMagnetLink(new URI("magnet:?xt=urn:btih:0123456789abcdef0123456789abcdef01234567"));
+        info.setFileTree(new FileTree.Builder()
+                .openFolder("Show")
+                .addFile("Show - 01.mkv", 1000)
+                .openFolder("Extras")
+                .addFile("NCOP.mkv", 200)
+                .closeFolder()
+                .addFile("Show - 02.mkv", 1100)
+                .closeFolder()
+                .build());
+        info.setComments(new TorrentInfo.Comment[]{
+                new TorrentInfo.Comment(1, "user", false, null, new Date(1700000100000L), HtmlFragment.fromHtml("<p>thanks</p>")),
+                new TorrentInfo.Comment(2, "trusted", true, "https://example.com/a.png", new Date(1700000200000L), HtmlFragment.fromHtml("<p>v2</p>")),
+        });
+        return info;
+    }
+
+    private static byte[] write(TorrentInfo info, long fetchedAt) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            TorrentInfoCodec.write(out, info, fetchedAt);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static TorrentInfo read(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        TorrentInfoCodec.readFetchedAt(in);
+        return TorrentInfoCodec.read(in, false);
+    }
+
+    @Test
+    void roundTrip() throws Exception {
+        TorrentInfo info = torrentInfo();
+        byte[] bytes = write(info, 42);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        assertEquals(42, TorrentInfoCodec.readFetchedAt(in));
+        TorrentInfo copy = TorrentInfoCodec.read(in, false);
+        assertEquals(-1, in.read());
+
+        assertEquals(info.getTitle(), copy.getTitle());
+        assertEquals(info.getDescriptionHtml().getHtml(), copy.getDescriptionHtml().getHtml());
+        assertSame(info.getCategory(), copy.getCategory());
+        assertEquals(info.getSize().getBytes(), copy.getSize().getBytes());
+        assertEquals(info.getDate(), copy.getDate());
+        assertEquals(info.getUploader(), copy.getUploader());
+        assertEquals(info.getTorrentState(), copy.getTorrentState());
+        assertEquals(12, copy.getSeeders());
+        assertEquals(3, copy.getLeechers());
+        assertEquals(456, copy.getCompleted());
+        assertNull(copy.getInformation());
+        assertEquals(info.getHash(), copy.getHash());
+        assertEquals(info.getDownloadLink().toString(), copy.getDownloadLink().toString());
+        assertEquals(info.getMagnetLink(), copy.getMagnetLink());
+
+        FileTree files = copy.getFileTree();
+        assertEquals(info.getFileTree().getNodeCount(), files.getNodeCount());
+        for (int node = 0; node < files.getNodeCount(); node++) {
+            assertEquals(info.getFileTree().getPath(node), files.getPath(node));
+            assertEquals(info.getFileTree().getSubtreeEnd(node), files.getSubtreeEnd(node));
+            if (!files.isFolder(node))
+                assertEquals(info.getFileTree().getSize(node), files.getSize(node));
+        }
+
+        assertEquals(2, copy.getComments().length);
+        for (int i = 0; i < 2; i++) {
+            TorrentInfo.Comment expected = info.getComments()[i];
+            TorrentInfo.Comment comment = copy.getComments()[i];
+            assertEquals(expected.getCommentId(), comment.getCommentId());
+            assertEquals(expected.getUsername(), comment.getUsername());
+            assertEquals(expected.isTrusted(), comment.isTrusted());
+            assertEquals(expected.getAvatar(), comment.getAvatar());
+            assertEquals(expected.getDate(), comment.getDate());
+            assertEquals(expected.getCommentHtml().getHtml(), comment.getCommentHtml().getHtml());
+        }
+    }
+
+    @Test
+    void roundTripWithoutOptionalParts() throws Exception {
+        TorrentInfo info = torrentInfo();
+        info.setDescriptionHtml(null);
+        info.setUploader(Optional.empty());
+        info.setDownloadLink(null);
+        info.setMagnetLink(null);
+        info.setFileTree(null);
+        info.setComments(new TorrentInfo.Comment[0]);
+
+        TorrentInfo copy = read(write(info, 0));
+        assertNull(copy.getDescriptionHtml());
+        assertEquals(Optional.empty(), copy.getUploader());
+        assertNull(copy.getDownloadLink());
+        assertNull(copy.getMagnetLink());
+        assertNull(copy.getFileTree());
+        assertEquals(0, copy.getComments().length);
+    }
+
+    @Test
+    void rejectsCorruptLengths() throws Exception {
+        byte[] bytes = write(torrentInfo(), 0);
+        // the title length follows the version and the fetch time
+        int titleLength = 4 + 8;
+
+        byte[] huge = bytes.clone();
+        ByteBuffer.wrap(huge).putInt(titleLength, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> read(huge));
+
+        byte[] negative = bytes.clone();
+        ByteBuffer.wrap(negative).putInt(titleLength, -2);
+        assertThrows(IOException.class, () -> read(negative));
+
+        // without comments, the comment count ends the data
+        TorrentInfo info = torrentInfo();
+        info.setComments(new TorrentInfo.Comment[0]);
+        byte[] comments = write(info, 0);
+        ByteBuffer.wrap(comments).putInt(comments.length - 4, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> read(comments));
+
+        assertThrows(IOException.class, () -> read(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+}
@@ -0,0 +1,113 @@
+package de.kaysubs.tracker.nyaasi.index;
+
+import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.model.Category;
+import de.kaysubs.tracker.nyaasi.model.DataSize;
+import de.kaysubs.tracker.nyaasi.model.SearchPage;
+import de.kaysubs.tracker.nyaasi.model.SearchRequest;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+import de.kaysubs.tracker.nyaasi.store.CrawlStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalNyaaSiApiTest {
+    private final static int TORRENTS = 400;
+
+    @TempDir
+    Path directory;
+
+    private static TorrentPreview preview(int id) {
+        // many torrents share their seeders, so the ties decide large parts of the order
+        TorrentState state = id % 3 == 0 ? TorrentState.REMAKE : TorrentState.NORMAL;
+        return new TorrentPreview(id, state, Category.Nyaa.anime.english, (id % 2 == 0 ? "even" : "odd") + " show " + id, 0,
+                null, null, new DataSize(id, DataSize.DataUnit.MEGABYTE), null, id * 37 % 50, 0, 0);
+    }
+
+    private LocalNyaaSiApi api(CrawlStore store) {
+        // added in a shuffled order, which decides the order of ties
+        int[] ids = IntStream.rangeClosed(1, TORRENTS).map(i -> i * 173 % TORRENTS + 1).toArray();
+        for (int id : ids)
+            store.append(preview(id));
+
+        return new LocalNyaaSiApi(store);
+    }
+
+    /**
+     * Ids in the order of a full sort of all matches, ties are in the order in which the torrents were added.
+     */
+    private static int[] expectedOrder(int[] addedIds, Comparator<Integer> key, boolean descending) {
+        Integer[] sorted = Arrays.stream(addedIds).boxed().toArray(Integer[]::new);
+        Comparator<Integer> order = key.thenComparing(id -> IntStream.range(0, addedIds.length).filter(i -> addedIds[i] == id).findFirst().getAsInt());
+        Arrays.sort(sorted, descending ? order.reversed() : order);
+        return Arrays.stream(sorted).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] ids(TorrentPreview[] torrents) {
+        return Arrays.stream(torrents).mapToInt(TorrentPreview::getId).toArray();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "SEEDERS, DESCENDING",
+            "SEEDERS, ASCENDING",
+            "DATE, DESCENDING",
+            "DATE, ASCENDING",
+            "SIZE, ASCENDING",
+    })
+    void pagesMatchAFullSort(SearchRequest.Sort sort, SearchRequest.Ordering ordering) {
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            LocalNyaaSiApi api = api(store);
+
+            int[] added = IntStream.rangeClosed(1, TORRENTS).map(i -> i * 173 % TORRENTS + 1).filter(id -> id % 2 == 1).toArray();
+            Comparator<Integer> key = sort == SearchRequest.Sort.SEEDERS ? Comparator.comparingInt(id -> preview(id).getSeeders())
+                    : Comparator.comparingInt(id -> id);
+            int[] expected = expectedOrder(added, key, ordering == SearchRequest.Ordering.DESCENDING);
+
+            SearchRequest request = new SearchRequest().setTerm("odd").setSortedBy(sort).setOrdering(ordering);
+            int lastPage = (expected.length + NyaaSiApi.PAGE_SIZE - 1) / NyaaSiApi.PAGE_SIZE;
+            for (int page = 1; page <= lastPage + 1; page++) {
+                int from = Math.min(expected.length, (page - 1) * NyaaSiApi.PAGE_SIZE);
+                int[] expectedPage = Arrays.copyOfRange(expected, from, Math.min(expected.length, from + NyaaSiApi.PAGE_SIZE));
+
+                SearchPage result = api.searchPage(request.copy().setPage(page));
+                assertArrayEquals(expectedPage, ids(result.getTorrents()), "page " + page);
+                assertEquals(lastPage, result.getLastPage());
+                assertEquals(expected.length, result.getTotalResults().getAsInt());
+                assertArrayEquals(expectedPage, ids(api.search(request.copy().setPage(page))), "page " + page);
+            }
+
+            assertArrayEquals(expected, ids(api.searchAll(request, 1)));
+            assertArrayEquals(Arrays.copyOfRange(expected, NyaaSiApi.PAGE_SIZE, expected.length),
+                    ids(api.searchAll(request.copy().setPage(2), 1)));
+        }
+    }
+
+    @Test
+    void filtersAndFindsNewTorrents() {
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            LocalNyaaSiApi api = api(store);
+            SearchRequest request = new SearchRequest().setTerm("show -even").setFilter(SearchRequest.Filter.NO_REMAKES);
+
+            SearchPage first = api.searchPage(request);
+            assertEquals(133, first.getTotalResults().getAsInt());
+            assertEquals(2, first.getLastPage());
+            assertArrayEquals(IntStream.iterate(399, id -> id - 2).filter(id -> id % 3 != 0).limit(NyaaSiApi.PAGE_SIZE).toArray(),
+                    ids(first.getTorrents()));
+
+            api.add(preview(401));
+            assertEquals(401, api.search(request)[0].getId());
+            assertEquals(0, api.search(new SearchRequest().setTerm("missing")).length);
+            assertTrue(api.searchPage(new SearchRequest().setTerm("missing")).isLastPage());
+        }
+    }
+}
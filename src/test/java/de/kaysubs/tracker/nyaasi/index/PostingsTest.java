@@ -0,0 +1,92 @@
+package de.kaysubs.tracker.nyaasi.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostingsTest {
+
+    // every third document, spanning many skip entries
+    private static Postings postings(int documentCount) {
+        Postings postings = new Postings();
+        for (int i = 0; i < documentCount; i++) {
+            int document = i * 3;
+            postings.add(document, positions(document), positions(document).length);
+        }
+        return postings;
+    }
+
+    private static int[] positions(int document) {
+        return document % 2 == 0 ? new int[] {document % 7} : new int[] {0, document % 5 + 1, 200};
+    }
+
+    @Test
+    void iteratesAllDocuments() {
+        Postings.Cursor cursor = postings(1000).cursor();
+        assertEquals(-1, cursor.document());
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i * 3, cursor.next());
+            assertArrayEquals(positions(i * 3), Arrays.copyOf(cursor.positions(), cursor.positionCount()));
+        }
+
+        assertEquals(Integer.MAX_VALUE, cursor.next());
+        assertEquals(1000, postings(1000).getDocumentCount());
+    }
+
+    @Test
+    void advancesToTheFirstDocumentNotBelowTheTarget() {
+        Postings postings = postings(1000);
+        Postings.Cursor cursor = postings.cursor();
+
+        assertEquals(0, cursor.advance(0));
+        assertEquals(3, cursor.advance(1));
+        // the cursor never moves back
+        assertEquals(3, cursor.advance(2));
+        // around the skip entry in front of document 64 * 3
+        assertEquals(189, cursor.advance(189));
+        assertEquals(192, cursor.advance(190));
+        assertArrayEquals(positions(192), Arrays.copyOf(cursor.positions(), cursor.positionCount()));
+        assertEquals(195, cursor.next());
+        assertEquals(2997, cursor.advance(2997));
+        assertEquals(Integer.MAX_VALUE, cursor.advance(2998));
+
+        assertEquals(Integer.MAX_VALUE, postings.cursor().advance(5000));
+        assertEquals(Integer.MAX_VALUE, new Postings().cursor().advance(0));
+    }
+
+    @Test
+    void advancesLikeALinearScan() {
+        Postings postings = postings(5000);
+        Random random = new Random(42);
+
+        for (int run = 0; run < 100; run++) {
+            Postings.Cursor cursor = postings.cursor();
+            int target = -1;
+
+            while (target < 15000) {
+                target += 1 + random.nextInt(run % 2 == 0 ? 10 : 1000);
+                int expected = target > 14997 ? Integer.MAX_VALUE : (target + 2) / 3 * 3;
+
+                assertEquals(expected, cursor.advance(target), "target " + target);
+                if (expected != Integer.MAX_VALUE)
+                    assertArrayEquals(positions(expected), Arrays.copyOf(cursor.positions(), cursor.positionCount()));
+            }
+        }
+    }
+
+    @Test
+    void encodesLargeGapsAndPositions() {
+        Postings postings = new Postings();
+        postings.add(0, new int[] {0}, 1);
+        postings.add(200, new int[] {300}, 1);
+        postings.add(Integer.MAX_VALUE - 1, new int[] {1, 70000}, 2);
+
+        Postings.Cursor cursor = postings.cursor();
+        assertEquals(Integer.MAX_VALUE - 1, cursor.advance(201));
+        assertArrayEquals(new int[] {1, 70000}, Arrays.copyOf(cursor.positions(), cursor.positionCount()));
+    }
+}
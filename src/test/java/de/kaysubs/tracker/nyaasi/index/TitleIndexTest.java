@@ -0,0 +1,130 @@
+package de.kaysubs.tracker.nyaasi.index;
+
+import de.kaysubs.tracker.nyaasi.model.Category;
+import de.kaysubs.tracker.nyaasi.model.DataSize;
+import de.kaysubs.tracker.nyaasi.model.SubCategory;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TitleIndexTest {
+
+    private static TorrentPreview preview(int id, String title) {
+        return preview(id, title, Category.Nyaa.anime.english, TorrentState.NORMAL, new DataSize(700, DataSize.DataUnit.MEGABYTE));
+    }
+
+    private static TorrentPreview preview(int id, String title, SubCategory category, TorrentState state, DataSize size) {
+        return new TorrentPreview(id, state, category, title, 0, null, null, size, null, 0, 0, 0);
+    }
+
+    private static TitleIndex index() {
+        TitleIndex index = new TitleIndex();
+        index.add(preview(1, "[Group] Show - 01 (1080p)"));
+        index.add(preview(2, "[Group] Show - 02 (720p)"));
+        index.add(preview(3, "[Other] Show Season 2 - 01 [1080p]"));
+        index.add(preview(4, "[Other] Season Show 2 - 01 [1080p]"));
+        index.add(preview(5, "[Group] Another Show - 01 (1080p) [Batch]"));
+        index.add(preview(6, "Show_S01E05.1080p.WEB"));
+        index.add(preview(7, null));
+        return index;
+    }
+
+    private static int[] search(TitleIndex index, String text) {
+        return index.search(new TitleQuery().setText(text));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiterString = "=>", value = {
+            "show => 1 2 3 4 5 6",
+            "show 1080p => 1 3 4 5 6",
+            "SHOW 01 => 1 3 4 5",
+            // padding is ignored on both sides
+            "show 001 => 1 3 4 5",
+            "s1e5 => 6",
+            "\"show season\" => 3",
+            "\"season show\" => 4",
+            "\"show - 01\" => 1 5",
+            "\"group show\" => 1 2",
+            "\"show 2 01\" => 4",
+            "1080p|720p group => 1 2 5",
+            "720p | \"show season\" => 2 3",
+            "show -batch => 1 2 3 4 6",
+            "show -\"season show\" -other => 1 2 5 6",
+            "-group => 3 4 6 7",
+            "show -missing => 1 2 3 4 5 6",
+            "missing => ''",
+            "\"missing show\" => ''",
+            "show missing|720p => 2",
+            "'' => 1 2 3 4 5 6 7",
+            "- => 1 2 3 4 5 6 7",
+    })
+    void matchesTheQuerySyntax(String query, String ids) {
+        int[] expected = ids.isEmpty() ? new int[0] : Arrays.stream(ids.split(" ")).mapToInt(Integer::parseInt).toArray();
+        assertArrayEquals(expected, search(index(), query), query);
+    }
+
+    @Test
+    void filtersByAttributes() {
+        TitleIndex index = new TitleIndex();
+        index.add(preview(1, "show", Category.Nyaa.anime.english, TorrentState.TRUSTED, new DataSize(1, DataSize.DataUnit.GIGABYTE)));
+        index.add(preview(2, "show", Category.Nyaa.anime.raw, TorrentState.REMAKE, new DataSize(300, DataSize.DataUnit.MEGABYTE)));
+        index.add(preview(3, "show", Category.Nyaa.literature.english, TorrentState.NORMAL, null));
+        index.add(preview(4, "show", null, null, new DataSize(2, DataSize.DataUnit.GIGABYTE)));
+
+        assertArrayEquals(new int[] {1, 2}, index.search(new TitleQuery().setText("show").setCategory(Category.Nyaa.anime)));
+        assertArrayEquals(new int[] {2}, index.search(new TitleQuery().setCategory(Category.Nyaa.anime.raw)));
+        assertArrayEquals(new int[] {1, 3}, index.search(new TitleQuery().setStates(EnumSet.of(TorrentState.NORMAL, TorrentState.TRUSTED))));
+        assertArrayEquals(new int[0], index.search(new TitleQuery().setStates(EnumSet.noneOf(TorrentState.class))));
+        assertArrayEquals(new int[] {1, 4}, index.search(new TitleQuery().setMinSize(1L << 30)));
+        assertArrayEquals(new int[] {2}, index.search(new TitleQuery().setMaxSize(500L << 20)));
+        assertArrayEquals(new int[] {1, 2, 3, 4}, index.search(new TitleQuery()));
+    }
+
+    @Test
+    void replacesTorrents() {
+        TitleIndex index = index();
+        index.add(preview(2, "[Group] Show - 02v2 (1080p)"));
+
+        assertEquals(7, index.size());
+        assertArrayEquals(new int[] {1, 3, 4, 5, 6, 2}, search(index, "show 1080p"));
+        assertArrayEquals(new int[0], search(index, "720p"));
+        assertArrayEquals(new int[] {2}, search(index, "02v2"));
+    }
+
+    @Test
+    void searchesTheSameAfterCompaction() {
+        TitleIndex index = new TitleIndex();
+        for (int id = 0; id < 2000; id++)
+            index.add(preview(id, "[Old] Title " + id % 10 + " - " + id + " x" + id));
+        int tokensBefore = index.getTokenCount();
+
+        // the 1024th replacement compacts the index, the later ones are deleted documents again
+        for (int id = 0; id < 1500; id++)
+            index.add(preview(id, "[New] Title " + id % 10 + " - " + id));
+
+        assertEquals(2000, index.size());
+        // the x tokens of the compacted titles are dropped
+        assertEquals(tokensBefore + 1 - 1024, index.getTokenCount());
+        assertArrayEquals(IntStream.range(1500, 2000).toArray(), search(index, "old"));
+        assertArrayEquals(IntStream.range(0, 1500).toArray(), search(index, "new"));
+        assertArrayEquals(IntStream.range(0, 1500).filter(id -> id % 10 == 7).toArray(), search(index, "\"new title 7\""));
+        assertArrayEquals(IntStream.range(1500, 2000).filter(id -> id % 10 == 7).toArray(), search(index, "title 7 -new"));
+        assertArrayEquals(new int[] {13}, search(index, "13|1999 -old"));
+        assertArrayEquals(new int[] {1500}, search(index, "x1024|x1500"));
+
+        // torrents can be replaced again after they were moved by the compaction
+        index.add(preview(1999, "[Newest] Title"));
+        index.add(preview(5, "[Newest] Title"));
+        assertArrayEquals(new int[] {1999, 5}, search(index, "newest"));
+        assertArrayEquals(IntStream.range(1500, 1999).toArray(), search(index, "old"));
+        assertEquals(2000, index.size());
+    }
+}
@@ -0,0 +1,29 @@
+package de.kaysubs.tracker.nyaasi.index;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TitleTokenizerTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "[Group] Show_S01E05.1080p | group show s1e5 1080p",
+            "Show - 05 | show 5",
+            "Show - 5 | show 5",
+            "Episode 0 | episode 0",
+            "Episode 00 | episode 0",
+            "Batch 001-100 | batch 1 100",
+            "v2.00 | v2 0",
+            "x264 10bit | x264 10bit",
+            "HEVC-x265 [AAC 2.0] | hevc x265 aac 2 0",
+            "Show 2nd Season | show 2nd season",
+            "\u7279\u5178 OST | \u7279 \u5178 ost",
+            "Caf\u00e9 \u00c9t\u00e9 | caf\u00e9 \u00e9t\u00e9",
+            "... | ''",
+    })
+    void tokenizes(String title, String tokens) {
+        assertEquals(tokens, String.join(" ", TitleTokenizer.tokenize(title)));
+    }
+}
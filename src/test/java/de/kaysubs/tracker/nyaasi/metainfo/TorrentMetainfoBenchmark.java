@@ -0,0 +1,120 @@
+package de.kaysubs.tracker.nyaasi.metainfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Throughput of {@link TorrentMetainfo} on multi-MB torrent files.
+ *
+ * Not run by the tests. Run it with
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     de.kaysubs.tracker.nyaasi.metainfo.TorrentMetainfoBenchmark [file.torrent ...]
+ * </pre>
+ * Without arguments, synthetic torrents of 1, 10 and 40 MB are generated.
+ */
+public class TorrentMetainfoBenchmark {
+    private final static int PIECE_LENGTH = 16384;
+    private final static long MIN_NANOS = 2_000_000_000L;
+
+    // keeps the results alive, so the parsing cannot be optimized away
+    private static int sink;
+
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (args.length == 0) {
+            Path directory = Files.createTempDirectory("torrent-benchmark");
+            for (int megabytes : new int[]{1, 10, 40}) {
+                Path file = directory.resolve(megabytes + "mb.torrent");
+                Files.write(file, generate(megabytes * 1024 * 1024 / 20, megabytes * 100));
+                file.toFile().deleteOnExit();
+                files.add(file);
+            }
+            directory.toFile().deleteOnExit();
+        } else {
+            for (String arg : args)
+                files.add(Path.of(arg));
+        }
+
+        for (Path file : files)
+            benchmark(file);
+
+        if (sink == 42)
+            System.out.println();
+    }
+
+    private static void benchmark(Path file) throws IOException {
+        long size = Files.size(file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer heap = ByteBuffer.wrap(bytes);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+
+        System.out.println(file.getFileName() + " (" + size / 1024 + " KiB, "
+                + TorrentMetainfo.parse(heap).getPieceCount() + " pieces)");
+
+        report("  parse heap buffer", size, () -> TorrentMetainfo.parse(heap).getPieceCount());
+        report("  parse direct buffer", size, () -> TorrentMetainfo.parse(direct).getPieceCount());
+        report("  read mapped file", size, () -> TorrentMetainfo.read(file).getPieceCount());
+        report("  parse and info hash", size, () -> TorrentMetainfo.parse(direct).getInfoHash()[0]);
+    }
+
+    private static void report(String name, long size, IntSupplier run) {
+        // warm up, then measure for at least MIN_NANOS
+        for (int i = 0; i < 20; i++)
+            sink += run.getAsInt();
+
+        int iterations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += run.getAsInt();
+            iterations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MIN_NANOS);
+
+        double micros = elapsed / 1e3 / iterations;
+        double megabytesPerSecond = size * (double) iterations / (1024 * 1024) / (elapsed / 1e9);
+        System.out.printf("%-24s %10.1f us %10.0f MB/s%n", name, micros, megabytesPerSecond);
+    }
+
+    /**
+     * A multi file torrent whose pieces match the total size of its files.
+     */
+    static byte[] generate(int pieceCount, int fileCount) {
+        Random random = new Random(1);
+        long totalSize = (long) pieceCount * PIECE_LENGTH;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pieceCount * 20 + fileCount * 64 + 256);
+        write(out, "d8:announce36:http://nyaa.tracker.wf:7777/announce10:created by13:mktorrent 1.113:creation datei1700000000e4:infod");
+        write(out, "5:filesl");
+        long remaining = totalSize;
+        for (int file = 0; file < fileCount; file++) {
+            long length = file == fileCount - 1 ? remaining : remaining / (fileCount - file);
+            remaining -= length;
+
+            String name = "Episode " + (file + 1) + " [1080p].mkv";
+            write(out, "d6:lengthi" + length + "e4:pathl6:Season" + name.length() + ":" + name + "ee");
+        }
+        write(out, "e4:name10:Show Batch12:piece lengthi" + PIECE_LENGTH + "e6:pieces" + pieceCount * 20 + ":");
+
+        byte[] pieces = new byte[pieceCount * 20];
+        random.nextBytes(pieces);
+        out.writeBytes(pieces);
+        write(out, "ee");
+
+        return out.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, String ascii) {
+        out.writeBytes(ascii.getBytes(StandardCharsets.US_ASCII));
+    }
+}
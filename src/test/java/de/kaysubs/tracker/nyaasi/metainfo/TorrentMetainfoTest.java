@@ -0,0 +1,198 @@
+package de.kaysubs.tracker.nyaasi.metainfo;
+
+import de.kaysubs.tracker.nyaasi.exception.InvalidTorrentFileException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The fixtures were written by an independent bencoder, which also computed the expected info hashes.
+ */
+class TorrentMetainfoTest {
+
+    @Test
+    void parsesSingleFileTorrent() throws IOException {
+        TorrentMetainfo metainfo = TorrentMetainfo.parse(ByteBuffer.wrap(fixture("single-file.torrent")));
+
+        assertEquals("49ed132aa74671d9800a46bb36a828508313da82", metainfo.getInfoHashHex());
+        assertEquals("[Group] Show - 01 (1080p).mkv", metainfo.getName());
+        assertEquals("http://nyaa.tracker.wf:7777/announce", metainfo.getAnnounce());
+        assertEquals("mktorrent 1.1", metainfo.getCreatedBy());
+        assertEquals("https://nyaa.si/view/1000000", metainfo.getComment());
+        assertEquals(1700000000L, metainfo.getCreationDate());
+        assertFalse(metainfo.isPrivate());
+
+        assertTrue(metainfo.isSingleFile());
+        assertEquals(1, metainfo.getFileCount());
+        assertEquals(100000, metainfo.getTotalSize());
+        assertEquals(16384, metainfo.getPieceLength());
+        assertEquals(7, metainfo.getPieceCount());
+        assertEquals(0, metainfo.getFirstPiece(0));
+        assertEquals(6, metainfo.getLastPiece(0));
+
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) ((i * 31 + 7) % 251);
+        for (int piece = 0; piece < metainfo.getPieceCount(); piece++) {
+            int start = piece * 16384;
+            assertArrayEquals(sha1(Arrays.copyOfRange(data, start, Math.min(data.length, start + 16384))),
+                    metainfo.getPieceHash(piece), "piece " + piece);
+        }
+    }
+
+    @Test
+    void parsesMultiFileTorrent() throws IOException {
+        TorrentMetainfo metainfo = TorrentMetainfo.parse(ByteBuffer.wrap(fixture("multi-file.torrent")));
+
+        assertEquals("30afb6461f3f9266a556e5b5e23e7b3df2fee9d2", metainfo.getInfoHashHex());
+        assertEquals("Show Batch", metainfo.getName());
+        assertNull(metainfo.getAnnounce());
+        assertEquals(List.of(
+                List.of("http://nyaa.tracker.wf:7777/announce"),
+                List.of("udp://open.stealth.si:80/announce", "udp://tracker.opentrackr.org:1337/announce")),
+                metainfo.getAnnounceList());
+        assertEquals(-1, metainfo.getCreationDate());
+        assertTrue(metainfo.isPrivate());
+
+        assertFalse(metainfo.isSingleFile());
+        assertEquals(5, metainfo.getFileCount());
+        assertEquals(82422, metainfo.getTotalSize());
+        assertEquals(3, metainfo.getPieceCount());
+
+        assertEquals("Show/Season 1/b.mkv", metainfo.getFilePath(0));
+        assertEquals("Show/\u7279\u5178/ost.flac", metainfo.getFilePath(3));
+        assertEquals(40000, metainfo.getFileOffset(1));
+        assertEquals(1, metainfo.getFirstPiece(1));
+        assertEquals(2, metainfo.getLastPiece(1));
+
+        // the empty file has no pieces
+        assertEquals(0, metainfo.getFileLength(2));
+        assertTrue(metainfo.getLastPiece(2) < metainfo.getFirstPiece(2));
+
+        assertEquals(5, metainfo.getFileTree().getFileCount());
+        assertEquals(82422, metainfo.getFileTree().getTotalSize());
+    }
+
+    @Test
+    void piecesAreReadOnlyView() throws IOException {
+        TorrentMetainfo metainfo = TorrentMetainfo.parse(ByteBuffer.wrap(fixture("single-file.torrent")));
+
+        ByteBuffer pieces = metainfo.getPieces();
+        assertTrue(pieces.isReadOnly());
+        assertEquals(7 * 20, pieces.remaining());
+
+        byte[] first = new byte[20];
+        pieces.get(first);
+        assertArrayEquals(metainfo.getPieceHash(0), first);
+    }
+
+    @Test
+    void parsesBetweenPositionAndLimit() throws IOException {
+        byte[] torrent = fixture("multi-file.torrent");
+        byte[] padded = new byte[torrent.length + 20];
+        Arrays.fill(padded, (byte) 'x');
+        System.arraycopy(torrent, 0, padded, 7, torrent.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(padded, 7, torrent.length);
+        TorrentMetainfo metainfo = TorrentMetainfo.parse(buffer);
+
+        assertEquals("30afb6461f3f9266a556e5b5e23e7b3df2fee9d2", metainfo.getInfoHashHex());
+        assertEquals(7, buffer.position());
+    }
+
+    @Test
+    void readsMappedFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("single-file.torrent");
+        Files.write(file, fixture("single-file.torrent"));
+
+        assertEquals("49ed132aa74671d9800a46bb36a828508313da82", TorrentMetainfo.read(file).getInfoHashHex());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"single-file.torrent", "multi-file.torrent"})
+    void rejectsTruncatedFiles(String fixture) throws IOException {
+        byte[] torrent = fixture(fixture);
+        for (int length = 0; length < torrent.length; length++) {
+            ByteBuffer truncated = ByteBuffer.wrap(torrent, 0, length);
+            assertThrows(InvalidTorrentFileException.class, () -> TorrentMetainfo.parse(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void rejectsStringLongerThanFile() {
+        assertInvalid("d4:infod4:name999:abcee");
+    }
+
+    @Test
+    void rejectsOverflowingInteger() {
+        assertInvalid("d4:infod4:name1:a12:piece lengthi99999999999999999999e6:pieces0:6:lengthi0eee");
+    }
+
+    @Test
+    void rejectsNegativePieceLength() {
+        assertInvalid("d4:infod4:name1:a12:piece lengthi-16384e6:pieces0:6:lengthi0eee");
+    }
+
+    @Test
+    void rejectsNegativeFileLength() {
+        assertInvalid("d4:infod4:name1:a12:piece lengthi16384e6:pieces0:5:filesld6:lengthi-1e4:pathl1:beeeee");
+    }
+
+    @Test
+    void rejectsOverflowingTotalSize() {
+        String file = "d6:lengthi4611686018427387904e4:pathl1:bee";
+        assertInvalid("d4:infod4:name1:a12:piece lengthi16384e6:pieces0:5:filesl" + file + file + "eee");
+    }
+
+    @Test
+    void rejectsPieceCountMismatch() {
+        // 20000 bytes need two pieces of 16384 bytes
+        assertInvalid("d4:infod4:name1:a12:piece lengthi16384e6:pieces20:" + "p".repeat(20) + "6:lengthi20000eee");
+    }
+
+    @Test
+    void rejectsPiecesThatAreNotWholeHashes() {
+        assertInvalid("d4:infod4:name1:a12:piece lengthi16384e6:pieces19:" + "p".repeat(19) + "6:lengthi1eee");
+    }
+
+    @Test
+    void rejectsMissingInfo() {
+        assertInvalid("d8:announce3:urle");
+        assertInvalid("");
+        assertInvalid("le");
+    }
+
+    private static void assertInvalid(String torrent) {
+        ByteBuffer buffer = ByteBuffer.wrap(torrent.getBytes(StandardCharsets.ISO_8859_1));
+        assertThrows(InvalidTorrentFileException.class, () -> TorrentMetainfo.parse(buffer), torrent);
+    }
+
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = TorrentMetainfoTest.class.getResourceAsStream(name)) {
+            assertNotNull(in, name);
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] sha1(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package de.kaysubs.tracker.nyaasi.store;
+
+import de.kaysubs.tracker.nyaasi.model.Category;
+import de.kaysubs.tracker.nyaasi.model.DataSize;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlStoreTest {
+    @TempDir
+    Path directory;
+
+    private static TorrentPreview preview(int id, String title) {
+        try {
+            return new TorrentPreview(id, TorrentState.TRUSTED, Category.Nyaa.anime.english, title, 3,
+                    new URL("https://nyaa.si/download/" + id + ".torrent"),
+                    URI.create("magnet:?xt=urn:btih:49ed132aa74671d9800a46bb36a828508313da82&dn=" + id),
+                    new DataSize(1234, DataSize.DataUnit.MEGABYTE), new Date(1700000000000L + id), 10, 2, 345);
+        } catch (MalformedURLException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void assertPreview(TorrentPreview expected, TorrentPreview actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTorrentState(), actual.getTorrentState());
+        assertSame(expected.getCategory(), actual.getCategory());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getCommentCount(), actual.getCommentCount());
+        assertEquals(expected.getDownloadLink(), actual.getDownloadLink());
+        assertEquals(expected.getMagnetLink(), actual.getMagnetLink());
+        assertEquals(expected.getSize() == null ? null : expected.getSize().getValue(), actual.getSize() == null ? null : actual.getSize().getValue());
+        assertEquals(expected.getSize() == null ? null : expected.getSize().getUnit(), actual.getSize() == null ? null : actual.getSize().getUnit());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getSeeders(), actual.getSeeders());
+        assertEquals(expected.getLeechers(), actual.getLeechers());
+        assertEquals(expected.getCompleted(), actual.getCompleted());
+    }
+
+    private static List<TorrentPreview> collect(CrawlStore store) {
+        List<TorrentPreview> previews = new ArrayList<>();
+        store.forEach(preview -> previews.add(preview.toTorrentPreview()));
+        return previews;
+    }
+
+    @Test
+    void roundTripsThroughStoredPreview() {
+        TorrentPreview full = preview(1000000, "[Group] Show - 01 (1080p) \u7279\u5178");
+        TorrentPreview empty = new TorrentPreview(1000001, null, null, null, 0, null, null, null, null, 0, 0, 0);
+
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            store.append(full);
+            store.append(empty);
+
+            assertPreview(full, store.get(1000000).orElseThrow());
+            assertPreview(empty, store.get(1000001).orElseThrow());
+            assertFalse(store.get(999999).isPresent());
+            assertFalse(store.get(-1).isPresent());
+            assertFalse(store.contains(2000000));
+
+            List<Integer> visited = new ArrayList<>();
+            store.forEach(preview -> {
+                if (preview.getId() == full.getId()) {
+                    assertEquals(full.getTitle(), preview.getTitle());
+                    assertEquals(full.getDate().getTime(), preview.getDateMillis());
+                    assertEquals(1234, preview.getSizeValue());
+                    assertEquals(DataSize.DataUnit.MEGABYTE, preview.getSizeUnit());
+                } else {
+                    assertNull(preview.getTitle());
+                    assertEquals(Long.MIN_VALUE, preview.getDateMillis());
+                    assertNull(preview.getSizeUnit());
+                }
+                visited.add(preview.getId());
+            });
+            assertEquals(List.of(1000000, 1000001), visited);
+        }
+    }
+
+    @Test
+    void replacesRecordsOfTheSameTorrent() {
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            store.append(preview(1, "first"));
+            store.append(preview(2, "second"));
+            store.append(preview(1, "first again"));
+
+            assertEquals(2, store.size());
+            assertEquals("first again", store.get(1).orElseThrow().getTitle());
+
+            // the latest record of every torrent in the order in which they were stored
+            List<TorrentPreview> previews = collect(store);
+            assertEquals(2, previews.size());
+            assertEquals("second", previews.get(0).getTitle());
+            assertEquals("first again", previews.get(1).getTitle());
+        }
+    }
+
+    @Test
+    void rebuildsTheIndexOnReopen() {
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            for (int id = 0; id < 1000; id++)
+                store.append(preview(id * 7, "title " + id));
+            store.append(preview(14, "replaced"));
+        }
+
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            assertEquals(1000, store.size());
+            assertTrue(store.contains(6993));
+            assertFalse(store.contains(6994));
+            assertEquals("title 500", store.get(3500).orElseThrow().getTitle());
+            assertEquals("replaced", store.get(14).orElseThrow().getTitle());
+            assertEquals(1000, collect(store).size());
+
+            store.append(preview(7000, "after reopen"));
+            assertEquals("after reopen", store.get(7000).orElseThrow().getTitle());
+        }
+    }
+
+    @Test
+    void keepsTheSitesApart() {
+        try (CrawlStore nyaa = new CrawlStore(directory, false); CrawlStore sukebei = new CrawlStore(directory, true)) {
+            sukebei.append(new TorrentPreview(1, null, Category.Sukebei.art.anime, "sukebei", 0, null, null, null, null, 0, 0, 0));
+            assertThrows(IllegalArgumentException.class, () -> nyaa.append(
+                    new TorrentPreview(1, null, Category.Sukebei.art.anime, "sukebei", 0, null, null, null, null, 0, 0, 0)));
+
+            assertFalse(nyaa.contains(1));
+            assertSame(Category.Sukebei.art.anime, sukebei.get(1).orElseThrow().getCategory());
+        }
+    }
+
+    @Test
+    void rejectsIdsOutsideTheIndex() {
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            assertThrows(IllegalArgumentException.class, () -> store.append(preview(-1, "negative")));
+            assertThrows(IllegalArgumentException.class, () -> store.append(preview(Integer.MAX_VALUE, "overflow")));
+            assertThrows(IllegalArgumentException.class, () -> store.append(preview(CrawlStore.MAX_TORRENT_ID + 1, "too large")));
+            assertEquals(0, store.size());
+            assertFalse(store.contains(Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void discardsRecordsWrittenAfterTheLastHeaderUpdate() throws IOException {
+        Path recordFile = directory.resolve("nyaa-previews.bin");
+
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            store.append(preview(1, "committed"));
+        }
+        ByteBuffer header = readHeader(recordFile);
+
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            store.append(preview(2, "lost in a crash"));
+        }
+        // a crash before the header was updated leaves the record and its strings behind the counts
+        writeHeader(recordFile, header);
+
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            assertEquals(1, store.size());
+            assertFalse(store.contains(2));
+            assertEquals(1, collect(store).size());
+
+            // the discarded record and strings are overwritten
+            store.append(preview(3, "next"));
+            assertEquals("committed", store.get(1).orElseThrow().getTitle());
+            assertEquals("next", store.get(3).orElseThrow().getTitle());
+        }
+
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            assertEquals(2, store.size());
+            assertFalse(store.contains(2));
+            assertPreview(preview(3, "next"), store.get(3).orElseThrow());
+        }
+    }
+
+    private static ByteBuffer readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(64).order(ByteOrder.BIG_ENDIAN);
+            channel.read(header, 0);
+            return header.flip();
+        }
+    }
+
+    private static void writeHeader(Path file, ByteBuffer header) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(header, 0);
+        }
+    }
+
+    @Test
+    void alignsStringsToSegments() {
+        // two of these strings do not fit into one segment, so the second one starts in the next segment
+        String first = "a".repeat(MappedFile.SEGMENT_SIZE / 2);
+        String second = "b".repeat(MappedFile.SEGMENT_SIZE / 2);
+
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            store.append(preview(1, first));
+            store.append(preview(2, second));
+            store.append(preview(3, "short"));
+
+            assertEquals(first, store.get(1).orElseThrow().getTitle());
+            assertEquals(second, store.get(2).orElseThrow().getTitle());
+            assertEquals("short", store.get(3).orElseThrow().getTitle());
+        }
+
+        try (CrawlStore store = new CrawlStore(directory, false)) {
+            assertEquals(second, store.get(2).orElseThrow().getTitle());
+            assertEquals("short", store.get(3).orElseThrow().getTitle());
+
+            assertThrows(IllegalArgumentException.class, () -> store.append(preview(4, "c".repeat(MappedFile.SEGMENT_SIZE))));
+        }
+    }
+}
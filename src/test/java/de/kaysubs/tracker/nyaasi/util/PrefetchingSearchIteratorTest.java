@@ -0,0 +1,104 @@
+package de.kaysubs.tracker.nyaasi.util;
+
+import de.kaysubs.tracker.nyaasi.NyaaSiApi;
+import de.kaysubs.tracker.nyaasi.NyaaSiAuthApi;
+import de.kaysubs.tracker.nyaasi.model.SearchPage;
+import de.kaysubs.tracker.nyaasi.model.SearchRequest;
+import de.kaysubs.tracker.nyaasi.model.TorrentInfo;
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefetchingSearchIteratorTest {
+
+    /**
+     * A search with full pages up to the last one, which records the requested pages.
+     */
+    private static class PagedApi implements NyaaSiApi {
+        private final int lastPage;
+        private final int pagesWithResults;
+        private final Set<Integer> requestedPages = new ConcurrentSkipListSet<>();
+
+        private PagedApi(int lastPage, int pagesWithResults) {
+            this.lastPage = lastPage;
+            this.pagesWithResults = pagesWithResults;
+        }
+
+        @Override
+        public boolean isSukebei() {
+            return false;
+        }
+
+        @Override
+        public TorrentPreview[] search(SearchRequest request) {
+            return searchPage(request).getTorrents();
+        }
+
+        @Override
+        public SearchPage searchPage(SearchRequest request) {
+            int page = request.getPage().orElse(1);
+            requestedPages.add(page);
+
+            int results = page <= pagesWithResults ? PAGE_SIZE : 0;
+            TorrentPreview[] torrents = IntStream.range(0, results)
+                    .mapToObj(i -> new TorrentPreview(page * 1000 + i, null, null, "torrent", 0, null, null, null, null, 0, 0, 0))
+                    .toArray(TorrentPreview[]::new);
+            return new SearchPage(torrents, page, lastPage, OptionalInt.of(lastPage * PAGE_SIZE));
+        }
+
+        @Override
+        public TorrentInfo getTorrentInfo(int torrentId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NyaaSiAuthApi login(String username, String password) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static List<Integer> pagesOf(Stream<TorrentPreview> torrents) {
+        try (torrents) {
+            return torrents.map(torrent -> torrent.getId() / 1000).distinct().collect(Collectors.toList());
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1, 1, 4",
+            "1, 3, 4",
+            "1, 3, 0",
+            "2, 3, 4",
+            "1, 20, 4",
+    })
+    void requestsNoPageAfterTheLastOne(int firstPage, int lastPage, int lookahead) {
+        PagedApi api = new PagedApi(lastPage, lastPage);
+        SearchRequest request = new SearchRequest().setPage(firstPage);
+
+        List<Integer> pages = pagesOf(PrefetchingSearchIterator.stream(api, request, lookahead, RequestExecutors.getDefault()));
+
+        List<Integer> expected = IntStream.rangeClosed(firstPage, lastPage).boxed().collect(Collectors.toList());
+        assertEquals(expected, pages);
+        assertEquals(new TreeSet<>(expected), api.requestedPages);
+        assertEquals(firstPage, request.getPage().getAsInt());
+    }
+
+    @Test
+    void endsAtTheFirstEmptyPage() {
+        PagedApi api = new PagedApi(10, 2);
+        assertEquals(List.of(1, 2), pagesOf(PrefetchingSearchIterator.stream(api, new SearchRequest(), 0, RequestExecutors.getDefault())));
+        assertEquals(Set.of(1, 2, 3), api.requestedPages);
+    }
+}
@@ -0,0 +1,117 @@
+package de.kaysubs.tracker.nyaasi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestExecutorsTest {
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void returnsResultsByIndex() {
+        ExecutorService executor = RequestExecutors.create(4, "test");
+        try {
+            List<String> results = RequestExecutors.invokeAll(100, 4, executor, i -> "page " + i);
+            assertEquals(IntStream.range(0, 100).mapToObj(i -> "page " + i).collect(Collectors.toList()), results);
+            assertEquals(List.of(), RequestExecutors.invokeAll(0, 4, executor, i -> "page " + i));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void runsAtMostParallelismTasksAtOnce() {
+        ExecutorService executor = RequestExecutors.create(8, "test");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        try {
+            RequestExecutors.invokeAll(30, 3, executor, i -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(10);
+                return running.decrementAndGet();
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(maxRunning.get() > 1);
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    void defaultExecutorDoesNotCapConcurrency() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch allStarted = new CountDownLatch(30);
+
+        // every task waits until all of them run at the same time
+        RequestExecutors.invokeAll(30, 30, RequestExecutors.getDefault(), i -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            allStarted.countDown();
+            try {
+                return allStarted.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+
+        assertEquals(30, maxRunning.get());
+    }
+
+    @Test
+    void completesOnTheCallingThreadIfTheExecutorIsBusy() throws Exception {
+        ExecutorService executor = RequestExecutors.create(1, "test");
+        try {
+            // the only thread of the executor waits for helpers that are queued behind it
+            Future<List<Integer>> nested = executor.submit(() -> RequestExecutors.invokeAll(10, 4, executor, i -> i * 2));
+            assertEquals(IntStream.range(0, 10).map(i -> i * 2).boxed().collect(Collectors.toList()), nested.get(5, TimeUnit.SECONDS));
+
+            // an executor that never runs anything
+            assertEquals(List.of(0, 1, 2), RequestExecutors.invokeAll(3, 3, runnable -> {}, i -> i));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void throwsTheFirstFailure() {
+        ExecutorService executor = RequestExecutors.create(4, "test");
+        AtomicInteger started = new AtomicInteger();
+
+        try {
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> RequestExecutors.invokeAll(1000, 4, executor, i -> {
+                started.incrementAndGet();
+                if (i == 5)
+                    throw new IllegalStateException("page " + i);
+                sleep(5);
+                return i;
+            }));
+
+            assertEquals("page 5", e.getMessage());
+            assertTrue(started.get() < 1000);
+            assertThrows(IllegalArgumentException.class, () -> RequestExecutors.invokeAll(1, 0, executor, i -> i));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
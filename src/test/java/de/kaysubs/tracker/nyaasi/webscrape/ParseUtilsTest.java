@@ -0,0 +1,85 @@
+package de.kaysubs.tracker.nyaasi.webscrape;
+
+import de.kaysubs.tracker.nyaasi.exception.WebScrapeException;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParseUtilsTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "'1.5 GiB', 1610612736",
+            "'  3 Bytes ', 3",
+            "'1 KiB', 1024",
+            "'1 kib', 1024",
+            "'0.5 Bytes', 1",
+            "'1023.9 MiB', 1073636966",
+            "'8191.99 TiB', 9007188259624714",
+            "'8388607 TiB', 9223370937343148032",
+            "'9223372036854775807 Bytes', 9223372036854775807",
+    })
+    void parsesSizes(String size, long bytes) {
+        assertEquals(bytes, ParseUtils.parseSizeBytes(size, 0, size.length()));
+        // only the given range is parsed
+        String wrapped = "(" + size + ")";
+        assertEquals(bytes, ParseUtils.parseSizeBytes(wrapped, 1, wrapped.length() - 1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "9223372036854775808 Bytes",
+            "9223372036854775807.9 Bytes",
+            "99999999999999999999 KiB",
+            "8388608 TiB",
+            "1 PiB",
+            "GiB",
+            "-1 GiB",
+            "",
+    })
+    void rejectsInvalidSizes(String size) {
+        assertThrows(WebScrapeException.class, () -> ParseUtils.parseSizeBytes(size, 0, size.length()));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "'42', 42",
+            "' 7\u00a0', 7",
+            "'0', 0",
+            "'007', 7",
+            "'2147483647', 2147483647",
+    })
+    void parsesInts(String text, int value) {
+        assertEquals(value, ParseUtils.parseInt(text, 0, text.length()));
+        assertEquals(value, ParseUtils.parseLong(text, 0, text.length()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"+1", "-1", "", " ", "1a", "1 2", "2147483648", "\uff11"})
+    void rejectsInvalidInts(String text) {
+        assertThrows(WebScrapeException.class, () -> ParseUtils.parseInt(text, 0, text.length()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"+5", "-5", "", "5.0", "9223372036854775808", "99999999999999999999"})
+    void rejectsInvalidLongs(String text) {
+        assertThrows(WebScrapeException.class, () -> ParseUtils.parseLong(text, 0, text.length()));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "/view/1, 1",
+            "/view/1234567, 1234567",
+    })
+    void parsesViewUrls(String url, int id) {
+        assertEquals(id, ParseUtils.parseViewUrl(url));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/view/", "/view/-1", "/view/+1", "/download/1"})
+    void rejectsInvalidViewUrls(String url) {
+        assertThrows(WebScrapeException.class, () -> ParseUtils.parseViewUrl(url));
+    }
+}
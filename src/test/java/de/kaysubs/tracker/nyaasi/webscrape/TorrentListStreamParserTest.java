@@ -0,0 +1,115 @@
+package de.kaysubs.tracker.nyaasi.webscrape;
+
+import de.kaysubs.tracker.nyaasi.model.TorrentPreview;
+import de.kaysubs.tracker.nyaasi.model.TorrentState;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The stream parser must return exactly what the jsoup based {@link TorrentListPage} returns.
+ *
+ * The fixtures follow the markup of the nyaa and sukebei list pages,
+ * including a script and a comment that contain table markup.
+ */
+class TorrentListStreamParserTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "nyaa-list.html, false, 30",
+            "nyaa-entities.html, false, 8",
+            "nyaa-empty.html, false, 0",
+            "sukebei-list.html, true, 20",
+            "sukebei-empty.html, true, 0",
+    })
+    void matchesTorrentListPage(String fixture, boolean isSukebei, int rows) throws IOException {
+        TorrentPreview[] expected = parseWithJsoup(fixture, isSukebei);
+        TorrentPreview[] actual;
+        try (Reader page = open(fixture)) {
+            actual = new TorrentListStreamParser().parsePage(page, isSukebei);
+        }
+
+        assertEquals(rows, expected.length);
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++)
+            assertEquals(describe(expected[i]), describe(actual[i]), "row " + i + " of " + fixture);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "nyaa-list.html, false",
+            "sukebei-list.html, true",
+    })
+    void parsesRemakeAndTrustedRows(String fixture, boolean isSukebei) throws IOException {
+        TorrentPreview[] torrents;
+        try (Reader page = open(fixture)) {
+            torrents = new TorrentListStreamParser().parsePage(page, isSukebei);
+        }
+
+        for (TorrentState state : TorrentState.values())
+            assertTrue(Arrays.stream(torrents).anyMatch(torrent -> torrent.getTorrentState() == state),
+                    "no " + state + " torrent in " + fixture);
+    }
+
+    @Test
+    void decodesCharacterReferences() throws IOException {
+        TorrentPreview[] torrents;
+        try (Reader page = open("nyaa-entities.html")) {
+            torrents = new TorrentListStreamParser().parsePage(page, false);
+        }
+
+        assertEquals("[Group] Tom & Jerry <Special> \"Director's Cut\" - 01 [1080p]", torrents[0].getTitle());
+        assertEquals("&amp; double escaped &lt;tag&gt; literally", torrents[6].getTitle());
+    }
+
+    @Test
+    void stopsAtFirstRejectedRow() throws IOException {
+        int[] count = {0};
+        boolean completed;
+        try (Reader page = open("nyaa-list.html")) {
+            completed = new TorrentListStreamParser().parseRows(page, false, torrent -> ++count[0] < 3);
+        }
+
+        assertFalse(completed);
+        assertEquals(3, count[0]);
+    }
+
+    private static TorrentPreview[] parseWithJsoup(String fixture, boolean isSukebei) throws IOException {
+        try (InputStream in = TorrentListStreamParserTest.class.getResourceAsStream(fixture)) {
+            assertNotNull(in, fixture);
+            return new TorrentListPage().parsePage(Jsoup.parse(in, "UTF-8", ""), isSukebei);
+        }
+    }
+
+    private static Reader open(String fixture) {
+        InputStream in = TorrentListStreamParserTest.class.getResourceAsStream(fixture);
+        assertNotNull(in, fixture);
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    private static String describe(TorrentPreview torrent) {
+        return String.join("|",
+                Integer.toString(torrent.getId()),
+                String.valueOf(torrent.getTorrentState()),
+                torrent.getCategory().getName(),
+                torrent.getTitle(),
+                Integer.toString(torrent.getCommentCount()),
+                String.valueOf(torrent.getDownloadLink()),
+                String.valueOf(torrent.getMagnetLink()),
+                String.valueOf(torrent.getSize()),
+                Long.toString(torrent.getDate().getTime()),
+                Integer.toString(torrent.getSeeders()),
+                Integer.toString(torrent.getLeechers()),
+                Integer.toString(torrent.getCompleted()));
+    }
+}